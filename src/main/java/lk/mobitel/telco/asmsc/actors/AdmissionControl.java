@@ -0,0 +1,143 @@
+package lk.mobitel.telco.asmsc.actors;
+
+import lk.mobitel.telco.asmsc.config.AdmissionLimit;
+import lk.mobitel.telco.asmsc.config.RuntimeConfiguration;
+import lk.mobitel.telco.asmsc.map.constant.ApplicationContext;
+import lk.mobitel.telco.asmsc.map.constant.RefuseReason;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Admission of incoming dialogues, by application context. Each limited context has a token
+ * bucket (see {@link RuntimeConfiguration#admissionLimits()}); a new dialogue takes one token, and
+ * is refused when there is none. Contexts without a limit are always admitted. This keeps a surge
+ * of one kind of traffic from taking all the dialogues of the others.
+ *
+ * <p>The buckets are shared by all {@link Server} shards. Admitted and refused dialogues are
+ * counted per context. Can be used from any thread.
+ *
+ * @author NISALBA
+ */
+public final class AdmissionControl {
+
+  /** A token bucket, with the counters of its context. */
+  private static final class Bucket {
+    private final double ratePerNano;
+    private final double burst;
+    private double tokens;
+    private long refilledAt;
+
+    private Bucket(@NotNull AdmissionLimit limit) {
+      this.ratePerNano = limit.rate() / TimeUnit.SECONDS.toNanos(1);
+      this.burst = limit.burst();
+      this.tokens = burst;
+      this.refilledAt = System.nanoTime();
+    }
+
+    private synchronized boolean tryAcquire() {
+      long now = System.nanoTime();
+      tokens = Math.min(burst, tokens + (now - refilledAt) * ratePerNano);
+      refilledAt = now;
+      if (tokens < 1) {
+        return false;
+      }
+      tokens -= 1;
+      return true;
+    }
+  }
+
+  /** Indexed by {@link ApplicationContext} ordinal; null for contexts without a limit. */
+  private final Bucket[] buckets = new Bucket[ApplicationContext.values().length];
+
+  private final AtomicLong[] admitted = new AtomicLong[ApplicationContext.values().length];
+  private final AtomicLong[] refused = new AtomicLong[ApplicationContext.values().length];
+  private final RefuseReason refuseReason;
+
+  /**
+   * @param limits       the limits of the contexts; the last one of a context wins
+   * @param refuseReason reason given when a dialogue is refused
+   */
+  AdmissionControl(@NotNull List<AdmissionLimit> limits, @NotNull RefuseReason refuseReason) {
+    for (AdmissionLimit limit : limits) {
+      buckets[limit.applicationContext().ordinal()] = new Bucket(limit);
+    }
+    for (int i = 0; i < admitted.length; i++) {
+      admitted[i] = new AtomicLong();
+      refused[i] = new AtomicLong();
+    }
+    this.refuseReason = refuseReason;
+  }
+
+  /**
+   * Takes a token for a new dialogue of an application context.
+   *
+   * @param applicationContext the application context of the dialogue
+   * @return true if the dialogue is admitted; false if it must be refused with {@link
+   *     #refuseReason()}
+   */
+  public boolean tryAdmit(@NotNull ApplicationContext applicationContext) {
+    int index = applicationContext.ordinal();
+    Bucket bucket = buckets[index];
+    if (bucket == null || bucket.tryAcquire()) {
+      admitted[index].incrementAndGet();
+      return true;
+    }
+    refused[index].incrementAndGet();
+    return false;
+  }
+
+  /**
+   * Gets the reason refused dialogues are given. See {@link
+   * RuntimeConfiguration#admissionRefuseReason()}.
+   *
+   * @return the refuse reason
+   */
+  public @NotNull RefuseReason refuseReason() {
+    return refuseReason;
+  }
+
+  /**
+   * Gets the number of dialogues admitted.
+   *
+   * @param applicationContext an application context
+   * @return the number of admitted dialogues of the context
+   */
+  public long admitted(@NotNull ApplicationContext applicationContext) {
+    return admitted[applicationContext.ordinal()].get();
+  }
+
+  /**
+   * Gets the number of dialogues refused.
+   *
+   * @param applicationContext an application context
+   * @return the number of refused dialogues of the context
+   */
+  public long refused(@NotNull ApplicationContext applicationContext) {
+    return refused[applicationContext.ordinal()].get();
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder("{");
+    for (ApplicationContext applicationContext : ApplicationContext.values()) {
+      int index = applicationContext.ordinal();
+      if (builder.length() > 1) {
+        builder.append(',');
+      }
+      builder
+          .append('"')
+          .append(applicationContext.name())
+          .append("\":{\"limited\":")
+          .append(buckets[index] != null)
+          .append(",\"admitted\":")
+          .append(admitted[index].get())
+          .append(",\"refused\":")
+          .append(refused[index].get())
+          .append('}');
+    }
+    return builder.append('}').toString();
+  }
+}
@@ -1,26 +1,447 @@
 package lk.mobitel.telco.asmsc.actors;
 
 import akka.actor.typed.Behavior;
+import akka.actor.typed.PostStop;
+import akka.actor.typed.PreRestart;
 import akka.actor.typed.javadsl.AbstractBehavior;
 import akka.actor.typed.javadsl.ActorContext;
 import akka.actor.typed.javadsl.Behaviors;
 import akka.actor.typed.javadsl.Receive;
+import akka.actor.typed.javadsl.TimerScheduler;
+import lk.mobitel.telco.asmsc.actors.service.ServicePrimitives;
+import lk.mobitel.telco.asmsc.actors.service.TypedServicePrimitive;
+import lk.mobitel.telco.asmsc.config.RuntimeConfiguration;
+import lk.mobitel.telco.asmsc.gct.GctMessage;
+import lk.mobitel.telco.asmsc.gct.GctParameter;
+import lk.mobitel.telco.asmsc.gct.GctTemplates;
+import lk.mobitel.telco.asmsc.gct.GctUtil;
+import lk.mobitel.telco.asmsc.gct.SccpAddress;
+import lk.mobitel.telco.asmsc.map.Message;
+import lk.mobitel.telco.asmsc.map.constant.ApplicationContext;
+import lk.mobitel.telco.asmsc.map.constant.MAPResult;
+import lk.mobitel.telco.asmsc.map.constant.MessageType;
+import lk.mobitel.telco.asmsc.map.constant.ParameterName;
+import lk.mobitel.telco.asmsc.map.constant.Primitive;
+import lk.mobitel.telco.asmsc.map.constant.UserReason;
+import lombok.Value;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs the outgoing dialogues, on behalf of the {@link MapClient}. Each {@link Request} opens a
+ * {@link RequestingDialogue} with a single invocation, on the link picked by the {@link
+ * LinkBalancer}. The open request, the invocation and the delimiter are sent to the {@link
+ * Emitter} as one batch.
+ *
+ * <p>Outgoing dialogues are entries of a table indexed by dialogue id, not actors, so that
+ * thousands of them can be running at once. The messages the MAP provider sends on outgoing
+ * dialogues are routed here by the {@link ServerRouter}. They are correlated with their dialogue
+ * by dialogue id, and with its invocation by invoke-id; the result of the request is completed
+ * with the decoded confirmation. Results are completed on the thread of this actor.
+ *
+ * <p>Each dialogue has a guard timer (see {@link RuntimeConfiguration#dialogueOutgoingGuard()}).
+ * A dialogue still open when it expires is aborted, and its result fails with a {@link
+ * TimeoutException}.
+ */
 public class Client extends AbstractBehavior<Client.Command> {
 
   public interface Command {}
 
-  public static Behavior<Command> create() {
-    return Behaviors.setup(Client::new);
+  /**
+   * Invokes a service in a new outgoing dialogue.
+   *
+   * @sentby {@link MapClient}
+   * @receivedby {@link Client}
+   */
+  @Value
+  public static class Request implements Command {
+    ApplicationContext applicationContext;
+    byte[] destinationAddress;
+    Primitive primitive;
+    List<GctParameter> parameters;
+    CompletableFuture<TypedServicePrimitive> result;
+  }
+
+  /**
+   * Process a message of an outgoing dialogue.
+   *
+   * @sentby {@link ServerRouter}
+   * @receivedby {@link Client}
+   */
+  @Value
+  public static class ProcessOutgoingMessage implements Command {
+    Message message;
+  }
+
+  /**
+   * Process messages of outgoing dialogues received together, in order.
+   *
+   * @sentby {@link ServerRouter}
+   * @receivedby {@link Client}
+   */
+  @Value
+  public static class ProcessOutgoingBatch implements Command {
+    List<Message> messages;
+  }
+
+  /**
+   * Moves the guard timers of the dialogues forward
+   *
+   * @sentby the timer of {@link Client}
+   * @receivedby {@link Client}
+   * @pattern Scheduled Message
+   */
+  public enum GuardTick implements Command {
+    /**
+     * Placeholder Instance
+     */
+    INSTANCE
+  }
+
+  /** Invoke-id of the single invocation of a dialogue. */
+  private static final int INVOKE_ID = 1;
+
+  /**
+   * @param links Balancer of the outgoing dialogues over the links
+   */
+  public static Behavior<Command> create(LinkBalancer links) {
+    return Behaviors.withTimers(
+        timers -> Behaviors.setup(context -> new Client(context, timers, links)));
   }
 
-  private Client(ActorContext<Command> context) {
+  private final LinkBalancer links;
+  private final Emitter emitter = Emitter.getInstance();
+  private final int outgoingBase;
+  private final int outgoingCount;
+  private final byte[] originAddress;
+
+  /** Running dialogues, indexed by offset from the outgoing dialogue id base. */
+  private final RequestingDialogue[] dialogues;
+
+  /**
+   * Free dialogue ids of each link, as a ring: ids are taken at the head and returned at the tail,
+   * so that a released id is reused last, after late messages of its old dialogue have drained.
+   */
+  private final int[][] freeIds;
+  private final int[] freeHead;
+  private final int[] freeCount;
+
+  private final TimingWheel guards;
+  private final long tickNanos;
+  private final long guardTicks;
+  private final long startNanos = System.nanoTime();
+
+  private long requested = 0;
+  private long confirmed = 0;
+  private long failed = 0;
+  private long timedOut = 0;
+
+  private Client(
+      ActorContext<Command> context, TimerScheduler<Command> timers, LinkBalancer links) {
     super(context);
-    context.getLog().info("Gct Client Started");
+    this.links = links;
+    RuntimeConfiguration config = GctUtil.config();
+    this.outgoingBase = config.outgoingDialogueIdBase();
+    this.outgoingCount = config.outgoingDialogueCount();
+    this.originAddress = SccpAddress.ofDigits(config.gtAddress(), SccpAddress.SSN_MSC);
+    this.dialogues = new RequestingDialogue[outgoingCount * links.size()];
+    this.freeIds = new int[links.size()][outgoingCount];
+    this.freeHead = new int[links.size()];
+    this.freeCount = new int[links.size()];
+    for (int link = 0; link < links.size(); link++) {
+      // Lowest ids first.
+      int base = links.outgoingDialogueIdBase(link);
+      for (int i = 0; i < outgoingCount; i++) {
+        freeIds[link][i] = base + i;
+      }
+      freeCount[link] = outgoingCount;
+    }
+
+    long tickMillis = config.dialogueGuardTick();
+    long guardMillis = config.dialogueOutgoingGuard();
+    if (tickMillis > 0 && guardMillis > 0) {
+      this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+      this.guardTicks = (guardMillis + tickMillis - 1) / tickMillis;
+      this.guards = new TimingWheel(dialogues.length);
+      timers.startTimerAtFixedRate(
+          GuardTick.INSTANCE, GuardTick.INSTANCE, Duration.ofMillis(tickMillis));
+    } else {
+      this.tickNanos = 1;
+      this.guardTicks = 0;
+      this.guards = null;
+    }
+    context.getLog().info("Gct Client Started on {} links", links.size());
   }
 
   @Override
   public Receive<Command> createReceive() {
-    return null;
+    return newReceiveBuilder()
+        .onMessage(Request.class, this::onRequest)
+        .onMessage(ProcessOutgoingMessage.class, this::onProcessOutgoingMessage)
+        .onMessage(ProcessOutgoingBatch.class, this::onProcessOutgoingBatch)
+        .onMessage(GuardTick.class, tick -> onGuardTick())
+        .onSignal(PostStop.class, signal -> postStop())
+        .onSignal(PreRestart.class, signal -> postStop())
+        .build();
+  }
+
+  private Behavior<Command> onRequest(@NotNull Request request) {
+    requested++;
+    int link = links.acquire();
+    if (freeCount[link] == 0) {
+      links.release(link);
+      failed++;
+      request
+          .result()
+          .completeExceptionally(
+              new IllegalStateException("No free outgoing dialogue id on link " + link));
+      return this;
+    }
+    int id = freeIds[link][freeHead[link]];
+    freeHead[link] = (freeHead[link] + 1) % outgoingCount;
+    freeCount[link]--;
+    long instance = links.link(link).instance();
+    RequestingDialogue dialogue =
+        new RequestingDialogue(
+            id,
+            link,
+            instance,
+            INVOKE_ID,
+            request.primitive().acknowledgement(),
+            request.result());
+    int offset = id - outgoingBase;
+    dialogues[offset] = dialogue;
+    if (guards != null) {
+      guards.schedule(offset, guardTicks);
+    }
+
+    GctMessage open =
+        GctMessage.builder()
+            .type(MessageType.MAP_MSG_DLG_REQ)
+            .primitive(Primitive.MAPDT_OPEN_REQ)
+            .id(id)
+            .instance(instance)
+            .parameter(
+                GctParameter.ofBytes(
+                    ParameterName.MAPPN_applic_context,
+                    request.applicationContext().asByteBuffer()))
+            .parameter(
+                GctParameter.ofBytes(
+                    ParameterName.MAPPN_dest_address, request.destinationAddress()))
+            .parameter(GctParameter.ofBytes(ParameterName.MAPPN_orig_address, originAddress))
+            .build();
+    GctMessage invoke =
+        GctMessage.builder()
+            .type(MessageType.MAP_MSG_SRV_REQ)
+            .primitive(request.primitive())
+            .id(id)
+            .instance(instance)
+            .parameter(GctParameter.of8BitValue(ParameterName.MAPPN_invoke_id, (byte) INVOKE_ID))
+            .parameters(request.parameters())
+            .build();
+    if (!emitter.send(List.of(open, invoke, GctTemplates.delimiter().bind(id, instance)))) {
+      end(dialogue, new IllegalStateException("Unable to send the request of dialogue #" + id));
+    }
+    return this;
+  }
+
+  private Behavior<Command> onProcessOutgoingMessage(@NotNull ProcessOutgoingMessage process) {
+    process(process.message());
+    return this;
+  }
+
+  private Behavior<Command> onProcessOutgoingBatch(@NotNull ProcessOutgoingBatch process) {
+    for (Message message : process.messages()) {
+      process(message);
+    }
+    return this;
+  }
+
+  private void process(@NotNull Message msg) {
+    try {
+      int offset = msg.getId() - outgoingBase;
+      RequestingDialogue dialogue =
+          offset >= 0 && offset < dialogues.length ? dialogues[offset] : null;
+      if (dialogue == null) {
+        getContext()
+            .getLog()
+            .warn("Ignoring {} of unknown outgoing dialogue #{}", msg.getPrimitive(), msg.getId());
+        return;
+      }
+      dispatch(dialogue, msg);
+    } catch (RuntimeException e) {
+      getContext().getLog().error("Unable to process outgoing dialogue message: {}", msg, e);
+    } finally {
+      GctUtil.release(msg);
+    }
+  }
+
+  private void dispatch(@NotNull RequestingDialogue dialogue, @NotNull Message msg) {
+    Primitive primitive = msg.getPrimitive();
+    switch (primitive) {
+      case MAPDT_OPEN_CNF:
+        MAPResult result = GctUtil.getResult(msg);
+        if (result == MAPResult.MAPRS_DLG_ACC) {
+          dialogue.opened();
+        } else {
+          end(dialogue, failure(dialogue, "refused: " + result));
+        }
+        break;
+      case MAPDT_DELIMITER_IND:
+        if (dialogue.state() == RequestingDialogue.State.CONFIRMED) {
+          // The MAP provider keeps the dialogue open after answering; nothing else is expected.
+          emitter.send(GctTemplates.close().bind(dialogue.id(), dialogue.instance()));
+          end(dialogue, null);
+        }
+        break;
+      case MAPDT_CLOSE_IND:
+        end(dialogue, failure(dialogue, "closed without confirmation"));
+        break;
+      case MAPDT_U_ABORT_IND:
+        end(dialogue, failure(dialogue, "aborted by the user: " + GctUtil.getUserReason(msg)));
+        break;
+      case MAPDT_P_ABORT_IND:
+        end(
+            dialogue,
+            failure(dialogue, "aborted by the provider: " + GctUtil.getProviderReason(msg)));
+        break;
+      case MAPDT_NOTICE_IND:
+        emitter.send(
+            GctTemplates.userAbort(UserReason.MAPUR_procedure_error)
+                .bind(dialogue.id(), dialogue.instance()));
+        end(dialogue, failure(dialogue, "noticed a provider problem"));
+        break;
+      default:
+        if (primitive == dialogue.confirm()) {
+          confirm(dialogue, msg);
+        } else {
+          getContext()
+              .getLog()
+              .warn("Ignoring unexpected {} on outgoing dialogue {}", primitive, dialogue);
+        }
+    }
+  }
+
+  private void confirm(@NotNull RequestingDialogue dialogue, @NotNull Message msg) {
+    int invokeId = GctUtil.getInvokeId(msg);
+    if (invokeId != dialogue.invokeId()
+        || dialogue.state() == RequestingDialogue.State.CONFIRMED) {
+      getContext()
+          .getLog()
+          .warn(
+              "Ignoring confirmation of invoke-id {} on outgoing dialogue {}", invokeId, dialogue);
+      return;
+    }
+    TypedServicePrimitive confirmation;
+    try {
+      confirmation = ServicePrimitives.decode(msg);
+    } catch (IllegalStateException e) {
+      emitter.send(
+          GctTemplates.userAbort(UserReason.MAPUR_procedure_error)
+              .bind(dialogue.id(), dialogue.instance()));
+      end(dialogue, e);
+      return;
+    }
+    if (confirmation == null) {
+      end(dialogue, new IllegalStateException("No typed class for " + msg.getPrimitive()));
+      return;
+    }
+    confirmed++;
+    dialogue.confirmed(confirmation);
+  }
+
+  /**
+   * Describes a dialogue that ended before its confirmation.
+   *
+   * @return the failure, or null if the dialogue is confirmed already
+   */
+  private @Nullable IllegalStateException failure(
+      @NotNull RequestingDialogue dialogue, @NotNull String reason) {
+    if (dialogue.state() == RequestingDialogue.State.CONFIRMED) {
+      return null;
+    }
+    return new IllegalStateException("Outgoing dialogue #" + dialogue.id() + " " + reason);
+  }
+
+  /**
+   * Removes a dialogue from the table, and frees its id.
+   *
+   * @param dialogue the dialogue
+   * @param cause    the failure of the dialogue, or null if it is confirmed
+   */
+  private void end(@NotNull RequestingDialogue dialogue, @Nullable Throwable cause) {
+    if (cause != null) {
+      failed++;
+      dialogue.failed(cause);
+    }
+    int offset = dialogue.id() - outgoingBase;
+    dialogues[offset] = null;
+    if (guards != null) {
+      guards.cancel(offset);
+    }
+    int link = dialogue.link();
+    freeIds[link][(freeHead[link] + freeCount[link]++) % outgoingCount] = dialogue.id();
+    links.release(link);
+  }
+
+  /**
+   * Moves the guard timers forward to the current time.
+   *
+   * @return the current behaviour
+   */
+  private Behavior<Command> onGuardTick() {
+    if (guards != null) {
+      guards.advance((System.nanoTime() - startNanos) / tickNanos, this::onGuardExpired);
+    }
+    return this;
+  }
+
+  /**
+   * Aborts a dialogue whose guard timer has expired.
+   *
+   * @param offset offset of the dialogue id
+   */
+  private void onGuardExpired(int offset) {
+    RequestingDialogue dialogue = dialogues[offset];
+    if (dialogue == null) {
+      return;
+    }
+    getContext().getLog().warn("Outgoing dialogue {} timed out", dialogue);
+    timedOut++;
+    emitter.send(
+        GctTemplates.userAbort(UserReason.MAPUR_app_proc_cancelled)
+            .bind(dialogue.id(), dialogue.instance()));
+    end(
+        dialogue,
+        dialogue.state() == RequestingDialogue.State.CONFIRMED
+            ? null
+            : new TimeoutException("Outgoing dialogue #" + dialogue.id() + " timed out"));
+  }
+
+  private Behavior<Command> postStop() {
+    // A restarted client starts with an empty table; its dialogues are given up.
+    for (RequestingDialogue dialogue : dialogues) {
+      if (dialogue != null) {
+        emitter.send(
+            GctTemplates.userAbort(UserReason.MAPUR_app_proc_cancelled)
+                .bind(dialogue.id(), dialogue.instance()));
+        end(dialogue, new IllegalStateException("Client is stopped"));
+      }
+    }
+    getContext()
+        .getLog()
+        .info(
+            "Gct Client stopped: {\"requested\":{},\"confirmed\":{},\"failed\":{},\"timedOut\":{}}",
+            requested,
+            confirmed,
+            failed,
+            timedOut);
+    return this;
   }
 }
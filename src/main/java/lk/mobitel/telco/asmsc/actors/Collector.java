@@ -1,46 +1,369 @@
 package lk.mobitel.telco.asmsc.actors;
 
-import akka.actor.typed.ActorRef;
 import com.dialogic.signaling.gct.GctException;
-import com.dialogic.signaling.gct.GctLib;
-import com.dialogic.signaling.gct.GctMsg;
+import lk.mobitel.telco.asmsc.config.DecodeMode;
+import lk.mobitel.telco.asmsc.config.GctLink;
+import lk.mobitel.telco.asmsc.config.ReceiveStrategy;
+import lk.mobitel.telco.asmsc.config.RuntimeConfiguration;
+import lk.mobitel.telco.asmsc.gct.GctFrame;
 import lk.mobitel.telco.asmsc.gct.GctMessage;
+import lk.mobitel.telco.asmsc.gct.GctMessageView;
+import lk.mobitel.telco.asmsc.gct.GctTemplates;
+import lk.mobitel.telco.asmsc.gct.GctTransport;
 import lk.mobitel.telco.asmsc.gct.GctUtil;
+import lk.mobitel.telco.asmsc.map.Message;
+import lk.mobitel.telco.asmsc.map.constant.MessageType;
+import lk.mobitel.telco.asmsc.map.constant.Primitive;
+import lk.mobitel.telco.asmsc.map.constant.RefuseReason;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
 /**
- * Receives messages directly from the GCT Stack. Received messages are then parsed into {@link
- * GctMessage} objects and sent to the {@link MAPSystem} to be processed.
+ * Receives messages directly from the GCT Stack, on one link. Received messages are then parsed
+ * into {@link GctMessage} objects and sent straight to the {@link Server} shard owning their
+ * dialogue, through the {@link ServerRouter} of the {@link MAPSystem}. Messages of other dialogues
+ * are released. One collector runs per link (see {@link #startAll(ServerRouter)}).
+ *
+ * <p>When {@link DecodeMode#VIEW} is configured, received messages are wrapped in {@link
+ * GctMessageView} objects instead. The native message is then not released here, but by the
+ * actor that consumes the message last.
+ *
+ * <p>When the receive batch size is greater than 1, each blocking receive is followed by
+ * non-blocking ones, as long as messages are immediately available, up to the batch size or the
+ * time budget of the batch. The messages of a batch are dispatched together, with one command per
+ * {@link Server} shard (see {@link ServerRouter.Batch}).
+ *
+ * <p>How the collector waits for the first message of a batch is set by the {@link
+ * ReceiveStrategy}. Time spent waiting is counted as idle, and time spent decoding and dispatching
+ * as busy; both can be read from any thread.
+ *
+ * <p>After each batch, the collector checks the {@link InboundPressure} of the shards. When the
+ * high watermark is reached, it stops receiving until the shards are drained to the low watermark.
+ * If refusing on overload is configured instead, it keeps receiving, but refuses each new dialogue
+ * at once with a pre-encoded <code>MAPDT_OPEN_RSP</code>, and releases the other indications of
+ * the refused dialogue up to its <code>MAPDT_DELIMITER_IND</code>.
  */
 @Slf4j
 public class Collector {
+  /** Time the collector parks for between two checks of the shards, while it stops receiving. */
+  private static final long THROTTLE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+  private final GctTransport transport;
   private final short gctLocalModuleId;
-  private final ActorRef<MAPSystem.Command> gct;
+  private final DecodeMode decodeMode;
+  private final int batchSize;
+  private final long batchBudgetNanos;
+  private final ServerRouter.Batch batch;
+  private final ReceiveStrategy strategy;
+  private final int spinLimit;
+  private final long maxParkNanos;
+  private final ServerRouter router;
+  private final InboundPressure pressure;
+  private final boolean refuseOnOverload;
+  private final RefuseReason overloadRefuseReason;
+  private final int incomingBase;
+
+  /** Incoming dialogues refused while overloaded, indexed by offset from the incoming base. */
+  private final BitSet refusing = new BitSet();
+
+  private boolean overloaded = false;
+
+  private volatile long idleNanos = 0L;
+  private volatile long busyNanos = 0L;
+  private volatile long received = 0L;
+  private volatile long throttledNanos = 0L;
+  private volatile long overloads = 0L;
+  private volatile long refused = 0L;
 
   /**
    * @param gctLocalModuleId ID of the Septel module to receive messages from.
-   * @param gct              Reference to the {@link MAPSystem} actor.
+   * @param router           Router of the {@link Server} shards, as replied to {@link
+   *                         MAPSystem.GetServerRouter}.
    */
-  public Collector(short gctLocalModuleId, ActorRef<MAPSystem.Command> gct) {
+  public Collector(short gctLocalModuleId, ServerRouter router) {
+    RuntimeConfiguration config = GctUtil.config();
+    this.transport = GctUtil.transport();
     this.gctLocalModuleId = gctLocalModuleId;
-    this.gct = gct;
+    this.decodeMode = config.decodeMode();
+    this.batchSize = Math.max(1, config.receiveBatchSize());
+    this.batchBudgetNanos = TimeUnit.MICROSECONDS.toNanos(config.receiveBatchBudget());
+    this.batch = router.newBatch(batchSize);
+    this.strategy = config.receiveStrategy();
+    this.spinLimit = Math.max(0, config.receiveSpinLimit());
+    this.maxParkNanos = Math.max(1L, TimeUnit.MICROSECONDS.toNanos(config.receiveMaxPark()));
+    this.router = router;
+    this.pressure = router.pressure();
+    this.refuseOnOverload = config.inboundOverloadRefuse();
+    this.overloadRefuseReason = config.inboundOverloadRefuseReason();
+    this.incomingBase = config.incomingDialogueIdBase();
+  }
+
+  /**
+   * Starts one collector per configured link, each on its own thread.
+   *
+   * @param router Router of the {@link Server} shards
+   * @return the started collectors, in link order
+   */
+  public static List<Collector> startAll(ServerRouter router) {
+    List<GctLink> links = GctUtil.links();
+    List<Collector> collectors = new ArrayList<>(links.size());
+    for (int i = 0; i < links.size(); i++) {
+      Collector collector = new Collector(links.get(i).localModuleId(), router);
+      Thread thread = new Thread(collector::start, "gct-collector-" + i);
+      thread.setDaemon(true);
+      thread.start();
+      collectors.add(collector);
+    }
+    return collectors;
   }
 
   /** Starts the receiving process. */
   public void start() {
-    log.info("Collector started on thread: {}", Thread.currentThread());
+    log.info(
+        "Collector started on thread: {} (decode mode: {}, batch: {}, strategy: {})",
+        Thread.currentThread(),
+        decodeMode,
+        batchSize,
+        strategy);
 
     //noinspection InfiniteLoopStatement
     for (; ; ) {
+      long waitStart = System.nanoTime();
+      long busyStart = waitStart;
       try {
-        GctMsg encoded = GctLib.receive(gctLocalModuleId);
-        GctMessage message = GctUtil.parseMsg(encoded);
-        gct.tell(new MAPSystem.ProcessMessage(message));
-        GctLib.relm(encoded);
+        GctFrame first = awaitMessage();
+        busyStart = System.nanoTime();
+        idleNanos += busyStart - waitStart;
+        collect(first);
+        if (batchSize > 1) {
+          long deadline = System.nanoTime() + batchBudgetNanos;
+          for (int batched = 1; batched < batchSize; batched++) {
+            GctFrame next = transport.grab(gctLocalModuleId);
+            if (next == null) {
+              break;
+            }
+            collect(next);
+            if (System.nanoTime() - deadline >= 0) {
+              break;
+            }
+          }
+        }
       } catch (RuntimeException e) {
-        log.warn("Runtime exception from GctLib is ignored. This is unusual. Cause is unknown.");
+        log.warn(
+            "Runtime exception from the transport is ignored. This is unusual. Cause is unknown.");
       } catch (GctException e) {
-        log.warn("Unable to release GctMsg at Ingress processor", e);
+        log.warn("Unable to receive GctFrame at Ingress processor", e);
+      } finally {
+        batch.flush();
+        busyNanos += System.nanoTime() - busyStart;
+      }
+      holdBack();
+    }
+  }
+
+  /**
+   * Checks the depth of the shards, after a batch is dispatched. When the inbound path is
+   * overloaded and new dialogues are not refused, waits until the shards are drained.
+   */
+  private void holdBack() {
+    if (!overloaded) {
+      if (!pressure.isAboveHighWatermark()) {
+        return;
+      }
+      overloaded = true;
+      overloads++;
+      log.warn(
+          "Inbound path is overloaded, {}: {}",
+          refuseOnOverload ? "refusing new dialogues" : "receiving is paused",
+          pressure);
+    }
+    if (refuseOnOverload) {
+      if (pressure.isBelowLowWatermark()) {
+        overloaded = false;
+        log.info("Inbound overload is over: {}", pressure);
+      }
+      return;
+    }
+
+    long start = System.nanoTime();
+    while (!pressure.isBelowLowWatermark()) {
+      LockSupport.parkNanos(this, THROTTLE_PARK_NANOS);
+    }
+    throttledNanos += System.nanoTime() - start;
+    overloaded = false;
+    log.info("Inbound overload is over, receiving is resumed: {}", pressure);
+  }
+
+  /**
+   * Refuses a new dialogue while overloaded, and drops the rest of its indications. The message is
+   * consumed if this returns true.
+   *
+   * @param message a decoded message
+   * @return true if the message is consumed
+   */
+  private boolean shed(Message message) {
+    int dialogueId = message.getId();
+    if (!router.isIncoming(dialogueId)) {
+      return false;
+    }
+    int offset = dialogueId - incomingBase;
+    boolean dialogueIndication = message.getType() == MessageType.MAP_MSG_DLG_IND;
+    if (dialogueIndication && message.getPrimitive() == Primitive.MAPDT_OPEN_IND) {
+      if (!overloaded || !refuseOnOverload) {
+        refusing.clear(offset);
+        return false;
+      }
+      refusing.set(offset);
+      refused++;
+      Emitter.getInstance()
+          .send(
+              GctTemplates.openRefuse(overloadRefuseReason)
+                  .bind(dialogueId, message.getInstance())
+                  .replacing(message));
+      GctUtil.release(message);
+      return true;
+    }
+    if (refusing.isEmpty() || !refusing.get(offset)) {
+      return false;
+    }
+    if (dialogueIndication && message.getPrimitive() == Primitive.MAPDT_DELIMITER_IND) {
+      refusing.clear(offset);
+    }
+    GctUtil.release(message);
+    return true;
+  }
+
+  /**
+   * Waits for the next message, with the configured {@link ReceiveStrategy}.
+   *
+   * @return the received message
+   * @throws GctException if receiving fails at the transport
+   */
+  private GctFrame awaitMessage() throws GctException {
+    if (strategy == ReceiveStrategy.BLOCKING) {
+      return transport.receive(gctLocalModuleId);
+    }
+
+    int emptyPolls = 0;
+    long parkNanos = 1_000L;
+    for (; ; ) {
+      GctFrame msg = transport.grab(gctLocalModuleId);
+      if (msg != null) {
+        return msg;
+      }
+      if (strategy == ReceiveStrategy.BUSY_POLL || emptyPolls < spinLimit) {
+        emptyPolls++;
+        Thread.onSpinWait();
+      } else {
+        LockSupport.parkNanos(parkNanos);
+        parkNanos = Math.min(parkNanos << 1, maxParkNanos);
+      }
+    }
+  }
+
+  /**
+   * Gets the time spent waiting for messages.
+   *
+   * @return idle time, in nanoseconds
+   */
+  public long idleNanos() {
+    return idleNanos;
+  }
+
+  /**
+   * Gets the time spent decoding and dispatching received messages.
+   *
+   * @return busy time, in nanoseconds
+   */
+  public long busyNanos() {
+    return busyNanos;
+  }
+
+  /**
+   * Gets the number of messages received.
+   *
+   * @return the number of received messages
+   */
+  public long received() {
+    return received;
+  }
+
+  /**
+   * Gets the time spent not receiving because the inbound path was overloaded.
+   *
+   * @return throttled time, in nanoseconds
+   */
+  public long throttledNanos() {
+    return throttledNanos;
+  }
+
+  /**
+   * Gets the number of times the inbound path was found overloaded.
+   *
+   * @return the number of overloads
+   */
+  public long overloads() {
+    return overloads;
+  }
+
+  /**
+   * Gets the number of new dialogues refused while overloaded.
+   *
+   * @return the number of refused dialogues
+   */
+  public long refused() {
+    return refused;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "{ \"strategy\": \"%s\", \"received\": %d, \"idle_ns\": %d, \"busy_ns\": %d, "
+            + "\"throttled_ns\": %d, \"overloads\": %d, \"refused\": %d }",
+        strategy, received, idleNanos, busyNanos, throttledNanos, overloads, refused);
+  }
+
+  /**
+   * Decodes a received message and adds it to the batch. The native message is released, unless
+   * it is retained by the decoded message and handed over to the batch or to a reply.
+   *
+   * @param encoded the received message
+   */
+  private void collect(GctFrame encoded) {
+    received++;
+    boolean retained = false;
+    try {
+      Message message;
+      boolean view = false;
+      switch (decodeMode) {
+        case VIEW:
+          message = GctUtil.viewMsg(encoded);
+          view = true;
+          break;
+        case SLAB:
+          message = GctUtil.parseMsgSlab(encoded);
+          break;
+        default:
+          message = GctUtil.parseMsg(encoded);
+      }
+      if (!shed(message)) {
+        batch.add(message);
+      }
+      retained = view;
+    } catch (RuntimeException e) {
+      log.warn("Unable to decode received GctFrame: {}", e.toString());
+    } finally {
+      if (!retained) {
+        try {
+          transport.relm(encoded);
+        } catch (GctException e) {
+          log.warn("Unable to release GctFrame at Ingress processor", e);
+        }
       }
     }
   }
@@ -0,0 +1,184 @@
+package lk.mobitel.telco.asmsc.actors;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Registry of the open dialogues of a {@link Server} shard, indexed by dialogue id.
+ *
+ * <p>Each dialogue id owned by the shard has its own slot (see {@link ShardSlots}) in an array
+ * preallocated at creation. Lookups take one division and one array read, and nothing is allocated
+ * while the registry is in use.
+ *
+ * <p>The number of open dialogues can be capped below the number of slots. Once the cap is
+ * reached, {@link #isFull()} is true, and new dialogues are meant to be rejected without being
+ * spawned.
+ *
+ * <p>A registry is owned by its shard and is not thread-safe.
+ *
+ * @param <T> type of the dialogue handles
+ * @author NISALBA
+ */
+final class DialogueRegistry<T> {
+
+  private final ShardSlots shardSlots;
+  private final int limit;
+  private final Object[] slots;
+
+  private int size = 0;
+  private int peak = 0;
+  private long rejected = 0L;
+
+  /**
+   * Creates a registry for a shard.
+   *
+   * @param shardSlots the dialogue ids of the shard
+   * @param limit      the maximum number of dialogues open at the same time, in all shards
+   */
+  DialogueRegistry(@NotNull ShardSlots shardSlots, int limit) {
+    this.shardSlots = shardSlots;
+    this.slots = new Object[shardSlots.capacity()];
+    this.limit = shardSlots.share(limit);
+  }
+
+  /**
+   * Gets the handle of a dialogue.
+   *
+   * @param dialogueId id of the dialogue
+   * @return the handle, or null if the dialogue is not open in this shard
+   */
+  @SuppressWarnings("unchecked")
+  @Nullable
+  T get(int dialogueId) {
+    int slot = shardSlots.slotOf(dialogueId);
+    return slot < 0 ? null : (T) slots[slot];
+  }
+
+  /**
+   * Returns true if a dialogue is open in this shard.
+   *
+   * @param dialogueId id of the dialogue
+   * @return true if a handle is registered for the dialogue
+   */
+  boolean contains(int dialogueId) {
+    return get(dialogueId) != null;
+  }
+
+  /**
+   * Registers the handle of a new dialogue.
+   *
+   * @param dialogueId id of the dialogue
+   * @param handle     handle of the dialogue
+   * @throws IllegalStateException if the id is not owned by this shard, the dialogue is already
+   *     registered, or the registry is full
+   */
+  void put(int dialogueId, @NotNull T handle) throws IllegalStateException {
+    int slot = shardSlots.slotOf(dialogueId);
+    if (slot < 0) {
+      throw new IllegalStateException("Dialogue #" + dialogueId + " is not owned by this shard");
+    }
+    if (slots[slot] != null) {
+      throw new IllegalStateException("Dialogue #" + dialogueId + " is already registered");
+    }
+    if (size >= limit) {
+      throw new IllegalStateException("Dialogue registry is full (" + limit + " dialogues)");
+    }
+    slots[slot] = handle;
+    if (++size > peak) {
+      peak = size;
+    }
+  }
+
+  /**
+   * Unregisters a dialogue.
+   *
+   * @param dialogueId id of the dialogue
+   * @return the handle that was registered, or null if the dialogue was not open
+   */
+  @SuppressWarnings("unchecked")
+  @Nullable
+  T remove(int dialogueId) {
+    int slot = shardSlots.slotOf(dialogueId);
+    if (slot < 0 || slots[slot] == null) {
+      return null;
+    }
+    T handle = (T) slots[slot];
+    slots[slot] = null;
+    size--;
+    return handle;
+  }
+
+  /**
+   * Unregisters a dialogue, only if it is still registered with the given handle.
+   *
+   * @param dialogueId id of the dialogue
+   * @param handle     the expected handle
+   * @return true if the dialogue was unregistered
+   */
+  boolean remove(int dialogueId, @NotNull T handle) {
+    int slot = shardSlots.slotOf(dialogueId);
+    if (slot < 0 || slots[slot] != handle) {
+      return false;
+    }
+    slots[slot] = null;
+    size--;
+    return true;
+  }
+
+  /** Counts a dialogue rejected because the registry was full. */
+  void reject() {
+    rejected++;
+  }
+
+  /**
+   * Returns true if no more dialogues can be registered.
+   *
+   * @return true if the number of open dialogues has reached the limit
+   */
+  boolean isFull() {
+    return size >= limit;
+  }
+
+  /**
+   * Gets the number of open dialogues.
+   *
+   * @return the number of registered dialogues
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * Gets the maximum number of open dialogues.
+   *
+   * @return the share of the dialogue limit of this shard
+   */
+  int limit() {
+    return limit;
+  }
+
+  /**
+   * Gets the highest number of dialogues that were open at the same time.
+   *
+   * @return the peak occupancy
+   */
+  int peak() {
+    return peak;
+  }
+
+  /**
+   * Gets the number of dialogues rejected because the registry was full.
+   *
+   * @return the number of {@link #reject()} calls
+   */
+  long rejected() {
+    return rejected;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "{ \"shard\": %d, \"size\": %d, \"limit\": %d, \"peak\": %d, \"rejected\": %d }",
+        shardSlots.shard(), size, limit, peak, rejected);
+  }
+}
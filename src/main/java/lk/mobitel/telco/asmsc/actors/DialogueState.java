@@ -0,0 +1,17 @@
+package lk.mobitel.telco.asmsc.actors;
+
+/**
+ * States of an incoming dialogue, as in <code>docs/dialogue_state_diag.mermaid</code>.
+ *
+ * @author NISALBA
+ */
+enum DialogueState {
+  /** Spawned, waiting for the open indication. */
+  CREATED,
+  /** Open indication accepted; waiting for service indications. */
+  OPENED,
+  /** At least one service indication received; waiting for the delimiter. */
+  RECEIVED,
+  /** Services are executing; the dialogue ends when all of them have responded. */
+  DEPLOYED
+}
@@ -0,0 +1,226 @@
+package lk.mobitel.telco.asmsc.actors;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * State of all incoming dialogues of a {@link Server} shard, kept as a struct of arrays. Each
+ * dialogue id owned by the shard has its own slot (see {@link ShardSlots}) in every array; nothing
+ * is allocated per dialogue.
+ *
+ * <p>The {@link DialogueState} of a slot changes only through {@link #fire}, which looks the next
+ * state up in a transition table built from <code>docs/dialogue_state_diag.mermaid</code>. A free
+ * slot has no state.
+ *
+ * <p>A table is owned by its shard and is not thread-safe.
+ *
+ * @author NISALBA
+ */
+final class DialogueTable {
+
+  /** Events that move a dialogue from one state to another. */
+  enum Event {
+    /** The open indication is accepted. */
+    OPEN,
+    /** A service indication is received. */
+    SERVICE,
+    /** The delimiter is received; received services are executed. */
+    EXECUTE,
+    /** A service has responded. */
+    RESPONSE,
+    /** All services have responded, and a result keeps the dialogue open for another turn. */
+    CONTINUE,
+    /** The dialogue is closed or aborted. */
+    END
+  }
+
+  private static final DialogueState[] STATES = DialogueState.values();
+
+  /** State code of a free slot. Other codes are the state ordinal + 1. */
+  private static final byte FREE = 0;
+
+  private static final byte INVALID = -1;
+
+  /** Next state code, indexed by event ordinal, then by current state code. */
+  private static final byte[][] TRANSITIONS = new byte[Event.values().length][STATES.length + 1];
+
+  static {
+    for (byte[] row : TRANSITIONS) {
+      Arrays.fill(row, INVALID);
+    }
+    transition(Event.OPEN, DialogueState.CREATED, DialogueState.OPENED);
+    transition(Event.SERVICE, DialogueState.OPENED, DialogueState.RECEIVED);
+    transition(Event.SERVICE, DialogueState.RECEIVED, DialogueState.RECEIVED);
+    // A delimiter without services leaves the dialogue open.
+    transition(Event.EXECUTE, DialogueState.OPENED, DialogueState.OPENED);
+    transition(Event.EXECUTE, DialogueState.RECEIVED, DialogueState.DEPLOYED);
+    transition(Event.RESPONSE, DialogueState.DEPLOYED, DialogueState.DEPLOYED);
+    transition(Event.CONTINUE, DialogueState.DEPLOYED, DialogueState.OPENED);
+    for (DialogueState state : STATES) {
+      TRANSITIONS[Event.END.ordinal()][code(state)] = FREE;
+    }
+  }
+
+  private static void transition(Event event, DialogueState from, DialogueState to) {
+    TRANSITIONS[event.ordinal()][code(from)] = code(to);
+  }
+
+  private static byte code(DialogueState state) {
+    return (byte) (state.ordinal() + 1);
+  }
+
+  private final ShardSlots shardSlots;
+  private final int limit;
+
+  private final byte[] state;
+  private final long[] instance;
+
+  private int size = 0;
+  private int peak = 0;
+  private long rejected = 0L;
+
+  /**
+   * Creates a table for a shard.
+   *
+   * @param shardSlots the dialogue ids of the shard
+   * @param limit      the maximum number of dialogues open at the same time, in all shards
+   */
+  DialogueTable(@NotNull ShardSlots shardSlots, int limit) {
+    this.shardSlots = shardSlots;
+    this.limit = shardSlots.share(limit);
+    this.state = new byte[shardSlots.capacity()];
+    this.instance = new long[shardSlots.capacity()];
+  }
+
+  private int slotOrThrow(int dialogueId) throws IllegalStateException {
+    int slot = shardSlots.slotOf(dialogueId);
+    if (slot < 0 || state[slot] == FREE) {
+      throw new IllegalStateException("Dialogue #" + dialogueId + " is not open in this shard");
+    }
+    return slot;
+  }
+
+  /**
+   * Takes the slot of a new dialogue, in {@link DialogueState#CREATED}.
+   *
+   * @param dialogueId id of the dialogue
+   * @param instance   instance of the open indication
+   * @throws IllegalStateException if the id is not owned by this shard, the dialogue is already
+   *     open, or the table is full
+   */
+  void allocate(int dialogueId, long instance) throws IllegalStateException {
+    int slot = shardSlots.slotOf(dialogueId);
+    if (slot < 0) {
+      throw new IllegalStateException("Dialogue #" + dialogueId + " is not owned by this shard");
+    }
+    if (state[slot] != FREE) {
+      throw new IllegalStateException("Dialogue #" + dialogueId + " is already open");
+    }
+    if (size >= limit) {
+      throw new IllegalStateException("Dialogue table is full (" + limit + " dialogues)");
+    }
+    this.state[slot] = code(DialogueState.CREATED);
+    this.instance[slot] = instance;
+    if (++size > peak) {
+      peak = size;
+    }
+  }
+
+  /**
+   * Applies an event to a dialogue. If the event is not allowed in the current state, nothing
+   * changes. {@link Event#END} frees the slot.
+   *
+   * @param dialogueId id of the dialogue
+   * @param event      the event
+   * @return true if the transition was made; false if the dialogue is not open, or the event is
+   *     not allowed in its state
+   */
+  boolean fire(int dialogueId, @NotNull Event event) {
+    int slot = shardSlots.slotOf(dialogueId);
+    if (slot < 0 || state[slot] == FREE) {
+      return false;
+    }
+    byte next = TRANSITIONS[event.ordinal()][state[slot]];
+    if (next == INVALID) {
+      return false;
+    }
+    state[slot] = next;
+    if (next == FREE) {
+      size--;
+    }
+    return true;
+  }
+
+  /**
+   * Gets the state of a dialogue.
+   *
+   * @param dialogueId id of the dialogue
+   * @return the state, or null if the dialogue is not open in this shard
+   */
+  @Nullable
+  DialogueState state(int dialogueId) {
+    int slot = shardSlots.slotOf(dialogueId);
+    return slot < 0 || state[slot] == FREE ? null : STATES[state[slot] - 1];
+  }
+
+  /**
+   * Gets the instance of a dialogue, as in its open indication.
+   *
+   * @param dialogueId id of an open dialogue
+   * @return the instance
+   * @throws IllegalStateException if the dialogue is not open
+   */
+  long instance(int dialogueId) throws IllegalStateException {
+    return instance[slotOrThrow(dialogueId)];
+  }
+
+  /** Counts a dialogue rejected because the table was full. */
+  void reject() {
+    rejected++;
+  }
+
+  /**
+   * Returns true if no more dialogues can be allocated.
+   *
+   * @return true if the number of open dialogues has reached the limit
+   */
+  boolean isFull() {
+    return size >= limit;
+  }
+
+  /**
+   * Gets the number of open dialogues.
+   *
+   * @return the number of allocated slots
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * Gets the highest number of dialogues that were open at the same time.
+   *
+   * @return the peak occupancy
+   */
+  int peak() {
+    return peak;
+  }
+
+  /**
+   * Gets the number of dialogues rejected because the table was full.
+   *
+   * @return the number of {@link #reject()} calls
+   */
+  long rejected() {
+    return rejected;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "{ \"shard\": %d, \"size\": %d, \"limit\": %d, \"peak\": %d, \"rejected\": %d }",
+        shardSlots.shard(), size, limit, peak, rejected);
+  }
+}
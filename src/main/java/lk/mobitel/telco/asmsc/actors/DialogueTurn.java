@@ -0,0 +1,383 @@
+package lk.mobitel.telco.asmsc.actors;
+
+import lk.mobitel.telco.asmsc.actors.service.ServiceHandler;
+import lk.mobitel.telco.asmsc.actors.service.ServiceHandlers;
+import lk.mobitel.telco.asmsc.actors.service.ServicePrimitives;
+import lk.mobitel.telco.asmsc.actors.service.ServiceResult;
+import lk.mobitel.telco.asmsc.actors.service.TypedServicePrimitive;
+import lk.mobitel.telco.asmsc.config.RuntimeConfiguration;
+import lk.mobitel.telco.asmsc.gct.GctTemplate;
+import lk.mobitel.telco.asmsc.gct.GctTemplates;
+import lk.mobitel.telco.asmsc.gct.GctUtil;
+import lk.mobitel.telco.asmsc.map.Message;
+import lk.mobitel.telco.asmsc.map.constant.Primitive;
+import lk.mobitel.telco.asmsc.map.constant.UserError;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * The current turn of an incoming dialogue, as run by both dialogue engines: {@link
+ * ServingDialogue} has one, and {@link FlyweightDialogues} has one per slot. A turn is reused from
+ * one turn of its dialogue to the next.
+ *
+ * <p>Service indications are collected until the delimiter of the turn, which starts each of them
+ * with the {@link ServiceHandler} of its primitive (see {@link ServiceHandlers}). The stage of each
+ * handler is handed to the {@link Owner}, which passes its result back to {@link #complete} on its
+ * own thread. The invocations are answered in the order they were indicated: an answer waits for
+ * the answers of the invocations indicated before it. When the last one is answered, the turn ends
+ * with a single <code>MAPDT_CLOSE_REQ</code>, or with a <code>MAPDT_DELIMITER_REQ</code> if a
+ * result keeps the dialogue open for another turn. A turn without invocations is answered with a
+ * <code>MAPDT_DELIMITER_REQ</code>, and the dialogue stays open. When replying in place is
+ * enabled, the primitive that ends a turn is written into the <code>MAPDT_DELIMITER_IND</code> of
+ * the turn. That indication is held until the end of the turn only if it has room for a
+ * <code>MAPDT_CLOSE_REQ</code>; otherwise it is released, and the primitive is a new message.
+ *
+ * <p>The answers are held in an {@link OutboundStage}, and handed to the {@link Emitter} together
+ * with the primitive that ends the turn. The owner starts a flush timer when the first answer is
+ * held (see {@link RuntimeConfiguration#outboundFlushTimeout()}), and calls {@link #flush()} when
+ * it expires; those are always the answers of the first invocations of the turn.
+ *
+ * <p>A turn is not thread-safe; it is used on the thread of its owner only.
+ *
+ * @author NISALBA
+ */
+@Slf4j
+final class DialogueTurn {
+
+  /** What a dialogue engine provides to its turns: how results come back, and its timers. */
+  interface Owner {
+
+    /**
+     * Takes the stage of a started invocation. Its outcome must be passed to {@link #complete}, on
+     * the thread of the owner.
+     *
+     * @param stage  the stage of the service handler
+     * @param invoke the invocation
+     */
+    void started(@NotNull CompletionStage<ServiceResult> stage, @NotNull Invoke invoke);
+
+    /**
+     * Starts the flush timer of a turn, which calls {@link #flush()} on expiry. Does nothing if
+     * answers are never flushed early.
+     *
+     * @param turn the turn holding its first answer
+     */
+    void startFlushTimer(@NotNull DialogueTurn turn);
+
+    /**
+     * Stops the flush timer of a turn.
+     *
+     * @param turn the turn that has ended
+     */
+    void cancelFlushTimer(@NotNull DialogueTurn turn);
+  }
+
+  /** What a call to the turn has left it at. */
+  enum Progress {
+    /** Invocations are pending. */
+    RUNNING,
+    /** The turn has ended, and the dialogue is kept open for another turn. */
+    CONTINUED,
+    /** The turn has ended, and the dialogue is closed. */
+    CLOSED
+  }
+
+  /** An invocation of a turn. The owner holds it while its handler runs. */
+  static final class Invoke {
+    private final DialogueTurn turn;
+    private final int index;
+    private final int invokeId;
+    private final Primitive response;
+    private final @Nullable TypedServicePrimitive indication;
+    private @Nullable CompletionStage<ServiceResult> stage;
+    private @Nullable ServiceResult result;
+
+    private Invoke(
+        DialogueTurn turn,
+        int index,
+        int invokeId,
+        Primitive response,
+        @Nullable TypedServicePrimitive indication) {
+      this.turn = turn;
+      this.index = index;
+      this.invokeId = invokeId;
+      this.response = response;
+      this.indication = indication;
+    }
+
+    /** @return the turn of this invocation */
+    DialogueTurn turn() {
+      return turn;
+    }
+  }
+
+  /**
+   * Converts the outcome of a handler stage to a response, as passed to {@link #complete}.
+   *
+   * @param result  the result of the stage, if it succeeded
+   * @param failure the failure of the stage, if it failed
+   * @return the result, or {@link ServingDialogue.ServiceFailure#INSTANCE}
+   */
+  static @NotNull ServingDialogue.ServiceResponse responseOf(
+      @Nullable ServiceResult result, @Nullable Throwable failure) {
+    return failure == null && result != null ? result : ServingDialogue.ServiceFailure.INSTANCE;
+  }
+
+  private final int dialogueId;
+  private final Owner owner;
+  private final OutboundStage outbound;
+
+  /** Invocations of the turn, in the order they were indicated. */
+  private final List<Invoke> order = new ArrayList<>(4);
+
+  /** Instance of the dialogue, as given at {@link #execute}. */
+  private long instance;
+
+  /** Delimiter indication of the turn, held to write the primitive that ends the turn into. */
+  private @Nullable Message delimiter;
+
+  /** Number of invocations at the head of {@link #order} whose answer is staged. */
+  private int staged = 0;
+
+  /** Number of started invocations without a result. */
+  private int pending = 0;
+
+  /** Whether an answer of the turn keeps the dialogue open. */
+  private boolean keepOpen = false;
+
+  /**
+   * @param dialogueId id of the dialogue
+   * @param emitter    the emitter to send the answers with
+   * @param owner      the dialogue engine
+   */
+  DialogueTurn(int dialogueId, @NotNull Emitter emitter, @NotNull Owner owner) {
+    this.dialogueId = dialogueId;
+    this.owner = owner;
+    this.outbound = new OutboundStage(emitter);
+  }
+
+  /** @return id of the dialogue */
+  int dialogueId() {
+    return dialogueId;
+  }
+
+  /**
+   * Adds a service indication to the turn. Indications that cannot be answered, and duplicate
+   * invoke-ids, are ignored. The message is not consumed.
+   *
+   * @param msg the service indication
+   * @return true if an invocation is added
+   */
+  boolean collect(@NotNull Message msg) {
+    int invokeId = GctUtil.getInvokeId(msg);
+    Primitive response;
+    try {
+      response = msg.getPrimitive().acknowledgement();
+    } catch (NoSuchElementException e) {
+      response = null;
+    }
+    if (invokeId < 0 || response == null) {
+      log.warn(
+          "Ignoring unanswerable service indication {} on dialogue #{}",
+          msg.getPrimitive(),
+          dialogueId);
+      return false;
+    }
+    for (Invoke invoke : order) {
+      if (invoke.invokeId == invokeId) {
+        log.warn("Ignoring duplicate invoke-id {} on dialogue #{}", invokeId, dialogueId);
+        return false;
+      }
+    }
+
+    Invoke invoke;
+    int index = order.size();
+    try {
+      TypedServicePrimitive primitive = ServicePrimitives.decode(msg);
+      invoke = new Invoke(this, index, invokeId, response, primitive);
+      if (primitive == null) {
+        log.warn(
+            "Unsupported service primitive {} on dialogue #{}", msg.getPrimitive(), dialogueId);
+        invoke.result = ServiceResult.error(UserError.MAPUE_facility_not_supported);
+      } else {
+        log.debug("Service indication on dialogue #{}: {}", dialogueId, primitive);
+      }
+    } catch (IllegalStateException e) {
+      log.warn("Bad service indication on dialogue #{}: {}", dialogueId, e.getMessage());
+      invoke = new Invoke(this, index, invokeId, response, null);
+      invoke.result = ServiceResult.error(UserError.MAPUE_unexpected_data_value);
+    }
+    order.add(invoke);
+    return true;
+  }
+
+  /**
+   * Starts the collected invocations, on the delimiter of the turn.
+   *
+   * @param instance  instance of the dialogue
+   * @param delimiter the delimiter indication. It is consumed: the primitive that ends the turn is
+   *                  written into it where it fits, or it is released
+   * @return the progress of the turn
+   */
+  @NotNull
+  Progress execute(long instance, @NotNull Message delimiter) {
+    this.instance = instance;
+    if (order.isEmpty()) {
+      // A turn without invocations, as the empty TC-BEGIN of a short message too long for the
+      // open: the MAP-Provider waits for a TC-CONTINUE before sending the invocation.
+      outbound.end(GctTemplates.delimiter().bind(dialogueId, instance).replacing(delimiter));
+      GctUtil.release(delimiter);
+      return Progress.CONTINUED;
+    }
+    // Most turns end with the close, which needs more room than the delimiter. The delimiter
+    // indication is held only if the close can be written into it.
+    if (GctTemplates.close().fitsInto(delimiter)) {
+      this.delimiter = delimiter;
+    } else {
+      GctUtil.release(delimiter);
+    }
+    for (Invoke invoke : order) {
+      if (invoke.result == null) {
+        start(invoke);
+      }
+    }
+    stageAnswers();
+    return pending == 0 ? end() : Progress.RUNNING;
+  }
+
+  /**
+   * Answers an invocation with the outcome of its handler. The turn ends once no invocation is
+   * pending any more.
+   *
+   * @param invoke   an invocation of this turn, as handed to the owner
+   * @param response the result, or a failure
+   * @return the progress of the turn, or null if the turn of the invocation has already ended and
+   *     the response is dropped
+   */
+  @Nullable
+  Progress complete(@NotNull Invoke invoke, @NotNull ServingDialogue.ServiceResponse response) {
+    if (invoke.turn != this
+        || invoke.index >= order.size()
+        || order.get(invoke.index) != invoke
+        || invoke.result != null) {
+      log.debug(
+          "Dropping the late result of invoke {} on dialogue #{}", invoke.invokeId, dialogueId);
+      return null;
+    }
+    if (response instanceof ServiceResult) {
+      invoke.result = (ServiceResult) response;
+    } else {
+      log.warn("Service {} failed on dialogue #{}", invoke.indication.primitive(), dialogueId);
+      invoke.result = ServiceResult.error(UserError.MAPUE_system_failure);
+    }
+    invoke.stage = null;
+    pending--;
+    stageAnswers();
+    return pending == 0 ? end() : Progress.RUNNING;
+  }
+
+  /** Sends the answers held so far, ahead of the end of the turn. */
+  void flush() {
+    if (!outbound.isEmpty()) {
+      log.debug("Dialogue #{} is flushing answers with {} invokes pending", dialogueId, pending);
+      outbound.flush();
+    }
+  }
+
+  /**
+   * Gives up the turn of a dialogue that has ended: the held answers are discarded, and the running
+   * handlers are cancelled. Their results are dropped.
+   */
+  void cancel() {
+    outbound.discard();
+    for (Invoke invoke : order) {
+      if (invoke.stage != null) {
+        try {
+          invoke.stage.toCompletableFuture().cancel(false);
+        } catch (UnsupportedOperationException e) {
+          // The stage cannot be cancelled; its result is dropped.
+        }
+      }
+    }
+    clear();
+  }
+
+  /** @return true if no invocation has been collected in the turn */
+  boolean isEmpty() {
+    return order.isEmpty();
+  }
+
+  /** @return the number of started invocations without a result */
+  int pending() {
+    return pending;
+  }
+
+  /** Starts an invocation with the handler of its primitive. */
+  private void start(@NotNull Invoke invoke) {
+    ServiceHandler handler = ServiceHandlers.handlerOf(invoke.indication.primitive());
+    if (handler == null) {
+      invoke.result = ServiceResult.error(UserError.MAPUE_facility_not_supported);
+      return;
+    }
+    try {
+      invoke.stage = handler.handle(invoke.indication);
+    } catch (RuntimeException e) {
+      log.error(
+          "Service handler of {} failed on dialogue #{}",
+          invoke.indication.primitive(),
+          dialogueId,
+          e);
+      invoke.result = ServiceResult.error(UserError.MAPUE_system_failure);
+      return;
+    }
+    pending++;
+    owner.started(invoke.stage, invoke);
+  }
+
+  /**
+   * Stages the responses of the invocations with a result, as far as every invocation indicated
+   * before them has one too.
+   */
+  private void stageAnswers() {
+    while (staged < order.size() && order.get(staged).result != null) {
+      Invoke invoke = order.get(staged++);
+      if (outbound.isEmpty()) {
+        owner.startFlushTimer(this);
+      }
+      outbound.stage(
+          invoke.result.responseTo(invoke.response, dialogueId, instance, invoke.invokeId));
+      keepOpen |= invoke.result.keepsDialogueOpen();
+    }
+  }
+
+  /** Ends the turn once all invocations are answered, sending the staged answers with it. */
+  private @NotNull Progress end() {
+    boolean continued = keepOpen;
+    GctTemplate template = continued ? GctTemplates.delimiter() : GctTemplates.close();
+    if (delimiter != null) {
+      outbound.end(template.bind(dialogueId, instance).replacing(delimiter));
+    } else {
+      outbound.end(template.bind(dialogueId, instance));
+    }
+    clear();
+    return continued ? Progress.CONTINUED : Progress.CLOSED;
+  }
+
+  private void clear() {
+    if (delimiter != null) {
+      GctUtil.release(delimiter);
+      delimiter = null;
+    }
+    order.clear();
+    staged = 0;
+    pending = 0;
+    keepOpen = false;
+    owner.cancelFlushTimer(this);
+  }
+}
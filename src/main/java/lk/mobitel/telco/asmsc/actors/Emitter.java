@@ -1,51 +1,314 @@
 package lk.mobitel.telco.asmsc.actors;
 
 import com.dialogic.signaling.gct.GctException;
-import com.dialogic.signaling.gct.GctLib;
-import com.dialogic.signaling.gct.GctMsg;
-import lk.mobitel.telco.asmsc.gct.GctMessage;
+import lk.mobitel.telco.asmsc.config.GctLink;
+import lk.mobitel.telco.asmsc.config.RuntimeConfiguration;
+import lk.mobitel.telco.asmsc.gct.GctEncodable;
+import lk.mobitel.telco.asmsc.gct.GctFrame;
+import lk.mobitel.telco.asmsc.gct.GctTransport;
 import lk.mobitel.telco.asmsc.gct.GctUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 /**
- * Sends out messages to a GCT module. This is a singleton object and must be initialized before
- * starting the actor system.
+ * Sends out messages to the GCT modules. This is a singleton object, created on first use; {@link
+ * GctUtil} must be initialized before that.
+ *
+ * <p>Each configured link has its own queue, a {@link MpscRingBuffer}, and its own emitter thread.
+ * Messages are queued by {@link #send} from any thread, into the queue of the link of their
+ * instance (see {@link GctUtil#linkIndexOf(long)}). The emitter thread of a link drains its queue
+ * in batches, encoding each message, addressing it from and to the modules of the link, and
+ * passing it to the {@link GctTransport}. Callers never block, and never see an exception: a
+ * message that cannot be queued, encoded or sent is reported to the {@link FailureListener}.
+ *
+ * <p>The messages of a dialogue turn can be queued together, with {@link #send(List)}. They take
+ * a single entry of the queue, and are sent back to back by the emitter thread.
  */
+@Slf4j
 public class Emitter {
 
-  private static Emitter INSTANCE = null;
+  /**
+   * Receives the messages that could not be sent.
+   */
+  @FunctionalInterface
+  public interface FailureListener {
+
+    /**
+     * Called once for each failed message. Called on the emitter thread, except for messages
+     * rejected because the queue is full, which are reported on the thread of {@link #send}. Must
+     * not block.
+     *
+     * @param message the message that was not sent
+     * @param cause   the reason
+     */
+    void onFailure(@NotNull GctEncodable message, @NotNull Exception cause);
+  }
+
+  /** Time the emitter thread parks for when the queue is empty, unless woken up earlier. */
+  private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  /** Messages queued as one entry, see {@link #send(List)}. */
+  private static final class Batch implements GctEncodable {
+    private final GctEncodable[] messages;
+
+    private Batch(GctEncodable[] messages) {
+      this.messages = messages;
+    }
+
+    @Override
+    public @NotNull GctFrame encode() throws IllegalStateException {
+      throw new IllegalStateException("A batch is encoded message by message");
+    }
+
+    @Override
+    public long getInstance() {
+      return messages[0].getInstance();
+    }
+
+    @Override
+    public void discard() {
+      for (GctEncodable message : messages) {
+        message.discard();
+      }
+    }
+
+    @Override
+    public String toString() {
+      return Arrays.toString(messages);
+    }
+  }
+
+  private static final class Holder {
+    private static final Emitter INSTANCE = new Emitter(GctUtil.config());
+  }
 
   /**
-   * Returns the singleton instance of the Emitter
+   * Returns the singleton instance of the Emitter. The emitter thread is started by the first call.
    *
    * @return Emitter instance
    */
   public static Emitter getInstance() {
-    if (INSTANCE == null) {
-      INSTANCE = new Emitter(GctUtil.config().remoteModuleId());
+    return Holder.INSTANCE;
+  }
+
+  /** The queue and emitter thread of a link. */
+  private final class Lane {
+    private final GctLink link;
+    private final MpscRingBuffer<GctEncodable> queue;
+    private final Thread thread;
+    private final boolean readdress;
+
+    /** Set by the emitter thread while it is parked, so that producers know to wake it up. */
+    private volatile boolean parked = false;
+
+    private Lane(GctLink link, int index, int capacity) {
+      this.link = link;
+      this.queue = new MpscRingBuffer<>(capacity);
+      this.readdress =
+          link.localModuleId() != GctUtil.localModuleId()
+              || link.remoteModuleId() != GctUtil.remoteModuleId();
+      this.thread = new Thread(this::run, "gct-emitter-" + index);
+      this.thread.setDaemon(true);
+    }
+
+    private boolean offer(GctEncodable message) {
+      if (!queue.offer(message)) {
+        return false;
+      }
+      if (parked) {
+        LockSupport.unpark(thread);
+      }
+      return true;
+    }
+
+    private void run() {
+      //noinspection InfiniteLoopStatement
+      for (; ; ) {
+        if (queue.drain(this::emit, batchSize) == 0) {
+          parked = true;
+          // Checked again after publishing the flag, so that a message queued in between is not
+          // left waiting for the whole park.
+          if (queue.isEmpty()) {
+            LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+          }
+          parked = false;
+        }
+      }
+    }
+
+    private void emit(@NotNull GctEncodable message) {
+      if (message instanceof Batch) {
+        for (GctEncodable batched : ((Batch) message).messages) {
+          emitOne(batched);
+        }
+        batches.incrementAndGet();
+      } else {
+        emitOne(message);
+      }
+    }
+
+    private void emitOne(@NotNull GctEncodable message) {
+      GctFrame encoded;
+      try {
+        encoded = message.encode();
+      } catch (RuntimeException e) {
+        fail(message, e);
+        return;
+      }
+      try {
+        if (readdress) {
+          // Messages are encoded with the default module ids.
+          encoded.setSrc(link.localModuleId());
+          encoded.setDst(link.remoteModuleId());
+        }
+        transport.send(link.remoteModuleId(), encoded);
+        sent.incrementAndGet();
+      } catch (GctException | RuntimeException e) {
+        release(encoded);
+        fail(message, e);
+      }
     }
-    return INSTANCE;
   }
 
-  private final short gctRemoteModuleId;
+  private final GctTransport transport;
+  private final int batchSize;
+  private final Lane[] lanes;
+
+  private volatile FailureListener failureListener =
+      (message, cause) ->
+          log.error(
+              "Emitter failed to send the message: {}, Exception occurred: {}.",
+              message,
+              cause.toString());
+
+  private final AtomicLong sent = new AtomicLong();
+  private final AtomicLong failed = new AtomicLong();
+  private final AtomicLong batches = new AtomicLong();
+
+  private Emitter(RuntimeConfiguration config) {
+    this.transport = GctUtil.transport();
+    this.batchSize = Math.max(1, config.emitterBatchSize());
+    List<GctLink> links = GctUtil.links();
+    this.lanes = new Lane[links.size()];
+    for (int i = 0; i < lanes.length; i++) {
+      lanes[i] = new Lane(links.get(i), i, config.emitterQueueCapacity());
+      lanes[i].thread.start();
+      log.info(
+          "Emitter started (queue: {}, batch: {}) for link {}",
+          lanes[i].queue.capacity(),
+          batchSize,
+          links.get(i));
+    }
+  }
 
-  private Emitter(short gctRemoteModuleId) {
-    this.gctRemoteModuleId = gctRemoteModuleId;
+  /**
+   * Sets the listener of failed messages. By default, failures are logged.
+   *
+   * @param failureListener the listener
+   */
+  public void setFailureListener(@NotNull FailureListener failureListener) {
+    this.failureListener = failureListener;
   }
 
   /**
-   * Sends the given message to configured remote module.
+   * Queues a message to be sent to the configured remote module. Returns immediately.
    *
    * @param message Message to send.
-   * @throws GctException if Sending is failed at GctLib
-   * @throws IllegalStateException if failed to parse the message into a GctMsg object
+   * @return false if the queue is full, or no link has the instance of the message. The message
+   *     is then discarded and reported as failed.
+   */
+  public boolean send(@NotNull GctEncodable message) {
+    int link = lanes.length == 1 ? 0 : GctUtil.linkIndexOf(message.getInstance());
+    if (link < 0) {
+      reject(message, new IllegalStateException("No link for instance " + message.getInstance()));
+      return false;
+    }
+    if (!lanes[link].offer(message)) {
+      reject(message, new IllegalStateException("Emitter queue is full"));
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Queues messages to be sent one after the other, as a single entry of the queue. No other
+   * message of the link is sent in between. The messages must all have the same instance, as those
+   * of a dialogue do. Returns immediately.
+   *
+   * @param messages Messages to send, in order.
+   * @return false if the queue is full, or no link has the instance of the messages. The messages
+   *     are then discarded and reported as failed, each on its own.
+   */
+  public boolean send(@NotNull List<? extends GctEncodable> messages) {
+    switch (messages.size()) {
+      case 0:
+        return true;
+      case 1:
+        return send(messages.get(0));
+      default:
+        return send(new Batch(messages.toArray(new GctEncodable[0])));
+    }
+  }
+
+  /**
+   * Gets the number of messages passed to the transport successfully.
+   *
+   * @return the number of sent messages
+   */
+  public long sent() {
+    return sent.get();
+  }
+
+  /**
+   * Gets the number of messages reported to the {@link FailureListener}.
+   *
+   * @return the number of failed messages
+   */
+  public long failed() {
+    return failed.get();
+  }
+
+  /**
+   * Gets the number of batches of {@link #send(List)} emitted, successfully or not.
+   *
+   * @return the number of emitted batches
    */
-  public void send(GctMessage message) throws GctException, IllegalStateException {
-    GctMsg encoded = GctUtil.encodeMsg(message);
+  public long batches() {
+    return batches.get();
+  }
+
+  private void release(@NotNull GctFrame encoded) {
+    try {
+      transport.relm(encoded);
+    } catch (GctException e) {
+      log.warn("Unable to release unsent GctFrame: {}", e.getMessage());
+    }
+  }
+
+  private void reject(@NotNull GctEncodable message, @NotNull Exception cause) {
+    if (message instanceof Batch) {
+      for (GctEncodable batched : ((Batch) message).messages) {
+        batched.discard();
+        fail(batched, cause);
+      }
+    } else {
+      message.discard();
+      fail(message, cause);
+    }
+  }
+
+  private void fail(@NotNull GctEncodable message, @NotNull Exception cause) {
+    failed.incrementAndGet();
     try {
-      GctLib.send(gctRemoteModuleId, encoded);
-    } catch (GctException ex) {
-      GctLib.relm(encoded);
-      throw ex;
+      failureListener.onFailure(message, cause);
+    } catch (RuntimeException e) {
+      log.error("Emitter failure listener threw an exception", e);
     }
   }
 }
@@ -0,0 +1,378 @@
+package lk.mobitel.telco.asmsc.actors;
+
+import lk.mobitel.telco.asmsc.actors.service.ServiceResult;
+import lk.mobitel.telco.asmsc.config.DialogueEngine;
+import lk.mobitel.telco.asmsc.gct.GctEncodable;
+import lk.mobitel.telco.asmsc.gct.GctTemplates;
+import lk.mobitel.telco.asmsc.gct.GctUtil;
+import lk.mobitel.telco.asmsc.map.Message;
+import lk.mobitel.telco.asmsc.map.constant.ApplicationContext;
+import lk.mobitel.telco.asmsc.map.constant.UserReason;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * The {@link DialogueEngine#FLYWEIGHT} dialogue engine of a {@link Server} shard. Does what {@link
+ * ServingDialogue} does, for all dialogues of the shard at once, on the thread of the shard.
+ * Dialogues are slots of a {@link DialogueTable}, and replies are queued to the {@link Emitter}
+ * directly.
+ *
+ * <p>Each slot has a {@link DialogueTurn}, created on the first turn of the slot and reused after.
+ * The stages of the handlers are handed to the shard, which passes their results back to {@link
+ * #serviceResponded} on its own thread. The flush timers of the turns are kept in a {@link
+ * TimingWheel}, moved forward by the shard with its guard timers through {@link #advance(long)}, so
+ * their resolution is the guard tick.
+ *
+ * <p>Terminating indications are handled by the {@link Server}, which calls {@link
+ * #terminate(int)}.
+ *
+ * <p>Every message passed in is consumed: it is released, or handed over to a reply.
+ *
+ * @author NISALBA
+ */
+@Slf4j
+final class FlyweightDialogues {
+
+  /** Minimum time between two logs of dialogues rejected because the table is full. */
+  private static final long REJECTION_LOG_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private final ShardSlots shardSlots;
+  private final DialogueTable table;
+  private final Emitter emitter;
+  private final BiConsumer<CompletionStage<ServiceResult>, DialogueTurn.Invoke> completions;
+  private final DialogueTurn.Owner owner = new TurnOwner();
+
+  /** Turns of the dialogues, by slot. A turn is created on the first turn of its slot. */
+  private final DialogueTurn[] turns;
+
+  /** Flush timers of the turns, by slot. Null if answers are not flushed early. */
+  private final @Nullable TimingWheel flushes;
+
+  private final long flushTicks;
+
+  /** Number of rejected dialogues when the table being full was last logged, and the time of it. */
+  private long rejectionsLogged = 0L;
+  private long rejectionLoggedNanos = 0L;
+
+  /**
+   * @param shardSlots  the dialogue ids of the shard
+   * @param limit       the maximum number of dialogues open at the same time, in all shards
+   * @param flushTicks  the number of ticks the answers of a turn may be held back; below 1, they
+   *                    are held until the end of the turn
+   * @param completions takes the stage of each started invocation, and passes its result back to
+   *                    {@link #serviceResponded} on the thread of the shard
+   */
+  FlyweightDialogues(
+      @NotNull ShardSlots shardSlots,
+      int limit,
+      long flushTicks,
+      @NotNull BiConsumer<CompletionStage<ServiceResult>, DialogueTurn.Invoke> completions) {
+    this.shardSlots = shardSlots;
+    this.table = new DialogueTable(shardSlots, limit);
+    this.emitter = Emitter.getInstance();
+    this.completions = completions;
+    this.turns = new DialogueTurn[shardSlots.capacity()];
+    this.flushes = flushTicks > 0 ? new TimingWheel(shardSlots.capacity()) : null;
+    this.flushTicks = flushTicks;
+  }
+
+  /**
+   * Handles a dialogue or service indication.
+   *
+   * @param msg the incoming message
+   */
+  void process(@NotNull Message msg) {
+    int dialogueId = msg.getId();
+    switch (msg.getType()) {
+      case MAP_MSG_DLG_IND:
+        switch (msg.getPrimitive()) {
+          case MAPDT_OPEN_IND:
+            open(dialogueId, msg);
+            break;
+          case MAPDT_DELIMITER_IND:
+            if (isOpenOrElseAbort(dialogueId, msg)) {
+              execute(dialogueId, msg);
+            } else {
+              GctUtil.release(msg);
+            }
+            break;
+          default:
+            log.warn("Unsupported dialogue indication: {}", msg);
+            GctUtil.release(msg);
+            break;
+        }
+        break;
+      case MAP_MSG_SRV_IND:
+        if (isOpenOrElseAbort(dialogueId, msg)) {
+          service(dialogueId, msg);
+        }
+        GctUtil.release(msg);
+        break;
+      default:
+        log.info("Unsupported message");
+        GctUtil.release(msg);
+    }
+  }
+
+  /**
+   * Answers an invocation with the result of its handler. The turn ends when no invocation is
+   * pending any more: the dialogue is closed, or kept open if a result asks so. Results of a turn
+   * that has already ended are dropped.
+   *
+   * @param invoke   the invocation, as handed to the shard
+   * @param response the result, or a failure
+   * @return false if the result is dropped
+   */
+  boolean serviceResponded(
+      @NotNull DialogueTurn.Invoke invoke, @NotNull ServingDialogue.ServiceResponse response) {
+    DialogueTurn turn = invoke.turn();
+    DialogueTurn.Progress progress = turn.complete(invoke, response);
+    if (progress == null) {
+      return false;
+    }
+    table.fire(turn.dialogueId(), DialogueTable.Event.RESPONSE);
+    progressed(turn.dialogueId(), progress);
+    return true;
+  }
+
+  /**
+   * Moves the flush timers forward, sending the answers held back by the turns whose timer has
+   * expired. Those are the answers of the first invocations of each turn.
+   *
+   * @param tick the current tick, as for the guard timers of the shard
+   */
+  void advance(long tick) {
+    if (flushes != null) {
+      flushes.advance(tick, slot -> turns[slot].flush());
+    }
+  }
+
+  /**
+   * Checks whether a dialogue is open.
+   *
+   * @param dialogueId id of the dialogue
+   * @return true if the dialogue has a slot in the table
+   */
+  boolean isOpen(int dialogueId) {
+    return table.state(dialogueId) != null;
+  }
+
+  /**
+   * Ends a dialogue on its terminating indication, freeing its slot.
+   *
+   * @param dialogueId id of the dialogue
+   * @return true if the dialogue was open
+   */
+  boolean terminate(int dialogueId) {
+    if (!table.fire(dialogueId, DialogueTable.Event.END)) {
+      return false;
+    }
+    dropTurn(dialogueId);
+    return true;
+  }
+
+  /**
+   * Ends a dialogue whose guard timer has expired, aborting it with the given reason.
+   *
+   * @param dialogueId id of the dialogue
+   * @param reason     the user reason of the abort
+   * @return true if the dialogue was open
+   */
+  boolean expire(int dialogueId, @NotNull UserReason reason) {
+    DialogueState state = table.state(dialogueId);
+    if (state == null) {
+      return false;
+    }
+    long instance = table.instance(dialogueId);
+    table.fire(dialogueId, DialogueTable.Event.END);
+    dropTurn(dialogueId);
+    send(GctTemplates.userAbort(reason).bind(dialogueId, instance));
+    log.warn("Incoming dialogue #{} timed out in state {}", dialogueId, state);
+    return true;
+  }
+
+  private void open(int dialogueId, @NotNull Message msg) {
+    try {
+      if (table.state(dialogueId) != null) {
+        log.error("Dialogue #{} is unavailable", dialogueId);
+        abort(dialogueId, msg, UserReason.MAPUR_procedure_error);
+        return;
+      }
+      if (table.isFull()) {
+        table.reject();
+        logRejections(dialogueId);
+        abort(dialogueId, msg, UserReason.MAPUR_user_resource_limitation);
+        return;
+      }
+
+      ApplicationContext applicationContext;
+      try {
+        applicationContext = GctUtil.getApplicationContext(msg);
+      } catch (IllegalArgumentException | NoSuchElementException e) {
+        log.error(
+            "Incoming dialogue opening failed for #{}: Bad Application Context: {}",
+            dialogueId,
+            e.getMessage());
+        abort(dialogueId, msg, UserReason.MAPUR_procedure_error);
+        return;
+      }
+      if (applicationContext == null) {
+        log.error(
+            "Incoming dialogue opening failed for #{}: Application Context missing", dialogueId);
+        abort(dialogueId, msg, UserReason.MAPUR_procedure_error);
+        return;
+      }
+
+      table.allocate(dialogueId, msg.getInstance());
+      table.fire(dialogueId, DialogueTable.Event.OPEN);
+      send(
+          GctTemplates.openAccept(applicationContext)
+              .bind(dialogueId, msg.getInstance())
+              .replacing(msg));
+      log.info("Incoming dialogue opened successfully #{}", dialogueId);
+    } finally {
+      GctUtil.release(msg);
+    }
+  }
+
+  /**
+   * Logs the dialogues rejected because the table is full, at most once per {@link
+   * #REJECTION_LOG_INTERVAL_NANOS}, with the number of rejections since the last log.
+   *
+   * @param dialogueId id of the latest rejected dialogue
+   */
+  private void logRejections(int dialogueId) {
+    long now = System.nanoTime();
+    if (rejectionsLogged > 0 && now - rejectionLoggedNanos < REJECTION_LOG_INTERVAL_NANOS) {
+      return;
+    }
+    log.warn(
+        "Dialogue table is full, aborted {} dialogue(s) up to #{}: {}",
+        table.rejected() - rejectionsLogged,
+        dialogueId,
+        table);
+    rejectionsLogged = table.rejected();
+    rejectionLoggedNanos = now;
+  }
+
+  /** Adds a service indication to the turn of its dialogue. */
+  private void service(int dialogueId, @NotNull Message msg) {
+    DialogueState state = table.state(dialogueId);
+    if (state != DialogueState.OPENED && state != DialogueState.RECEIVED) {
+      log.warn(
+          "Service indication is not expected on dialogue #{} in state {}", dialogueId, state);
+      return;
+    }
+    if (turnOf(dialogueId).collect(msg)) {
+      table.fire(dialogueId, DialogueTable.Event.SERVICE);
+    }
+  }
+
+  /** Executes the services of a turn on its delimiter, which is handed over to the turn. */
+  private void execute(int dialogueId, @NotNull Message msg) {
+    DialogueState state = table.state(dialogueId);
+    if (!table.fire(dialogueId, DialogueTable.Event.EXECUTE)) {
+      log.warn("Delimiter is not expected on dialogue #{} in state {}", dialogueId, state);
+      GctUtil.release(msg);
+      return;
+    }
+    progressed(dialogueId, turnOf(dialogueId).execute(table.instance(dialogueId), msg));
+  }
+
+  /** Follows the progress of the turn of a dialogue in the table. */
+  private void progressed(int dialogueId, @NotNull DialogueTurn.Progress progress) {
+    switch (progress) {
+      case CONTINUED:
+        // A turn without invocations has left the dialogue OPENED already.
+        table.fire(dialogueId, DialogueTable.Event.CONTINUE);
+        break;
+      case CLOSED:
+        table.fire(dialogueId, DialogueTable.Event.END);
+        log.info("Incoming dialogue #{} is ended.", dialogueId);
+        break;
+      default:
+        break;
+    }
+  }
+
+  /** Gets the turn of an open dialogue, creating it on the first turn of its slot. */
+  private @NotNull DialogueTurn turnOf(int dialogueId) {
+    int slot = shardSlots.slotOf(dialogueId);
+    DialogueTurn turn = turns[slot];
+    if (turn == null) {
+      turn = new DialogueTurn(dialogueId, emitter, owner);
+      turns[slot] = turn;
+    }
+    return turn;
+  }
+
+  /** Gives up the turn of a dialogue that has ended, cancelling the running handlers. */
+  private void dropTurn(int dialogueId) {
+    int slot = shardSlots.slotOf(dialogueId);
+    DialogueTurn turn = slot < 0 ? null : turns[slot];
+    if (turn != null) {
+      turn.cancel();
+    }
+  }
+
+  /**
+   * Checks that a dialogue is open. If not, the generic abort request is issued to the
+   * MAP-Provider, as {@link Server} does for unopened dialogues.
+   *
+   * @return true if the dialogue is open
+   */
+  private boolean isOpenOrElseAbort(int dialogueId, @NotNull Message msg) {
+    if (table.state(dialogueId) != null) {
+      return true;
+    }
+    log.error(
+        "Received unexpected message for unopened dialogue #{}. This will be ignored (message: {})",
+        dialogueId,
+        msg);
+    abort(dialogueId, msg, UserReason.MAPUR_procedure_error);
+    return false;
+  }
+
+  private void abort(int dialogueId, @NotNull Message msg, @NotNull UserReason reason) {
+    send(GctTemplates.userAbort(reason).bind(dialogueId, msg.getInstance()).replacing(msg));
+  }
+
+  private void send(@NotNull GctEncodable message) {
+    emitter.send(message);
+  }
+
+  @Override
+  public String toString() {
+    return table.toString();
+  }
+
+  /** Runs the turns on the shard: results are handed to it, and flushes are timed by the wheel. */
+  private final class TurnOwner implements DialogueTurn.Owner {
+
+    @Override
+    public void started(
+        @NotNull CompletionStage<ServiceResult> stage, @NotNull DialogueTurn.Invoke invoke) {
+      completions.accept(stage, invoke);
+    }
+
+    @Override
+    public void startFlushTimer(@NotNull DialogueTurn turn) {
+      if (flushes != null) {
+        flushes.schedule(shardSlots.slotOf(turn.dialogueId()), flushTicks);
+      }
+    }
+
+    @Override
+    public void cancelFlushTimer(@NotNull DialogueTurn turn) {
+      if (flushes != null) {
+        flushes.cancel(shardSlots.slotOf(turn.dialogueId()));
+      }
+    }
+  }
+}
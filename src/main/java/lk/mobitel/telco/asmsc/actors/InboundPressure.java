@@ -0,0 +1,106 @@
+package lk.mobitel.telco.asmsc.actors;
+
+import lk.mobitel.telco.asmsc.config.RuntimeConfiguration;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Depth of the inbound path: the number of received messages sent to each {@link Server} shard
+ * that the shard has not processed yet. The {@link ServerRouter} counts messages in as it tells
+ * the shards, and each shard counts them out after processing.
+ *
+ * <p>The mailboxes of the shards are unbounded, so the {@link Collector}s use the depth to stop
+ * the inbound path before memory runs out. The inbound path is overloaded when the deepest shard
+ * reaches the high watermark, and stays so until every shard is drained to the low watermark (see
+ * {@link RuntimeConfiguration#inboundHighWatermark()}). A high watermark below 1 disables this.
+ *
+ * <p>Can be used from any thread.
+ *
+ * @author NISALBA
+ */
+public final class InboundPressure {
+
+  private final AtomicIntegerArray depth;
+  private final int highWatermark;
+  private final int lowWatermark;
+
+  /**
+   * @param shards        the number of shards
+   * @param highWatermark depth of a shard at which the inbound path is overloaded; below 1
+   *                      disables the watermarks
+   * @param lowWatermark  depth all shards must be drained to before the overload is over
+   */
+  InboundPressure(int shards, int highWatermark, int lowWatermark) {
+    this.depth = new AtomicIntegerArray(shards);
+    this.highWatermark = highWatermark;
+    this.lowWatermark = Math.max(0, Math.min(lowWatermark, highWatermark - 1));
+  }
+
+  /**
+   * Counts messages sent to a shard.
+   *
+   * @param shard index of the shard
+   * @param count number of messages
+   */
+  void enqueued(int shard, int count) {
+    depth.addAndGet(shard, count);
+  }
+
+  /**
+   * Counts messages processed by a shard.
+   *
+   * @param shard index of the shard
+   * @param count number of messages
+   */
+  void processed(int shard, int count) {
+    depth.addAndGet(shard, -count);
+  }
+
+  /**
+   * Gets the number of messages waiting for a shard.
+   *
+   * @param shard index of the shard
+   * @return the depth of the shard
+   */
+  public int depth(int shard) {
+    return depth.get(shard);
+  }
+
+  /**
+   * Gets the depth of the deepest shard.
+   *
+   * @return the largest depth
+   */
+  public int maxDepth() {
+    int max = 0;
+    for (int i = 0; i < depth.length(); i++) {
+      max = Math.max(max, depth.get(i));
+    }
+    return max;
+  }
+
+  /**
+   * Checks the high watermark.
+   *
+   * @return true if the watermarks are enabled and a shard has reached the high watermark
+   */
+  public boolean isAboveHighWatermark() {
+    return highWatermark > 0 && maxDepth() >= highWatermark;
+  }
+
+  /**
+   * Checks the low watermark.
+   *
+   * @return true if the watermarks are disabled, or every shard is at or below the low watermark
+   */
+  public boolean isBelowLowWatermark() {
+    return highWatermark < 1 || maxDepth() <= lowWatermark;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "{\"depth\":%s,\"highWatermark\":%d,\"lowWatermark\":%d}",
+        depth, highWatermark, lowWatermark);
+  }
+}
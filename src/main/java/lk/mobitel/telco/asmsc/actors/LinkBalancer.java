@@ -0,0 +1,110 @@
+package lk.mobitel.telco.asmsc.actors;
+
+import lk.mobitel.telco.asmsc.config.GctLink;
+import lk.mobitel.telco.asmsc.config.RuntimeConfiguration;
+import lk.mobitel.telco.asmsc.gct.GctUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Spreads outgoing dialogues over the configured links. A new dialogue goes to the link with the
+ * fewest outstanding dialogues; ties are broken in turn, so that idle links share the load evenly.
+ *
+ * <p>Each link has its own block of outgoing dialogue ids (see {@link
+ * RuntimeConfiguration#links()}), given by {@link #outgoingDialogueIdBase(int)}. A balancer can be
+ * used from any thread.
+ *
+ * @author NISALBA
+ */
+public final class LinkBalancer {
+
+  private final List<GctLink> links;
+  private final AtomicIntegerArray outstanding;
+  private final AtomicInteger turn = new AtomicInteger();
+  private final int outgoingBase;
+  private final int outgoingCount;
+
+  /** Creates a balancer over {@link GctUtil#links()}. */
+  public LinkBalancer() {
+    RuntimeConfiguration config = GctUtil.config();
+    this.links = GctUtil.links();
+    this.outstanding = new AtomicIntegerArray(links.size());
+    this.outgoingBase = config.outgoingDialogueIdBase();
+    this.outgoingCount = config.outgoingDialogueCount();
+  }
+
+  /**
+   * Picks the link for a new outgoing dialogue, and counts the dialogue as outstanding on it. The
+   * dialogue must be given back with {@link #release(int)} when it ends.
+   *
+   * @return the index of the link
+   */
+  public int acquire() {
+    int size = links.size();
+    int start = Math.floorMod(turn.getAndIncrement(), size);
+    int best = start;
+    int bestCount = outstanding.get(start);
+    for (int i = 1; i < size && bestCount > 0; i++) {
+      int candidate = (start + i) % size;
+      int count = outstanding.get(candidate);
+      if (count < bestCount) {
+        best = candidate;
+        bestCount = count;
+      }
+    }
+    outstanding.incrementAndGet(best);
+    return best;
+  }
+
+  /**
+   * Counts an outgoing dialogue of a link as ended.
+   *
+   * @param link index of the link, as returned by {@link #acquire()}
+   */
+  public void release(int link) {
+    outstanding.decrementAndGet(link);
+  }
+
+  /**
+   * Gets the number of outgoing dialogues of a link that have not ended.
+   *
+   * @param link index of the link
+   * @return the number of outstanding dialogues
+   */
+  public int outstanding(int link) {
+    return outstanding.get(link);
+  }
+
+  /**
+   * Gets a link.
+   *
+   * @param link index of the link
+   * @return the link; its instance must be set on the messages of the dialogue
+   */
+  public @NotNull GctLink link(int link) {
+    return links.get(link);
+  }
+
+  /**
+   * Gets the first outgoing dialogue id of a link. The link uses the ids <code>[base, base +
+   * outgoing.dialogue.count)</code>.
+   *
+   * @param link index of the link
+   * @return the first outgoing dialogue id of the link
+   */
+  public int outgoingDialogueIdBase(int link) {
+    return outgoingBase + link * outgoingCount;
+  }
+
+  /**
+   * Gets the number of links.
+   *
+   * @return the number of links
+   */
+  public int size() {
+    return links.size();
+  }
+}
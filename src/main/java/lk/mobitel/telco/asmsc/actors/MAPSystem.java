@@ -7,16 +7,29 @@ import akka.actor.typed.javadsl.AbstractBehavior;
 import akka.actor.typed.javadsl.ActorContext;
 import akka.actor.typed.javadsl.Behaviors;
 import akka.actor.typed.javadsl.Receive;
-import lk.mobitel.telco.asmsc.gct.GctMessage;
+import lk.mobitel.telco.asmsc.actors.service.SendRtgInfoConfirm;
+import lk.mobitel.telco.asmsc.config.RuntimeConfiguration;
 import lk.mobitel.telco.asmsc.gct.GctUtil;
+import lk.mobitel.telco.asmsc.map.Message;
 import lk.mobitel.telco.asmsc.map.Parameter;
 import lombok.Value;
 import org.jetbrains.annotations.NotNull;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Switch is the main guardian of the ASMSC actor hierarchy. It deploys the
- * {@link Server} and {@link Client} actors. Then routes messages to
+ * {@link Server} shards and the {@link Client} actor. Then routes messages to
  * those actors.
+ *
+ * <p>The number of shards is {@link RuntimeConfiguration#serverShards()}. The
+ * {@link ServerRouter} of the shards is handed to the {@link Collector} with
+ * {@link GetServerRouter}, so that received messages are sent to their shard
+ * directly, without passing through this actor. The {@link MapClient} of the
+ * outgoing dialogues is handed out with {@link GetMapClient}.
  */
 public class MAPSystem extends AbstractBehavior<MAPSystem.Command> {
 
@@ -30,7 +43,7 @@ public class MAPSystem extends AbstractBehavior<MAPSystem.Command> {
    */
   @Value
   public static class ProcessMessage implements Command {
-    GctMessage message;
+    Message message;
   }
 
   /**
@@ -40,25 +53,94 @@ public class MAPSystem extends AbstractBehavior<MAPSystem.Command> {
   public static class RequestRoutingInfo implements Command {
     Parameter msisdn;
     Parameter scAddr;
+    CompletableFuture<SendRtgInfoConfirm> result;
+  }
+
+  /**
+   * Request the client of the outgoing dialogues
+   */
+  @Value
+  public static class GetMapClient implements Command {
+    ActorRef<MapClient> replyTo;
+  }
+
+  /**
+   * Request the router of the {@link Server} shards
+   */
+  @Value
+  public static class GetServerRouter implements Command {
+    ActorRef<ServerRouter> replyTo;
+  }
+
+  /**
+   * Request the admission control of the incoming dialogues, to read its counters
+   */
+  @Value
+  public static class GetAdmissionControl implements Command {
+    ActorRef<AdmissionControl> replyTo;
+  }
+
+  /**
+   * Request the counters of the incoming dialogues torn down by the MAP provider
+   */
+  @Value
+  public static class GetTeardownCounters implements Command {
+    ActorRef<TeardownCounters> replyTo;
   }
 
-  private final ActorRef<Server.Command> server;
+  /**
+   * Creates the MAPSystem guardian
+   *
+   * @return A new MAPSystem actor
+   */
+  public static Behavior<Command> create() {
+    return Behaviors.setup(MAPSystem::new);
+  }
+
+  private final ServerRouter router;
+  private final AdmissionControl admission;
+  private final TeardownCounters teardowns = new TeardownCounters();
   private final ActorRef<Client.Command> client;
+  private final MapClient mapClient;
 
   private MAPSystem(ActorContext<Command> context) {
     super(context);
 
-    server = getContext().spawn(
-        Behaviors
-            .supervise(Server.create(context.getSelf()))
-            .onFailure(SupervisorStrategy.restart()),
-        "server");
+    RuntimeConfiguration config = GctUtil.config();
+    int shardCount = config.serverShards();
+    if (shardCount < 1) {
+      shardCount = Runtime.getRuntime().availableProcessors();
+    }
 
+    InboundPressure pressure =
+        new InboundPressure(
+            shardCount, config.inboundHighWatermark(), config.inboundLowWatermark());
+    admission = new AdmissionControl(config.admissionLimits(), config.admissionRefuseReason());
+    List<ActorRef<Server.Command>> shards = new ArrayList<>(shardCount);
+    for (int i = 0; i < shardCount; i++) {
+      shards.add(getContext().spawn(
+          Behaviors
+              .supervise(
+                  Server.create(context.getSelf(), i, shardCount, pressure, admission, teardowns))
+              .onFailure(SupervisorStrategy.restart()),
+          "server-" + i));
+    }
     client = getContext().spawn(
         Behaviors
-            .supervise(Client.create())
+            .supervise(Client.create(new LinkBalancer()))
             .onFailure(SupervisorStrategy.restart()),
         "client");
+    mapClient = new MapClient(client);
+
+    router = new ServerRouter(
+        shards,
+        config.incomingDialogueIdBase(),
+        config.incomingDialogueCount() * GctUtil.links().size(),
+        pressure,
+        client,
+        config.outgoingDialogueIdBase(),
+        config.outgoingDialogueCount() * GctUtil.links().size());
+    context.getLog().info("Deployed {} server shards", shardCount);
   }
 
 
@@ -66,14 +148,57 @@ public class MAPSystem extends AbstractBehavior<MAPSystem.Command> {
   public Receive<Command> createReceive() {
     return newReceiveBuilder()
         .onMessage(ProcessMessage.class, this::onProcessMessage)
+        .onMessage(RequestRoutingInfo.class, this::onRequestRoutingInfo)
+        .onMessage(GetMapClient.class, this::onGetMapClient)
+        .onMessage(GetServerRouter.class, this::onGetServerRouter)
+        .onMessage(GetAdmissionControl.class, this::onGetAdmissionControl)
+        .onMessage(GetTeardownCounters.class, this::onGetTeardownCounters)
         .build();
   }
 
   private Behavior<Command> onProcessMessage(@NotNull ProcessMessage handle) {
-    if (GctUtil.isIncomingMessage(handle.message())) {
-      server.tell(new Server.ProcessIncomingMessage(handle.message()));
-    }
+    router.routeOrRelease(handle.message());
+    return this;
+  }
+
+  private Behavior<Command> onRequestRoutingInfo(@NotNull RequestRoutingInfo request) {
+    mapClient
+        .sendRoutingInfoForSm(bytesOf(request.msisdn()), bytesOf(request.scAddr()))
+        .whenComplete(
+            (confirm, failure) -> {
+              if (failure == null) {
+                request.result().complete(confirm);
+              } else {
+                request.result().completeExceptionally(failure);
+              }
+            });
+    return this;
+  }
+
+  private Behavior<Command> onGetMapClient(@NotNull GetMapClient request) {
+    request.replyTo().tell(mapClient);
+    return this;
+  }
+
+  private static byte[] bytesOf(@NotNull Parameter parameter) {
+    ByteBuffer data = parameter.getData().duplicate();
+    byte[] bytes = new byte[data.remaining()];
+    data.get(bytes);
+    return bytes;
+  }
+
+  private Behavior<Command> onGetServerRouter(@NotNull GetServerRouter request) {
+    request.replyTo().tell(router);
+    return this;
+  }
+
+  private Behavior<Command> onGetAdmissionControl(@NotNull GetAdmissionControl request) {
+    request.replyTo().tell(admission);
+    return this;
+  }
 
+  private Behavior<Command> onGetTeardownCounters(@NotNull GetTeardownCounters request) {
+    request.replyTo().tell(teardowns);
     return this;
   }
 }
@@ -0,0 +1,108 @@
+package lk.mobitel.telco.asmsc.actors;
+
+import akka.actor.typed.ActorRef;
+import lk.mobitel.telco.asmsc.actors.service.MtForwardSmConfirm;
+import lk.mobitel.telco.asmsc.actors.service.SendRtgInfoConfirm;
+import lk.mobitel.telco.asmsc.actors.service.TypedServicePrimitive;
+import lk.mobitel.telco.asmsc.gct.GctParameter;
+import lk.mobitel.telco.asmsc.gct.SccpAddress;
+import lk.mobitel.telco.asmsc.map.constant.ApplicationContext;
+import lk.mobitel.telco.asmsc.map.constant.ParameterName;
+import lk.mobitel.telco.asmsc.map.constant.Primitive;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Non-blocking API of the outgoing MAP services. Each call opens an outgoing dialogue through the
+ * {@link Client}, and returns at once with the pending confirmation of the service. Get the client
+ * with {@link MAPSystem.GetMapClient}; it can be used from any thread.
+ *
+ * <p>A stage completes normally with the confirmation, which may carry a user or provider error.
+ * It completes exceptionally if the dialogue is refused, aborted or closed before the
+ * confirmation, with an {@link IllegalStateException}, or if it times out, with a {@link
+ * java.util.concurrent.TimeoutException}. Stages are completed on the thread of the {@link
+ * Client}: dependent actions that do more than hand the result over should use the
+ * <code>*Async</code> methods of {@link CompletionStage}.
+ *
+ * <p>Addresses are MAP <code>AddressString</code>s: an octet of nature and plan, followed by the
+ * digits in TBCD.
+ *
+ * @author NISALBA
+ */
+public final class MapClient {
+
+  private final ActorRef<Client.Command> client;
+
+  /**
+   * @param client the client actor running the dialogues
+   */
+  MapClient(@NotNull ActorRef<Client.Command> client) {
+    this.client = client;
+  }
+
+  /**
+   * Asks the HLR of a subscriber where to deliver a short message (<code>
+   * MAP-SEND-ROUTING-INFO-FOR-SM</code>). The dialogue is sent to the HLR by the global title of
+   * the MSISDN.
+   *
+   * @param msisdn the MSISDN of the subscriber
+   * @param scAddr the address of the service centre
+   * @return the confirmation
+   */
+  public @NotNull CompletionStage<SendRtgInfoConfirm> sendRoutingInfoForSm(
+      byte @NotNull [] msisdn, byte @NotNull [] scAddr) {
+    return request(
+        ApplicationContext.SHORTMSG_GATEWAY_CONTEXT,
+        SccpAddress.ofAddressString(msisdn, SccpAddress.SSN_HLR),
+        Primitive.MAPST_SND_RTISM_REQ,
+        List.of(
+            GctParameter.ofBytes(ParameterName.MAPPN_msisdn, msisdn),
+            GctParameter.of8BitValue(ParameterName.MAPPN_sm_rp_pri, (byte) 1),
+            GctParameter.ofBytes(ParameterName.MAPPN_sc_addr, scAddr)),
+        SendRtgInfoConfirm.class);
+  }
+
+  /**
+   * Delivers a short message to the serving node of a subscriber (<code>
+   * MAP-MT-FORWARD-SHORT-MESSAGE</code>), as found by {@link #sendRoutingInfoForSm}. The
+   * parameters are given as coded in their MAP parameters, as in {@link
+   * lk.mobitel.telco.asmsc.actors.service.MtForwardSmIndication}.
+   *
+   * @param servingNode the MSC number (or SGSN number) of the subscriber
+   * @param smRpDa      the destination, <code>MAPPN_sm_rp_da</code>, usually the IMSI
+   * @param smRpOa      the origin, <code>MAPPN_sm_rp_oa</code>, usually the service centre
+   * @param smRpUi      the TPDU, <code>MAPPN_sm_rp_ui</code>
+   * @return the confirmation
+   */
+  public @NotNull CompletionStage<MtForwardSmConfirm> mtForwardSm(
+      byte @NotNull [] servingNode,
+      byte @NotNull [] smRpDa,
+      byte @NotNull [] smRpOa,
+      byte @NotNull [] smRpUi) {
+    return request(
+        ApplicationContext.SHORTMSG_MTRELAY_CONTEXT,
+        SccpAddress.ofAddressString(servingNode, SccpAddress.SSN_MSC),
+        Primitive.MAPST_MT_FWD_SM_REQ,
+        List.of(
+            GctParameter.ofBytes(ParameterName.MAPPN_sm_rp_da, smRpDa),
+            GctParameter.ofBytes(ParameterName.MAPPN_sm_rp_oa, smRpOa),
+            GctParameter.ofBytes(ParameterName.MAPPN_sm_rp_ui, smRpUi)),
+        MtForwardSmConfirm.class);
+  }
+
+  private <T extends TypedServicePrimitive> @NotNull CompletionStage<T> request(
+      @NotNull ApplicationContext applicationContext,
+      byte @NotNull [] destinationAddress,
+      @NotNull Primitive primitive,
+      @NotNull List<GctParameter> parameters,
+      @NotNull Class<T> confirmation) {
+    CompletableFuture<TypedServicePrimitive> result = new CompletableFuture<>();
+    client.tell(
+        new Client.Request(
+            applicationContext, destinationAddress, primitive, parameters, result));
+    return result.thenApply(confirmation::cast);
+  }
+}
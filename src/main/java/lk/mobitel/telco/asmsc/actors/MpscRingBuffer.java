@@ -0,0 +1,130 @@
+package lk.mobitel.telco.asmsc.actors;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * A bounded, lock-free queue with many producers and a single consumer.
+ *
+ * <p>Elements are kept in a ring of preallocated cells. Each cell has a sequence number telling
+ * whether it is free for the producer of a given position, or filled for the consumer. Producers
+ * claim a position with one compare-and-set on the tail, then publish the element by advancing the
+ * sequence of its cell. The consumer owns the head and needs no atomic operation besides reading
+ * and advancing cell sequences.
+ *
+ * <p>{@link #offer} may be called from any thread. {@link #poll}, {@link #drain} and {@link
+ * #isEmpty} must only be called from the consumer thread.
+ *
+ * @param <E> type of the elements
+ * @author NISALBA
+ */
+final class MpscRingBuffer<E> {
+
+  private final int mask;
+  private final Object[] elements;
+  private final AtomicLongArray sequences;
+  private final AtomicLong tail = new AtomicLong();
+  private long head = 0L;
+
+  /**
+   * @param capacity the minimum number of elements the queue can hold; rounded up to a power of two
+   */
+  MpscRingBuffer(int capacity) {
+    if (capacity < 1 || capacity > 1 << 30) {
+      throw new IllegalStateException("Invalid ring buffer capacity: " + capacity);
+    }
+    int size = Integer.highestOneBit(capacity);
+    if (size < capacity) {
+      size <<= 1;
+    }
+    this.mask = size - 1;
+    this.elements = new Object[size];
+    this.sequences = new AtomicLongArray(size);
+    for (int i = 0; i < size; i++) {
+      sequences.set(i, i);
+    }
+  }
+
+  /**
+   * Adds an element at the tail of the queue.
+   *
+   * @param element the element to add
+   * @return false if the queue is full, in which case the element is not added
+   */
+  boolean offer(@NotNull E element) {
+    for (; ; ) {
+      long position = tail.get();
+      int index = (int) position & mask;
+      long available = sequences.get(index) - position;
+      if (available == 0) {
+        if (tail.compareAndSet(position, position + 1)) {
+          elements[index] = element;
+          sequences.set(index, position + 1);
+          return true;
+        }
+      } else if (available < 0) {
+        return false;
+      }
+      // Another producer claimed the position first; retry with the new tail.
+    }
+  }
+
+  /**
+   * Removes the element at the head of the queue.
+   *
+   * @return the element, or null if the queue is empty
+   */
+  @SuppressWarnings("unchecked")
+  @Nullable
+  E poll() {
+    int index = (int) head & mask;
+    if (sequences.get(index) != head + 1) {
+      return null;
+    }
+    E element = (E) elements[index];
+    elements[index] = null;
+    sequences.set(index, head + mask + 1);
+    head++;
+    return element;
+  }
+
+  /**
+   * Removes up to {@code limit} elements from the head of the queue, passing them to {@code
+   * consumer} in order.
+   *
+   * @param consumer receives the removed elements
+   * @param limit    the maximum number of elements to remove
+   * @return the number of elements removed
+   */
+  int drain(@NotNull Consumer<? super E> consumer, int limit) {
+    int count = 0;
+    E element;
+    while (count < limit && (element = poll()) != null) {
+      consumer.accept(element);
+      count++;
+    }
+    return count;
+  }
+
+  /**
+   * Returns true if the queue holds no published element.
+   *
+   * @return true if {@link #poll()} would return null
+   */
+  boolean isEmpty() {
+    return sequences.get((int) head & mask) != head + 1;
+  }
+
+  /**
+   * Gets the number of cells.
+   *
+   * @return the maximum number of elements the queue can hold
+   */
+  int capacity() {
+    return elements.length;
+  }
+}
@@ -0,0 +1,85 @@
+package lk.mobitel.telco.asmsc.actors;
+
+import lk.mobitel.telco.asmsc.config.RuntimeConfiguration;
+import lk.mobitel.telco.asmsc.gct.GctEncodable;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Staging area of the outgoing messages of a dialogue turn. The replies of the turn are held here
+ * as they are made, and the whole turn is handed to the {@link Emitter} as one batch when the
+ * dialogue primitive that ends it is staged. Messages are sent in the order they were staged.
+ *
+ * <p>The owner of a stage flushes it early if the turn takes too long (see {@link
+ * RuntimeConfiguration#outboundFlushTimeout()}), and discards it if the dialogue ends without
+ * finishing the turn. A stage is not thread-safe; it belongs to a single dialogue.
+ *
+ * @author NISALBA
+ */
+final class OutboundStage {
+
+  private final Consumer<List<GctEncodable>> sink;
+  private final List<GctEncodable> staged = new ArrayList<>(4);
+
+  /**
+   * @param emitter the emitter to flush to
+   */
+  OutboundStage(@NotNull Emitter emitter) {
+    this(emitter::send);
+  }
+
+  /**
+   * @param sink receives each flushed batch, in place of the {@link Emitter}
+   */
+  OutboundStage(@NotNull Consumer<List<GctEncodable>> sink) {
+    this.sink = sink;
+  }
+
+  /**
+   * Holds a message until the next flush.
+   *
+   * @param message the message; it must have the instance of the dialogue
+   */
+  void stage(@NotNull GctEncodable message) {
+    staged.add(message);
+  }
+
+  /**
+   * Holds the message that ends the turn, and flushes the stage.
+   *
+   * @param message the dialogue primitive, such as a delimiter or a close
+   */
+  void end(@NotNull GctEncodable message) {
+    staged.add(message);
+    flush();
+  }
+
+  /** Queues the held messages to the emitter, as one batch. */
+  void flush() {
+    if (staged.isEmpty()) {
+      return;
+    }
+    sink.accept(List.copyOf(staged));
+    staged.clear();
+  }
+
+  /** Gives up the held messages. */
+  void discard() {
+    for (GctEncodable message : staged) {
+      message.discard();
+    }
+    staged.clear();
+  }
+
+  /**
+   * Checks whether messages are held.
+   *
+   * @return true if nothing is held
+   */
+  boolean isEmpty() {
+    return staged.isEmpty();
+  }
+}
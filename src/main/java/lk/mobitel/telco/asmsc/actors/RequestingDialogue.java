@@ -1,4 +1,123 @@
 package lk.mobitel.telco.asmsc.actors;
 
-public class RequestingDialogue {
+import lk.mobitel.telco.asmsc.actors.service.TypedServicePrimitive;
+import lk.mobitel.telco.asmsc.map.constant.Primitive;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Represents an outgoing dialogue in MAP protocol: a dialogue opened by the MAP-User (i.e. this
+ * application), with a single service invocation. Outgoing dialogues are not actors; they are
+ * entries of the table of the {@link Client}, which moves them through their states as the MAP
+ * provider answers:
+ *
+ * <ul>
+ *   <li>{@link State#OPENING}: the open request, the invocation and the delimiter are sent.
+ *   <li>{@link State#OPENED}: the MAP provider has accepted the dialogue.
+ *   <li>{@link State#CONFIRMED}: the confirmation of the invocation is received, and its result is
+ *       completed. The dialogue waits to be closed.
+ * </ul>
+ *
+ * <p>The dialogue is removed from the table when it is closed, aborted or timed out. Its result is
+ * completed exceptionally then, unless it is already confirmed.
+ *
+ * @author NISALBA
+ */
+final class RequestingDialogue {
+
+  /** States of an outgoing dialogue. */
+  enum State {
+    OPENING,
+    OPENED,
+    CONFIRMED
+  }
+
+  private final int id;
+  private final int link;
+  private final long instance;
+  private final int invokeId;
+  private final Primitive confirm;
+  private final CompletableFuture<TypedServicePrimitive> result;
+  private State state = State.OPENING;
+
+  /**
+   * @param id       the dialogue id
+   * @param link     index of the link of the dialogue, in the {@link LinkBalancer}
+   * @param instance the instance of the link
+   * @param invokeId the invoke-id of the invocation
+   * @param confirm  the primitive confirming the invocation
+   * @param result   completed with the confirmation
+   */
+  RequestingDialogue(
+      int id,
+      int link,
+      long instance,
+      int invokeId,
+      @NotNull Primitive confirm,
+      @NotNull CompletableFuture<TypedServicePrimitive> result) {
+    this.id = id;
+    this.link = link;
+    this.instance = instance;
+    this.invokeId = invokeId;
+    this.confirm = confirm;
+    this.result = result;
+  }
+
+  int id() {
+    return id;
+  }
+
+  int link() {
+    return link;
+  }
+
+  long instance() {
+    return instance;
+  }
+
+  int invokeId() {
+    return invokeId;
+  }
+
+  Primitive confirm() {
+    return confirm;
+  }
+
+  State state() {
+    return state;
+  }
+
+  /** Moves to {@link State#OPENED}, unless already confirmed. */
+  void opened() {
+    if (state == State.OPENING) {
+      state = State.OPENED;
+    }
+  }
+
+  /**
+   * Completes the result, and moves to {@link State#CONFIRMED}.
+   *
+   * @param confirmation the decoded confirmation
+   */
+  void confirmed(@NotNull TypedServicePrimitive confirmation) {
+    state = State.CONFIRMED;
+    result.complete(confirmation);
+  }
+
+  /**
+   * Completes the result exceptionally, if it is not completed yet.
+   *
+   * @param cause the reason the dialogue ended without a confirmation
+   */
+  void failed(@NotNull Throwable cause) {
+    result.completeExceptionally(cause);
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "{\"id\":%d,\"link\":%d,\"invokeId\":%d,\"confirm\":\"%s\",\"state\":\"%s\"}",
+        id, link, invokeId, confirm, state);
+  }
 }
@@ -7,27 +7,61 @@ import akka.actor.typed.javadsl.AbstractBehavior;
 import akka.actor.typed.javadsl.ActorContext;
 import akka.actor.typed.javadsl.Behaviors;
 import akka.actor.typed.javadsl.Receive;
+import akka.actor.typed.javadsl.TimerScheduler;
 import io.vavr.control.Option;
-import lk.mobitel.telco.asmsc.gct.GctMessage;
+import lk.mobitel.telco.asmsc.actors.service.ServiceResult;
+import lk.mobitel.telco.asmsc.config.DialogueEngine;
+import lk.mobitel.telco.asmsc.config.RuntimeConfiguration;
+import lk.mobitel.telco.asmsc.gct.GctTemplates;
 import lk.mobitel.telco.asmsc.gct.GctUtil;
+import lk.mobitel.telco.asmsc.map.Message;
+import lk.mobitel.telco.asmsc.map.constant.ApplicationContext;
 import lk.mobitel.telco.asmsc.map.constant.MessageType;
+import lk.mobitel.telco.asmsc.map.constant.Primitive;
+import lk.mobitel.telco.asmsc.map.constant.UserReason;
 import lombok.Value;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.time.Duration;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Incoming Dialogue Manager. Responsible for spawning {@link ServingDialogue} actors, convert
  * GctMessages into Actor Protocol commands and relay responses from dialogues.
+ *
+ * <p>A Server is one shard of the incoming dialogues. It only receives the messages of the
+ * dialogues that {@link ServerRouter} assigns to it, and its registry holds only those dialogues.
+ *
+ * <p>Each processed message is counted out of the {@link InboundPressure} of the shards, so that
+ * the {@link Collector}s can hold back while the shard falls behind.
+ *
+ * <p>Before a dialogue is created, its application context is checked with the {@link
+ * AdmissionControl}. Dialogues over the limit of their context are refused, and the remaining
+ * indications of a refused dialogue are released up to its delimiter.
+ *
+ * <p>Each open dialogue has a guard timer, in a {@link TimingWheel} of the shard moved forward by
+ * a periodic {@link GuardTick}. The timer is restarted with the guard time of the state the
+ * dialogue moves to: waiting for its first service, for its responses, or for the MAP provider.
+ * A dialogue whose timer expires is aborted, and its slot is freed.
+ *
+ * <p>A dialogue is torn down as soon as its terminating indication arrives: its slot is freed, its
+ * guard timer is stopped, and its engine ends it. Close, user abort, provider abort and notice
+ * indications are counted, by reason, in the {@link TeardownCounters} of the shards.
+ *
+ * <p>With {@link DialogueEngine#FLYWEIGHT}, no {@link ServingDialogue} actors are spawned. The
+ * dialogues are run by a {@link FlyweightDialogues} engine owned by the shard instead.
  */
 public class Server extends AbstractBehavior<Server.Command> {
 
   /**
-   * This dialogue actor ignores any message directed at it.
+   * Minimum time between two logs of dialogues rejected because the registry is full.
    */
-  private static final int IGNORING_DIALOGUE = -1;
+  private static final long REJECTION_LOG_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
 
   /**
    * Generic Incoming Manager command
@@ -35,7 +69,7 @@ public class Server extends AbstractBehavior<Server.Command> {
   public interface Command {}
 
   /**
-   * Watches the {@link Sender} termination
+   * Watches the {@link Emitter} termination
    *
    * @sentby ActorSystem
    * @receivedby {@link Server}
@@ -48,15 +82,40 @@ public class Server extends AbstractBehavior<Server.Command> {
     INSTANCE
   }
 
+  /**
+   * Moves the guard timers of the dialogues forward
+   *
+   * @sentby the timer of {@link Server}
+   * @receivedby {@link Server}
+   * @pattern Scheduled Message
+   */
+  public enum GuardTick implements Command {
+    /**
+     * Placeholder Instance
+     */
+    INSTANCE
+  }
+
   /**
    * Process the incoming message.
    *
-   * @sentby {@link MAPSystem}
+   * @sentby {@link ServerRouter}
    * @receivedby {@link Server}
    */
   @Value
   public static class ProcessIncomingMessage implements Command {
-    GctMessage message;
+    Message message;
+  }
+
+  /**
+   * Process incoming messages received together, in order. The list is owned by the receiver.
+   *
+   * @sentby {@link ServerRouter}
+   * @receivedby {@link Server}
+   */
+  @Value
+  public static class ProcessIncomingBatch implements Command {
+    List<Message> messages;
   }
 
   /**
@@ -68,9 +127,22 @@ public class Server extends AbstractBehavior<Server.Command> {
   @Value
   public static class DialogueEnded implements Command {
     int dialogueId;
+    ActorRef<ServingDialogue.Command> dialogue;
   }
 
 
+  /**
+   * Result of a service invocation started by the {@link FlyweightDialogues} engine.
+   *
+   * @sentby {@link Server}, through {@link ActorContext#pipeToSelf}
+   * @receivedby {@link Server}
+   */
+  @Value
+  private static class InvokeCompleted implements Command {
+    DialogueTurn.Invoke invoke;
+    ServingDialogue.ServiceResponse response;
+  }
+
   /**
    * Result of {@link ServingDialogue.OpenDialogue} command.
    *
@@ -98,12 +170,28 @@ public class Server extends AbstractBehavior<Server.Command> {
   /**
    * Creates a new IncomingManager actor
    *
-   * @param gct Reference to {@link MAPSystem}
+   * @param gct       Reference to {@link MAPSystem}
+   * @param shard     Index of this shard
+   * @param shards    Number of shards
+   * @param pressure  Depth of the shards, to count processed messages out of
+   * @param admission Admission control of new dialogues, shared by the shards
+   * @param teardowns Counters of torn down dialogues, shared by the shards
    *
    * @return A new IncomingManager actor
    */
-  public static Behavior<Command> create(final ActorRef<MAPSystem.Command> gct) {
-    return Behaviors.setup(context -> new Server(context, gct));
+  public static Behavior<Command> create(
+      final ActorRef<MAPSystem.Command> gct,
+      final int shard,
+      final int shards,
+      final InboundPressure pressure,
+      final AdmissionControl admission,
+      final TeardownCounters teardowns) {
+    return Behaviors.withTimers(
+        timers ->
+            Behaviors.setup(
+                context ->
+                    new Server(
+                        context, timers, gct, shard, shards, pressure, admission, teardowns)));
   }
 
   /**
@@ -113,34 +201,137 @@ public class Server extends AbstractBehavior<Server.Command> {
 
   /**
    * Registry of currently opened dialogues. Dialogue IDs are mapped to {@link ServingDialogue} actor
-   * references.
-   *
-   * <p>In this map, key NULL_DIALOGUE is mapped to a special actor: Which ignores all messages.
+   * references. Null with {@link DialogueEngine#FLYWEIGHT}.
    */
-  private final Map<Integer, ActorRef<ServingDialogue.Command>> dialogueRegistry = new HashMap<>();
+  private final @Nullable DialogueRegistry<ActorRef<ServingDialogue.Command>> dialogueRegistry;
 
-  private Server(ActorContext<Command> context, ActorRef<MAPSystem.Command> gct) {
+  /**
+   * Engine running all dialogues of this shard. Null with {@link DialogueEngine#ACTOR}.
+   */
+  private final @Nullable FlyweightDialogues flyweight;
+
+  /**
+   * This dialogue actor ignores any message directed at it.
+   */
+  private final ActorRef<ServingDialogue.Command> ignoringDialogue;
+
+  private final Emitter emitter = Emitter.getInstance();
+
+  /**
+   * Depth of the shards. Messages are counted out after they are processed.
+   */
+  private final InboundPressure pressure;
+
+  private final int shard;
+
+  private final AdmissionControl admission;
+
+  private final TeardownCounters teardowns;
+
+  /**
+   * Dialogue ids of this shard refused by the admission control, whose delimiter has not been
+   * received yet. Indexed by {@link ShardSlots#slotOf(int)}.
+   */
+  private final BitSet refusedDialogues = new BitSet();
+
+  private final ShardSlots shardSlots;
+
+  /**
+   * Guard timers of the dialogues of this shard, by slot. Null if dialogues are never timed out.
+   */
+  private final @Nullable TimingWheel guards;
+
+  /**
+   * Instance of the dialogue of each slot with a guard timer, to address its abort.
+   */
+  private final long[] guardedInstances;
+
+  private final long tickNanos;
+  private final long startNanos = System.nanoTime();
+  private final long openGuardTicks;
+  private final long serviceGuardTicks;
+  private final long idleGuardTicks;
+
+  /**
+   * Number of dialogue actors spawned by this shard. It makes the name of each actor unique, since a
+   * torn down actor may still drain its mailbox when a new dialogue reuses its id.
+   */
+  private long spawnedDialogues = 0L;
+
+  /**
+   * Number of rejected dialogues when the registry being full was last logged, and the time of it.
+   */
+  private long rejectionsLogged = 0L;
+  private long rejectionLoggedNanos = 0L;
+
+  private Server(
+      ActorContext<Command> context,
+      TimerScheduler<Command> timers,
+      ActorRef<MAPSystem.Command> gct,
+      int shard,
+      int shards,
+      InboundPressure pressure,
+      AdmissionControl admission,
+      TeardownCounters teardowns) {
     super(context);
     this.gct = gct;
-    this.dialogueRegistry.put(
-        IGNORING_DIALOGUE, getContext().spawn(Behaviors.ignore(), "all-ignoring-dialogue"));
+    this.pressure = pressure;
+    this.shard = shard;
+    this.admission = admission;
+    this.teardowns = teardowns;
+    RuntimeConfiguration config = GctUtil.config();
+    // Each link has its own block of incoming dialogue ids, right after the previous one.
+    int links = GctUtil.links().size();
+    this.shardSlots =
+        new ShardSlots(
+            config.incomingDialogueIdBase(), config.incomingDialogueCount() * links, shards, shard);
+    int limit = config.incomingDialogueLimit() * links;
+    if (config.dialogueEngine() == DialogueEngine.FLYWEIGHT) {
+      this.dialogueRegistry = null;
+      long flushTicks = ticksOf(config.outboundFlushTimeout(), config.dialogueGuardTick());
+      this.flyweight = new FlyweightDialogues(shardSlots, limit, flushTicks, this::pipeInvoke);
+    } else {
+      this.dialogueRegistry = new DialogueRegistry<>(shardSlots, limit);
+      this.flyweight = null;
+    }
+    this.ignoringDialogue = getContext().spawn(Behaviors.ignore(), "all-ignoring-dialogue");
+
+    long tickMillis = config.dialogueGuardTick();
+    if (tickMillis > 0) {
+      this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+      this.guards = new TimingWheel(shardSlots.capacity());
+      this.guardedInstances = new long[shardSlots.capacity()];
+      timers.startTimerAtFixedRate(
+          GuardTick.INSTANCE, GuardTick.INSTANCE, Duration.ofMillis(tickMillis));
+    } else {
+      this.tickNanos = 1;
+      this.guards = null;
+      this.guardedInstances = new long[0];
+    }
+    this.openGuardTicks = ticksOf(config.dialogueOpenGuard(), tickMillis);
+    this.serviceGuardTicks = ticksOf(config.dialogueServiceGuard(), tickMillis);
+    this.idleGuardTicks = ticksOf(config.dialogueIdleGuard(), tickMillis);
 
-    context.getLog().info("Gct Server started");
+    context
+        .getLog()
+        .info("Gct Server started ({}): {}", config.dialogueEngine(), dialogues());
   }
 
   @Override
   public Receive<Command> createReceive() {
     return newReceiveBuilder()
         .onMessage(ProcessIncomingMessage.class, this::processIncomingMessage)
+        .onMessage(ProcessIncomingBatch.class, this::processIncomingBatch)
         .onMessage(DialogueEnded.class, this::onDialogueEnded)
         .onMessage(DialogueOpenStatus.class, this::onDialogueOpenResponse)
+        .onMessage(InvokeCompleted.class, this::onInvokeCompleted)
+        .onMessage(GuardTick.class, tick -> onGuardTick())
         .onSignal(PostStop.class, signal -> postStop())
         .build();
   }
 
   /**
-   * Handles an incoming message. Takes action regarding the type and primitive of the message. This
-   * is the *entry* point for new messages.
+   * Handles an incoming message. This is the *entry* point for new messages.
    *
    * @param incoming The incoming message command
    *
@@ -148,7 +339,46 @@ public class Server extends AbstractBehavior<Server.Command> {
    */
   @Contract("_ -> this")
   private Behavior<Command> processIncomingMessage(@NotNull Server.ProcessIncomingMessage incoming) {
-    GctMessage msg = incoming.message();
+    try {
+      process(incoming.message());
+    } finally {
+      pressure.processed(shard, 1);
+    }
+    return this;
+  }
+
+  /**
+   * Handles a batch of incoming messages, one by one, as {@link #processIncomingMessage} does. A
+   * message that fails is logged and released, and the rest of the batch is still processed, so
+   * that no native buffer of the batch is leaked.
+   *
+   * @param batch The incoming batch command
+   *
+   * @return the current behaviour
+   */
+  @Contract("_ -> this")
+  private Behavior<Command> processIncomingBatch(@NotNull Server.ProcessIncomingBatch batch) {
+    try {
+      for (Message msg : batch.messages()) {
+        try {
+          process(msg);
+        } catch (RuntimeException e) {
+          getContext().getLog().error("Unable to process message of a batch: {}", msg, e);
+          GctUtil.release(msg);
+        }
+      }
+    } finally {
+      pressure.processed(shard, batch.messages().size());
+    }
+    return this;
+  }
+
+  /**
+   * Takes action regarding the type and primitive of the message. The message is consumed.
+   *
+   * @param msg The incoming message
+   */
+  private void process(@NotNull Message msg) {
     getContext().getLog().info("Received message: {}", msg);
 
     // Defense against unexpected message types.
@@ -159,7 +389,40 @@ public class Server extends AbstractBehavior<Server.Command> {
           .getLog()
           .warn(
               "Unexpected dialogue received for IncomingManager. Message: {}", msg);
-      return this;
+      GctUtil.release(msg);
+      return;
+    }
+
+    if (msg.getType() == MessageType.MAP_MSG_DLG_IND
+        && msg.getPrimitive() == Primitive.MAPDT_OPEN_IND) {
+      if (!admit(msg)) {
+        return;
+      }
+    } else if (msg.getType() == MessageType.MAP_MSG_DLG_IND && isTerminating(msg.getPrimitive())) {
+      tearDown(msg);
+      return;
+    } else if (isOfRefusedDialogue(msg)) {
+      GctUtil.release(msg);
+      return;
+    }
+
+    int dialogueId = msg.getId();
+    long instance = msg.getInstance();
+    MessageType type = msg.getType();
+    Primitive primitive = msg.getPrimitive();
+    dispatch(msg);
+    guard(dialogueId, instance, type, primitive);
+  }
+
+  /**
+   * Passes a message to the dialogue engine. The message is consumed.
+   *
+   * @param msg The incoming message
+   */
+  private void dispatch(@NotNull Message msg) {
+    if (flyweight != null) {
+      flyweight.process(msg);
+      return;
     }
 
     int dialogueId = msg.getId();
@@ -183,14 +446,9 @@ public class Server extends AbstractBehavior<Server.Command> {
             getDialogueOrElseIgnore(dialogueId, msg)
                 .tell(new ServingDialogue.Execute(msg));
             break;
-          case MAPDT_CLOSE_IND:
-            // TODO: Close indication
-            break;
-          case MAPDT_NOTICE_IND:
-            // TODO: Notice indication
-            break;
           default:
             getContext().getLog().warn("Unsupported dialogue indication: {}", msg);
+            GctUtil.release(msg);
             break;
         }
         break;
@@ -200,11 +458,242 @@ public class Server extends AbstractBehavior<Server.Command> {
         break;
       default:
         getContext().getLog().info("Unsupported message");
+        GctUtil.release(msg);
+    }
+  }
+
+  private static boolean isTerminating(@NotNull Primitive primitive) {
+    switch (primitive) {
+      case MAPDT_CLOSE_IND:
+      case MAPDT_U_ABORT_IND:
+      case MAPDT_P_ABORT_IND:
+      case MAPDT_NOTICE_IND:
+        return true;
+      default:
+        return false;
     }
+  }
 
+  /**
+   * Tears down a dialogue on its terminating indication, counting it by reason. The slot of the
+   * dialogue is freed and its guard timer is stopped at once. A dialogue actor is told to {@link
+   * ServingDialogue.Terminate}, so that it stops after the messages already in its mailbox. A new
+   * dialogue may reuse the id meanwhile, under an actor of another name. On a notice, the dialogue
+   * is also aborted, since the MAP provider has lost track of it. The message is consumed.
+   *
+   * @param msg The terminating indication
+   */
+  private void tearDown(@NotNull Message msg) {
+    int dialogueId = msg.getId();
+    Primitive primitive = msg.getPrimitive();
+    switch (primitive) {
+      case MAPDT_CLOSE_IND:
+        teardowns.closed();
+        break;
+      case MAPDT_U_ABORT_IND:
+        teardowns.userAborted(GctUtil.getUserReason(msg));
+        break;
+      case MAPDT_P_ABORT_IND:
+        teardowns.providerAborted(GctUtil.getProviderReason(msg));
+        break;
+      default:
+        teardowns.noticed();
+        break;
+    }
+
+    int slot = shardSlots.slotOf(dialogueId);
+    if (slot >= 0) {
+      refusedDialogues.clear(slot);
+      if (guards != null) {
+        guards.cancel(slot);
+      }
+    }
+
+    boolean open;
+    if (flyweight != null) {
+      open = flyweight.terminate(dialogueId);
+    } else {
+      ActorRef<ServingDialogue.Command> ref = requireRegistry().get(dialogueId);
+      open = ref != null;
+      if (open) {
+        requireRegistry().remove(dialogueId, ref);
+        ref.tell(new ServingDialogue.Terminate(primitive));
+      }
+    }
+    getContext().getLog().info("Incoming dialogue #{} is torn down by {}", dialogueId, primitive);
+
+    if (open && primitive == Primitive.MAPDT_NOTICE_IND) {
+      emitter.send(
+          GctTemplates.userAbort(UserReason.MAPUR_procedure_error)
+              .bind(dialogueId, msg.getInstance())
+              .replacing(msg));
+    }
+    GctUtil.release(msg);
+  }
+
+  /**
+   * Restarts the guard timer of a dialogue after one of its messages is dispatched, with the guard
+   * time of the wait that follows the message. The timer is stopped if the dialogue is not open.
+   *
+   * @param dialogueId Dialogue ID
+   * @param instance   Instance of the message
+   * @param type       Type of the message
+   * @param primitive  Primitive of the message
+   */
+  private void guard(int dialogueId, long instance, MessageType type, Primitive primitive) {
+    int slot = shardSlots.slotOf(dialogueId);
+    if (guards == null || slot < 0) {
+      return;
+    }
+    boolean open = flyweight != null ? flyweight.isOpen(dialogueId) : isRegistered(dialogueId);
+    if (!open) {
+      guards.cancel(slot);
+      return;
+    }
+
+    long ticks;
+    if (type == MessageType.MAP_MSG_DLG_IND && primitive == Primitive.MAPDT_OPEN_IND) {
+      ticks = openGuardTicks;
+    } else if (type == MessageType.MAP_MSG_DLG_IND
+        && primitive == Primitive.MAPDT_DELIMITER_IND) {
+      ticks = serviceGuardTicks;
+    } else {
+      ticks = idleGuardTicks;
+    }
+    if (ticks > 0) {
+      guardedInstances[slot] = instance;
+      guards.schedule(slot, ticks);
+    } else {
+      guards.cancel(slot);
+    }
+  }
+
+  /**
+   * Moves the guard timers forward to the current time, and the flush timers of the flyweight
+   * engine with them.
+   *
+   * @return the current behaviour
+   */
+  private Behavior<Command> onGuardTick() {
+    if (guards != null) {
+      long tick = (System.nanoTime() - startNanos) / tickNanos;
+      guards.advance(tick, this::onGuardExpired);
+      if (flyweight != null) {
+        flyweight.advance(tick);
+      }
+    }
     return this;
   }
 
+  /**
+   * Aborts a dialogue whose guard timer has expired, and frees its slot. The dialogue actor is
+   * stopped asynchronously, so its id may be reused before it has stopped; the actor names are
+   * unique for that reason. Its {@link DialogueEnded} only removes the actor it was watching.
+   *
+   * @param slot Slot of the dialogue
+   */
+  private void onGuardExpired(int slot) {
+    int dialogueId = shardSlots.idOf(slot);
+    if (flyweight != null) {
+      flyweight.expire(dialogueId, UserReason.MAPUR_app_proc_cancelled);
+      return;
+    }
+
+    ActorRef<ServingDialogue.Command> ref = requireRegistry().get(dialogueId);
+    if (ref == null) {
+      return;
+    }
+    getContext().getLog().warn("Incoming dialogue #{} timed out", dialogueId);
+    emitter.send(
+        GctTemplates.userAbort(UserReason.MAPUR_app_proc_cancelled)
+            .bind(dialogueId, guardedInstances[slot]));
+    requireRegistry().remove(dialogueId, ref);
+    getContext().stop(ref);
+  }
+
+  private boolean isRegistered(int dialogueId) {
+    return requireRegistry().contains(dialogueId);
+  }
+
+  /**
+   * Converts a guard time to ticks, rounding up.
+   *
+   * @param millis     the guard time, in milliseconds
+   * @param tickMillis the tick, in milliseconds
+   * @return the number of ticks, or 0 if the time is not guarded
+   */
+  private static long ticksOf(long millis, long tickMillis) {
+    if (millis < 1 || tickMillis < 1) {
+      return 0;
+    }
+    return (millis + tickMillis - 1) / tickMillis;
+  }
+
+  /**
+   * Checks a new dialogue with the admission control. If it is over the limit of its application
+   * context, it is refused and the message is consumed. Dialogues without a valid application
+   * context are admitted, and aborted by the dialogue engine.
+   *
+   * @param msg The open indication
+   *
+   * @return true if the dialogue is admitted
+   */
+  private boolean admit(@NotNull Message msg) {
+    int slot = shardSlots.slotOf(msg.getId());
+    ApplicationContext applicationContext;
+    try {
+      applicationContext = GctUtil.getApplicationContext(msg);
+    } catch (RuntimeException e) {
+      applicationContext = null;
+    }
+    if (applicationContext == null || admission.tryAdmit(applicationContext)) {
+      if (slot >= 0) {
+        refusedDialogues.clear(slot);
+      }
+      return true;
+    }
+
+    getContext()
+        .getLog()
+        .warn(
+            "Dialogue #{} of {} is over the admission limit, refusing: {}",
+            msg.getId(),
+            applicationContext,
+            admission.refuseReason());
+    emitter.send(
+        GctTemplates.openRefuse(admission.refuseReason())
+            .bind(msg.getId(), msg.getInstance())
+            .replacing(msg));
+    GctUtil.release(msg);
+    if (slot >= 0) {
+      refusedDialogues.set(slot);
+    }
+    return false;
+  }
+
+  /**
+   * Checks whether a message belongs to a dialogue refused by the admission control. The dialogue
+   * is forgotten at its delimiter, which is the last indication of the open.
+   *
+   * @param msg The incoming message
+   *
+   * @return true if the message is of a refused dialogue, and must be released
+   */
+  private boolean isOfRefusedDialogue(@NotNull Message msg) {
+    if (refusedDialogues.isEmpty()) {
+      return false;
+    }
+    int slot = shardSlots.slotOf(msg.getId());
+    if (slot < 0 || !refusedDialogues.get(slot)) {
+      return false;
+    }
+    if (msg.getType() == MessageType.MAP_MSG_DLG_IND
+        && msg.getPrimitive() == Primitive.MAPDT_DELIMITER_IND) {
+      refusedDialogues.clear(slot);
+    }
+    return true;
+  }
+
   /**
    * Handles dialogue termination event.
    *
@@ -215,7 +704,50 @@ public class Server extends AbstractBehavior<Server.Command> {
   @Contract("_ -> this")
   private Behavior<Command> onDialogueEnded(@NotNull DialogueEnded ended) {
     getContext().getLog().info("Incoming Dialogue #{} has been ended.", ended.dialogueId());
-    dialogueRegistry.remove(ended.dialogueId());
+    // The slot may already be freed, and taken by a newer dialogue with the same id.
+    int slot = shardSlots.slotOf(ended.dialogueId());
+    if (requireRegistry().remove(ended.dialogueId(), ended.dialogue())
+        && guards != null
+        && slot >= 0) {
+      guards.cancel(slot);
+    }
+    return this;
+  }
+
+  /**
+   * Pipes the result of a service invocation of the flyweight engine back to this shard.
+   *
+   * @param stage  the stage of the service handler
+   * @param invoke the invocation
+   */
+  private void pipeInvoke(
+      @NotNull CompletionStage<ServiceResult> stage, @NotNull DialogueTurn.Invoke invoke) {
+    getContext()
+        .pipeToSelf(
+            stage,
+            (result, failure) ->
+                new InvokeCompleted(invoke, DialogueTurn.responseOf(result, failure)));
+  }
+
+  /**
+   * Passes the result of a service invocation to the flyweight engine. The guard timer of the
+   * dialogue is stopped if the invocation has ended it.
+   *
+   * @param completed the result
+   *
+   * @return the current behaviour
+   */
+  @Contract("_ -> this")
+  private Behavior<Command> onInvokeCompleted(@NotNull InvokeCompleted completed) {
+    int dialogueId = completed.invoke().turn().dialogueId();
+    if (flyweight != null
+        && flyweight.serviceResponded(completed.invoke(), completed.response())
+        && !flyweight.isOpen(dialogueId)) {
+      int slot = shardSlots.slotOf(dialogueId);
+      if (guards != null && slot >= 0) {
+        guards.cancel(slot);
+      }
+    }
     return this;
   }
 
@@ -240,7 +772,7 @@ public class Server extends AbstractBehavior<Server.Command> {
       // Since we are watching the dialogue with DialogueEnded, when the
       // dialogue actor is stopped, it will be automatically removed. But this
       // will make it immediate.
-      dialogueRegistry.remove(status.dialogueId());
+      requireRegistry().remove(status.dialogueId());
     } else {
       getContext().getLog().info("Incoming dialogue opened successfully #{}", status.dialogueId());
     }
@@ -253,59 +785,121 @@ public class Server extends AbstractBehavior<Server.Command> {
    * @return the current behaviour
    */
   private Behavior<Command> postStop() {
-    getContext().getLog().info("Incoming Manager has been stopped.");
+    getContext().getLog().info("Incoming Manager has been stopped: {}", dialogues());
     return this;
   }
 
+  /**
+   * Gets the dialogues of this shard, whichever the engine.
+   *
+   * @return the dialogue registry or the flyweight engine
+   */
+  private @NotNull Object dialogues() {
+    return flyweight != null ? flyweight : requireRegistry();
+  }
+
+  /**
+   * Gets the dialogue registry. Only the actor engine handles messages that need it.
+   *
+   * @return the registry
+   * @throws IllegalStateException if this shard runs the flyweight engine
+   */
+  private @NotNull DialogueRegistry<ActorRef<ServingDialogue.Command>> requireRegistry()
+      throws IllegalStateException {
+    if (dialogueRegistry == null) {
+      throw new IllegalStateException("Dialogue registry is not used by the flyweight engine");
+    }
+    return dialogueRegistry;
+  }
+
   /**
    * Spawns a new {@link ServingDialogue} and try opening it.
    *
    * <p>If the dialogue is already opened, this will emit an abort request
-   * to the open indication instance. Otherwise new {@link ServingDialogue}
-   * actor is spawned and the {@link ServingDialogue.OpenDialogue} message
-   * is sent to it, wrapping the given {@code message}</p>
+   * to the open indication instance, even if the registry is full. If the
+   * registry is full, the dialogue is aborted with a resource limitation,
+   * before any actor is spawned.
+   * Otherwise new {@link ServingDialogue} actor is spawned and the
+   * {@link ServingDialogue.OpenDialogue} message is sent to it, wrapping
+   * the given {@code message}</p>
    *
    * @param dialogueId Dialogue ID
    * @param message    An open indication message to open the dialogue
    *
    * @return True if new dialogue actor is spawned, False if an actor is
-   * already spawned for the {@code dialogueId}
+   * already spawned for the {@code dialogueId} or the registry is full
    */
-  private boolean newDialogue(int dialogueId, @NotNull GctMessage message) {
-    if (dialogueRegistry.containsKey(dialogueId)) {
-      getContext()
-          .spawnAnonymous(Sender.create())
-          .tell(
-              new Sender.Send(
-                  GctUtil.getGenericAbortRequest(
-                      dialogueId, message.getInstance())));
+  private boolean newDialogue(int dialogueId, @NotNull Message message) {
+    if (requireRegistry().contains(dialogueId)) {
+      emitter.send(
+          GctTemplates.userAbort(UserReason.MAPUR_procedure_error)
+              .bind(dialogueId, message.getInstance())
+              .replacing(message));
+      GctUtil.release(message);
+      return false;
+    }
+
+    if (requireRegistry().isFull()) {
+      requireRegistry().reject();
+      logRejections(dialogueId);
+      emitter.send(
+          GctTemplates.userAbort(UserReason.MAPUR_user_resource_limitation)
+              .bind(dialogueId, message.getInstance())
+              .replacing(message));
+      GctUtil.release(message);
       return false;
     }
 
     getContext().getLog().info("Creating IncomingDialogue actor for ID #{}", dialogueId);
     ActorRef<ServingDialogue.Command> dialogueRef =
         getContext()
-            .spawn(ServingDialogue.create(dialogueId, this.gct), "IncomingDialogue-" + dialogueId);
-    getContext().watchWith(dialogueRef, new DialogueEnded(dialogueId));
-    dialogueRegistry.put(dialogueId, dialogueRef);
+            .spawn(
+                ServingDialogue.create(dialogueId, this.gct),
+                "IncomingDialogue-" + dialogueId + "-" + spawnedDialogues++);
+    getContext().watchWith(dialogueRef, new DialogueEnded(dialogueId, dialogueRef));
+    requireRegistry().put(dialogueId, dialogueRef);
     dialogueRef.tell(new ServingDialogue.OpenDialogue(
         dialogueId, message, getContext().getSelf().narrow()));
     return true;
   }
 
+  /**
+   * Logs the dialogues rejected because the registry is full, at most once per {@link
+   * #REJECTION_LOG_INTERVAL_NANOS}, with the number of rejections since the last log.
+   *
+   * @param dialogueId Dialogue ID of the latest rejection
+   */
+  private void logRejections(int dialogueId) {
+    long now = System.nanoTime();
+    long rejected = requireRegistry().rejected();
+    if (rejectionsLogged > 0 && now - rejectionLoggedNanos < REJECTION_LOG_INTERVAL_NANOS) {
+      return;
+    }
+    getContext()
+        .getLog()
+        .warn(
+            "Dialogue registry is full, aborted {} dialogue(s) up to #{}: {}",
+            rejected - rejectionsLogged,
+            dialogueId,
+            dialogues());
+    rejectionsLogged = rejected;
+    rejectionLoggedNanos = now;
+  }
+
   /**
    * Gets a dialogue actor from the registry. If there is no such actor for the given dialogue id,
-   * the generic abort request is issued to the MAP-Provider, and returns NULL_DIALOGUE.
+   * the generic abort request is issued to the MAP-Provider, the message is released, and returns
+   * the ignoring dialogue.
    *
    * @param dialogueId dialogue id to lookup
    * @param message    message for which this dialogue is used.
    *
-   * @return a reference to dialogue actor if dialogueId is present. if not the NULL_DIALOGUE.
+   * @return a reference to dialogue actor if dialogueId is present. if not the ignoring dialogue.
    * Hence, the return value of this method is always valid
    */
   private @NotNull ActorRef<ServingDialogue.Command> getDialogueOrElseIgnore(
-      int dialogueId, GctMessage message) {
-    ActorRef<ServingDialogue.Command> ref = dialogueRegistry.get(dialogueId);
+      int dialogueId, Message message) {
+    ActorRef<ServingDialogue.Command> ref = requireRegistry().get(dialogueId);
     if (ref == null) {
       getContext()
           .getLog()
@@ -315,12 +909,12 @@ public class Server extends AbstractBehavior<Server.Command> {
                   + "(message: {})",
               dialogueId,
               message);
-      getContext()
-          .spawnAnonymous(Sender.create())
-          .tell(
-              new Sender.Send(
-                  GctUtil.getGenericAbortRequest(dialogueId, message.getInstance())));
-      return dialogueRegistry.get(IGNORING_DIALOGUE);
+      emitter.send(
+          GctTemplates.userAbort(UserReason.MAPUR_procedure_error)
+              .bind(dialogueId, message.getInstance())
+              .replacing(message));
+      GctUtil.release(message);
+      return ignoringDialogue;
     }
     return ref;
   }
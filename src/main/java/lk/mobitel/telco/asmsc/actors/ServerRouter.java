@@ -0,0 +1,226 @@
+package lk.mobitel.telco.asmsc.actors;
+
+import akka.actor.typed.ActorRef;
+import lk.mobitel.telco.asmsc.gct.GctUtil;
+import lk.mobitel.telco.asmsc.map.Message;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Routes incoming messages to the {@link Server} shard that owns their dialogue, and the messages
+ * of outgoing dialogues to the {@link Client}.
+ *
+ * <p>Incoming dialogue ids are partitioned over the shards by their offset from the incoming
+ * dialogue id base, modulo the number of shards. All messages of a dialogue go to the same shard,
+ * and a shard processes its mailbox in order, so the messages of a dialogue are processed in the
+ * order they were received.
+ *
+ * <p>Every message sent to a shard is counted in the {@link InboundPressure} of the router, until
+ * the shard has processed it. Messages of outgoing dialogues are not counted: they only answer
+ * requests of this application, which are bounded by the outgoing dialogue ids.
+ *
+ * <p>A router is immutable and can be used from any thread. The shard references do not change
+ * when a shard is restarted by its supervisor. A {@link Batch} of a router is not thread-safe.
+ *
+ * @author NISALBA
+ */
+public final class ServerRouter {
+
+  /**
+   * Groups received messages by shard, so that each shard is sent one command per batch instead of
+   * one per message. Messages keep their order within a shard.
+   */
+  public final class Batch {
+    private final List<List<Message>> pending = new ArrayList<>(shards.size());
+    private List<Message> outgoing;
+    private final int capacity;
+
+    private Batch(int capacity) {
+      this.capacity = capacity;
+      for (int i = 0; i < shards.size(); i++) {
+        pending.add(new ArrayList<>(capacity));
+      }
+      this.outgoing = new ArrayList<>(capacity);
+    }
+
+    /**
+     * Adds a message to the batch of the shard owning its dialogue, or to the batch of the client
+     * for an outgoing dialogue. Other messages are released.
+     *
+     * @param message the received message
+     */
+    public void add(@NotNull Message message) {
+      int offset = message.getId() - incomingBase;
+      if (offset >= 0 && offset < incomingCount) {
+        pending.get(offset % shards.size()).add(message);
+      } else if (isOutgoing(message.getId())) {
+        outgoing.add(message);
+      } else {
+        GctUtil.release(message);
+      }
+    }
+
+    /**
+     * Sends the messages added since the last flush. A shard with a single message is sent a
+     * {@link Server.ProcessIncomingMessage}, others a {@link Server.ProcessIncomingBatch}.
+     */
+    public void flush() {
+      for (int i = 0; i < shards.size(); i++) {
+        List<Message> messages = pending.get(i);
+        if (messages.isEmpty()) {
+          continue;
+        }
+        pressure.enqueued(i, messages.size());
+        if (messages.size() == 1) {
+          shards.get(i).tell(new Server.ProcessIncomingMessage(messages.get(0)));
+          messages.clear();
+        } else {
+          // The list is handed over to the shard.
+          shards.get(i).tell(new Server.ProcessIncomingBatch(messages));
+          pending.set(i, new ArrayList<>(capacity));
+        }
+      }
+      if (outgoing.size() == 1) {
+        client.tell(new Client.ProcessOutgoingMessage(outgoing.get(0)));
+        outgoing.clear();
+      } else if (!outgoing.isEmpty()) {
+        client.tell(new Client.ProcessOutgoingBatch(outgoing));
+        outgoing = new ArrayList<>(capacity);
+      }
+    }
+  }
+
+  private final List<ActorRef<Server.Command>> shards;
+  private final int incomingBase;
+  private final int incomingCount;
+  private final InboundPressure pressure;
+  private final ActorRef<Client.Command> client;
+  private final int outgoingBase;
+  private final int outgoingCount;
+
+  /**
+   * @param shards        references to the shards, in shard index order
+   * @param incomingBase  the first incoming dialogue id
+   * @param incomingCount the number of incoming dialogue ids
+   * @param pressure      the depth of the shards, counted out by the shards
+   * @param client        reference to the client of the outgoing dialogues
+   * @param outgoingBase  the first outgoing dialogue id
+   * @param outgoingCount the number of outgoing dialogue ids
+   */
+  ServerRouter(
+      @NotNull List<ActorRef<Server.Command>> shards,
+      int incomingBase,
+      int incomingCount,
+      @NotNull InboundPressure pressure,
+      @NotNull ActorRef<Client.Command> client,
+      int outgoingBase,
+      int outgoingCount) {
+    if (shards.isEmpty()) {
+      throw new IllegalStateException("At least one server shard is required");
+    }
+    this.shards = List.copyOf(shards);
+    this.incomingBase = incomingBase;
+    this.incomingCount = incomingCount;
+    this.pressure = pressure;
+    this.client = client;
+    this.outgoingBase = outgoingBase;
+    this.outgoingCount = outgoingCount;
+  }
+
+  /**
+   * Gets the depth of the shards.
+   *
+   * @return the inbound pressure
+   */
+  public @NotNull InboundPressure pressure() {
+    return pressure;
+  }
+
+  /**
+   * Checks whether a dialogue id is an incoming dialogue id, of any link.
+   *
+   * @param dialogueId a dialogue id
+   * @return true if the dialogue id is routed to a shard
+   */
+  public boolean isIncoming(int dialogueId) {
+    int offset = dialogueId - incomingBase;
+    return offset >= 0 && offset < incomingCount;
+  }
+
+  /**
+   * Checks whether a dialogue id is an outgoing dialogue id, of any link.
+   *
+   * @param dialogueId a dialogue id
+   * @return true if the dialogue id is routed to the client
+   */
+  public boolean isOutgoing(int dialogueId) {
+    int offset = dialogueId - outgoingBase;
+    return offset >= 0 && offset < outgoingCount;
+  }
+
+  /**
+   * Gets the number of shards.
+   *
+   * @return the number of shards
+   */
+  public int size() {
+    return shards.size();
+  }
+
+  /**
+   * Gets the shard index of an incoming dialogue.
+   *
+   * @param dialogueId id of an incoming dialogue
+   * @return the index of the shard owning the dialogue
+   */
+  public int shardOf(int dialogueId) {
+    return Math.floorMod(dialogueId - incomingBase, shards.size());
+  }
+
+  /**
+   * Sends a message to the shard owning its dialogue, or to the client if it belongs to an outgoing
+   * dialogue. Other messages are not routed.
+   *
+   * @param message the received message
+   * @return true if the message was sent; false if it is not of a dialogue of this application,
+   *     in which case the caller keeps its ownership
+   */
+  public boolean route(@NotNull Message message) {
+    int offset = message.getId() - incomingBase;
+    if (offset < 0 || offset >= incomingCount) {
+      if (!isOutgoing(message.getId())) {
+        return false;
+      }
+      client.tell(new Client.ProcessOutgoingMessage(message));
+      return true;
+    }
+    int shard = offset % shards.size();
+    pressure.enqueued(shard, 1);
+    shards.get(shard).tell(new Server.ProcessIncomingMessage(message));
+    return true;
+  }
+
+  /**
+   * Sends a message to the shard or client owning its dialogue, or releases it if it does not
+   * belong to a dialogue of this application.
+   *
+   * @param message the received message
+   */
+  public void routeOrRelease(@NotNull Message message) {
+    if (!route(message)) {
+      GctUtil.release(message);
+    }
+  }
+
+  /**
+   * Creates an empty batch.
+   *
+   * @param capacity the expected number of messages per batch
+   * @return a new batch, to be used by a single thread
+   */
+  public @NotNull Batch newBatch(int capacity) {
+    return new Batch(capacity);
+  }
+}
@@ -7,24 +7,36 @@ import akka.actor.typed.javadsl.AbstractBehavior;
 import akka.actor.typed.javadsl.ActorContext;
 import akka.actor.typed.javadsl.Behaviors;
 import akka.actor.typed.javadsl.Receive;
-import lk.mobitel.telco.asmsc.gct.GctDecode;
-import lk.mobitel.telco.asmsc.gct.GctMessage;
-import lk.mobitel.telco.asmsc.gct.GctParameter;
+import akka.actor.typed.javadsl.TimerScheduler;
+import lk.mobitel.telco.asmsc.actors.service.ServiceResult;
+import lk.mobitel.telco.asmsc.config.RuntimeConfiguration;
+import lk.mobitel.telco.asmsc.gct.GctTemplates;
 import lk.mobitel.telco.asmsc.gct.GctUtil;
+import lk.mobitel.telco.asmsc.map.Message;
 import lk.mobitel.telco.asmsc.map.constant.ApplicationContext;
-import lk.mobitel.telco.asmsc.map.constant.MAPResult;
-import lk.mobitel.telco.asmsc.map.constant.ParameterName;
+import lk.mobitel.telco.asmsc.map.constant.Primitive;
+import lk.mobitel.telco.asmsc.map.constant.UserReason;
 import lombok.Value;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.List;
+import java.time.Duration;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletionStage;
 
 /**
  * Represents an incoming dialogue in MAP protocol. An incoming dialogue is a dialogue opened by the
  * MAP-Provider, as opposed to {@link RequestingDialogue}, which is opened by the MAP-User (i.e. this
  * application). Spawned by {@link Server} as required. This supports multiple service
  * invocations simultaneously.
+ *
+ * <p>Service indications are collected until the delimiter of the turn, and answered in the order
+ * they were indicated, by a {@link DialogueTurn}. The handlers complete asynchronously; their
+ * results are piped back to the dialogue. When a turn ends with a <code>MAPDT_CLOSE_REQ</code>, the
+ * dialogue stops. If the turn lasts longer than {@link
+ * RuntimeConfiguration#outboundFlushTimeout()}, the answers held so far are sent first, on a timer
+ * of the dialogue.
  */
 public class ServingDialogue extends AbstractBehavior<ServingDialogue.Command> {
 
@@ -49,13 +61,6 @@ public class ServingDialogue extends AbstractBehavior<ServingDialogue.Command> {
     INSTANCE
   }
 
-  private enum State {
-    CREATED,
-    OPENED,
-    RECEIVED,
-    DEPLOYED
-  }
-
   /**
    * Opens the dialogue. Dialogue will accept service indications only after opening. Note that
    * dialogue creation is not the opening.
@@ -67,7 +72,7 @@ public class ServingDialogue extends AbstractBehavior<ServingDialogue.Command> {
   @Value
   public static class OpenDialogue implements Command {
     int dialogueId;
-    GctMessage message;
+    Message message;
     ActorRef<Server.DialogueOpenStatus> replyTo;
   }
 
@@ -77,7 +82,7 @@ public class ServingDialogue extends AbstractBehavior<ServingDialogue.Command> {
   @Value
   public static class ServiceIndication implements Command {
     int dialogueId;
-    GctMessage message;
+    Message message;
   }
 
   /**
@@ -85,7 +90,45 @@ public class ServingDialogue extends AbstractBehavior<ServingDialogue.Command> {
    */
   @Value
   public static class Execute implements Command {
-    GctMessage message;
+    Message message;
+  }
+
+  /**
+   * Result of a service invocation started by {@link Execute}.
+   *
+   * @sentby {@link ServingDialogue}, through {@link ActorContext#pipeToSelf}
+   * @receivedby {@link ServingDialogue}
+   */
+  @Value
+  private static class InvokeCompleted implements Command {
+    DialogueTurn.Invoke invoke;
+    ServiceResponse response;
+  }
+
+  /**
+   * Sends the answers held back for too long.
+   *
+   * @sentby the timer of {@link ServingDialogue}
+   * @receivedby {@link ServingDialogue}
+   */
+  private enum FlushTimeout implements Command {
+    /**
+     * Placeholder Instance
+     */
+    INSTANCE
+  }
+
+  /**
+   * Stops the dialogue, because the MAP-Provider has ended it. The dialogue is no longer registered
+   * by the {@link Server}. Messages sent to the dialogue before this are still handled, so that
+   * their buffers are released.
+   *
+   * @sentby {@link Server}
+   * @receivedby {@link ServingDialogue}
+   */
+  @Value
+  public static class Terminate implements Command {
+    Primitive primitive;
   }
 
   /**
@@ -98,23 +141,34 @@ public class ServingDialogue extends AbstractBehavior<ServingDialogue.Command> {
    */
   public static Behavior<Command> create(final int dialogueId,
                                          final ActorRef<MAPSystem.Command> gct) {
-    return Behaviors.setup(context -> new ServingDialogue(context, dialogueId, gct));
+    return Behaviors.withTimers(
+        timers ->
+            Behaviors.setup(context -> new ServingDialogue(context, timers, dialogueId, gct)));
   }
 
   private final int id;
   private final ActorRef<MAPSystem.Command> gct;
+  private final Emitter emitter = Emitter.getInstance();
+  private final TimerScheduler<Command> timers;
+  private final @Nullable Duration flushTimeout;
+  private final DialogueTurn turn;
 
-  private State state;
+  private DialogueState state;
   private long instance;
-  //private List<ServiceIndication> indications;
-  //private Map<Short, ActorRef<Service.Command>> activeServices;
 
   private ServingDialogue(
-      ActorContext<Command> context, int dialogueId, ActorRef<MAPSystem.Command> gct) {
+      ActorContext<Command> context,
+      TimerScheduler<Command> timers,
+      int dialogueId,
+      ActorRef<MAPSystem.Command> gct) {
     super(context);
     this.id = dialogueId;
     this.gct = gct;
-    this.state = State.CREATED;
+    this.timers = timers;
+    long flushTimeoutMillis = GctUtil.config().outboundFlushTimeout();
+    this.flushTimeout = flushTimeoutMillis > 0 ? Duration.ofMillis(flushTimeoutMillis) : null;
+    this.turn = new DialogueTurn(dialogueId, emitter, new TurnOwner());
+    this.state = DialogueState.CREATED;
     context.getLog().info("IncomingDialogue started for ID #{}", this.id);
   }
 
@@ -123,41 +177,46 @@ public class ServingDialogue extends AbstractBehavior<ServingDialogue.Command> {
     return newReceiveBuilder()
         .onMessage(OpenDialogue.class, this::onDialogueOpenIndication)
         .onMessage(ServingDialogue.ServiceIndication.class, this::onServiceIndication)
+        .onMessage(Execute.class, this::onExecute)
+        .onMessage(InvokeCompleted.class, this::onInvokeCompleted)
+        .onMessage(FlushTimeout.class, timeout -> onFlushTimeout())
+        .onMessage(Terminate.class, this::onTerminate)
         .onSignal(PostStop.class, signal -> postStop())
         .build();
   }
 
   @Contract("_ -> this")
   private Behavior<Command> onDialogueOpenIndication(@NotNull OpenDialogue indication) {
-    if (this.id == indication.dialogueId() && state == State.CREATED) {
-      if (indication.message().hasParameter(ParameterName.MAPPN_applic_context)) {
-        ApplicationContext applicationContext = GctDecode
-            .asMobileDomainApplicationContext(
-                indication.message().getParameter(
-                    ParameterName.MAPPN_applic_context));
-        state = State.OPENED;
+    try {
+      return openDialogue(indication);
+    } finally {
+      GctUtil.release(indication.message());
+    }
+  }
+
+  private Behavior<Command> openDialogue(@NotNull OpenDialogue indication) {
+    if (this.id == indication.dialogueId() && state == DialogueState.CREATED) {
+      ApplicationContext applicationContext;
+      try {
+        applicationContext = GctUtil.getApplicationContext(indication.message());
+      } catch (IllegalArgumentException | NoSuchElementException e) {
+        getContext().getLog().warn("Bad Application Context on dialogue #{}", id, e);
+        applicationContext = null;
+      }
+      if (applicationContext != null) {
+        state = DialogueState.OPENED;
         instance = indication.message().getInstance();
-        getContext()
-            .spawnAnonymous(Sender.create())
-            .tell(
-                new Sender.Send(
-                    GctUtil.getAckFor(
-                        indication.message(),
-                        List.of(
-                            GctParameter.of8BitValue(
-                                ParameterName.MAPPN_result, (byte) MAPResult.MAPRS_DLG_ACC.value()),
-                            GctParameter.ofBytes(
-                                ParameterName.MAPPN_applic_context,
-                                applicationContext.asByteBuffer())))));
+        emitter.send(
+            GctTemplates.openAccept(applicationContext)
+                .bind(indication.message().getId(), instance)
+                .replacing(indication.message()));
         indication.replyTo().tell(Server.DialogueOpenStatus.success(id));
       } else {
-        // application context is missing
-        getContext()
-            .spawnAnonymous(Sender.create())
-            .tell(
-                new Sender.Send(
-                    GctUtil.getGenericAbortRequest(
-                        indication.dialogueId(), indication.message().getInstance())));
+        // application context is missing or not supported
+        emitter.send(
+            GctTemplates.userAbort(UserReason.MAPUR_procedure_error)
+                .bind(indication.dialogueId(), indication.message().getInstance())
+                .replacing(indication.message()));
         indication
             .replyTo()
             .tell(Server.DialogueOpenStatus.error(id, "Application Context missing"));
@@ -165,7 +224,7 @@ public class ServingDialogue extends AbstractBehavior<ServingDialogue.Command> {
       }
     } else {
       // This path is highly unlikely
-      if (state != State.CREATED) {
+      if (state != DialogueState.CREATED) {
         // Another open indication received for busy dialogue. This indication should be aborted.
         getContext().getLog().warn("Ignoring open indication for already opened dialogue");
       } else {
@@ -182,11 +241,106 @@ public class ServingDialogue extends AbstractBehavior<ServingDialogue.Command> {
 
   @Contract("_ -> this")
   private Behavior<Command> onServiceIndication(ServingDialogue.@NotNull ServiceIndication creation) {
+    Message message = creation.message();
+    try {
+      if (state != DialogueState.OPENED && state != DialogueState.RECEIVED) {
+        getContext()
+            .getLog()
+            .warn("Ignoring service indication {} on dialogue #{} in state {}",
+                message.getPrimitive(), id, state);
+        return this;
+      }
+      if (turn.collect(message)) {
+        state = DialogueState.RECEIVED;
+      }
+    } finally {
+      GctUtil.release(message);
+    }
+    return this;
+  }
+
+  private Behavior<Command> onExecute(@NotNull Execute execute) {
+    if (state != DialogueState.OPENED && state != DialogueState.RECEIVED) {
+      getContext().getLog().warn("Ignoring delimiter on dialogue #{} in state {}", id, state);
+      GctUtil.release(execute.message());
+      return this;
+    }
+    if (state == DialogueState.RECEIVED) {
+      state = DialogueState.DEPLOYED;
+    }
+    return progressed(turn.execute(instance, execute.message()));
+  }
+
+  private Behavior<Command> onInvokeCompleted(@NotNull InvokeCompleted completed) {
+    DialogueTurn.Progress progress = turn.complete(completed.invoke(), completed.response());
+    return progress == null ? this : progressed(progress);
+  }
+
+  /**
+   * Follows the progress of the turn.
+   *
+   * @return stopped if the dialogue is closed, or this otherwise
+   */
+  private Behavior<Command> progressed(@NotNull DialogueTurn.Progress progress) {
+    switch (progress) {
+      case CONTINUED:
+        state = DialogueState.OPENED;
+        return this;
+      case CLOSED:
+        return Behaviors.stopped();
+      default:
+        return this;
+    }
+  }
+
+  @Contract(" -> this")
+  private Behavior<Command> onFlushTimeout() {
+    turn.flush();
     return this;
   }
 
+  private Behavior<Command> onTerminate(@NotNull Terminate terminate) {
+    getContext()
+        .getLog()
+        .info(
+            "IncomingDialogue #{} is terminated by {} in state {} with {} pending invokes",
+            id,
+            terminate.primitive(),
+            state,
+            turn.pending());
+    return Behaviors.stopped();
+  }
+
   private Behavior<Command> postStop() {
+    // Answers of an unfinished turn, and results that are still pending, have nowhere to go.
+    turn.cancel();
     getContext().getLog().info("IncomingDialogue #{} is ended.", id);
     return this;
   }
+
+  /** Runs the turn of this dialogue on the actor: results are piped back, flushes are timed. */
+  private final class TurnOwner implements DialogueTurn.Owner {
+
+    @Override
+    public void started(
+        @NotNull CompletionStage<ServiceResult> stage, @NotNull DialogueTurn.Invoke invoke) {
+      getContext()
+          .pipeToSelf(
+              stage,
+              (result, failure) ->
+                  new InvokeCompleted(invoke, DialogueTurn.responseOf(result, failure)));
+    }
+
+    @Override
+    public void startFlushTimer(@NotNull DialogueTurn turn) {
+      if (flushTimeout != null) {
+        timers.startSingleTimer(FlushTimeout.INSTANCE, FlushTimeout.INSTANCE, flushTimeout);
+      }
+    }
+
+    @Override
+    public void cancelFlushTimer(@NotNull DialogueTurn turn) {
+      timers.cancel(FlushTimeout.INSTANCE);
+    }
+  }
 }
@@ -0,0 +1,90 @@
+package lk.mobitel.telco.asmsc.actors;
+
+/**
+ * Maps the incoming dialogue ids owned by a {@link Server} shard to dense slot numbers.
+ *
+ * <p>The shard owns the ids whose offset from the base is congruent to the shard index, modulo the
+ * number of shards (see {@link ServerRouter}). The slot of such an id is <code>(id - base) / shards
+ * </code>, so the slots of a shard are numbered from 0 to {@link #capacity()} - 1 without gaps.
+ *
+ * @author NISALBA
+ */
+final class ShardSlots {
+
+  private final int base;
+  private final int count;
+  private final int shards;
+  private final int shard;
+  private final int capacity;
+
+  /**
+   * @param base   the first incoming dialogue id
+   * @param count  the number of incoming dialogue ids
+   * @param shards the number of shards
+   * @param shard  the index of the shard
+   */
+  ShardSlots(int base, int count, int shards, int shard) {
+    if (shards < 1 || shard < 0 || shard >= shards) {
+      throw new IllegalStateException("Invalid shard " + shard + " of " + shards);
+    }
+    this.base = base;
+    this.count = count;
+    this.shards = shards;
+    this.shard = shard;
+    this.capacity = Math.max(0, (count - shard + shards - 1) / shards);
+  }
+
+  /**
+   * Gets the dialogue id of a slot.
+   *
+   * @param slot a slot number, from 0 to {@link #capacity()} - 1
+   * @return the dialogue id
+   */
+  int idOf(int slot) {
+    return base + slot * shards + shard;
+  }
+
+  /**
+   * Gets the slot of a dialogue id.
+   *
+   * @param dialogueId id of the dialogue
+   * @return the slot number, or -1 if the id is not owned by this shard
+   */
+  int slotOf(int dialogueId) {
+    int offset = dialogueId - base;
+    if (offset < 0 || offset >= count || offset % shards != shard) {
+      return -1;
+    }
+    return offset / shards;
+  }
+
+  /**
+   * Gets the number of slots.
+   *
+   * @return the number of dialogue ids owned by this shard
+   */
+  int capacity() {
+    return capacity;
+  }
+
+  /**
+   * Gets the part of a system-wide limit that falls to this shard. The limit is split evenly; the
+   * first shards take the remainder. The share never exceeds the capacity.
+   *
+   * @param limit the limit for all shards
+   * @return the limit for this shard
+   */
+  int share(int limit) {
+    int total = Math.max(0, limit);
+    return Math.min(capacity, total / shards + (shard < total % shards ? 1 : 0));
+  }
+
+  /**
+   * Gets the index of the shard.
+   *
+   * @return the shard index
+   */
+  int shard() {
+    return shard;
+  }
+}
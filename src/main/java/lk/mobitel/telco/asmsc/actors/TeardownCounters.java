@@ -0,0 +1,116 @@
+package lk.mobitel.telco.asmsc.actors;
+
+import lk.mobitel.telco.asmsc.map.constant.ProviderReason;
+import lk.mobitel.telco.asmsc.map.constant.UserReason;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts the incoming dialogues torn down by the MAP provider: closed, aborted by the peer user
+ * (by {@link UserReason}), aborted by the provider (by {@link ProviderReason}), or noticed of a
+ * problem. Shared by all {@link Server} shards, and can be used from any thread.
+ *
+ * @author NISALBA
+ */
+public final class TeardownCounters {
+
+  private static final UserReason[] USER_REASONS = UserReason.values();
+  private static final ProviderReason[] PROVIDER_REASONS = ProviderReason.values();
+
+  /** Indexed by {@link UserReason} ordinal; the last element counts missing reasons. */
+  private final AtomicLongArray userAborts = new AtomicLongArray(USER_REASONS.length + 1);
+
+  /** Indexed by {@link ProviderReason} ordinal; the last element counts missing reasons. */
+  private final AtomicLongArray providerAborts = new AtomicLongArray(PROVIDER_REASONS.length + 1);
+
+  /** Closes at index 0, notices at index 1. */
+  private final AtomicLongArray others = new AtomicLongArray(2);
+
+  void closed() {
+    others.incrementAndGet(0);
+  }
+
+  void noticed() {
+    others.incrementAndGet(1);
+  }
+
+  void userAborted(@Nullable UserReason reason) {
+    userAborts.incrementAndGet(reason == null ? USER_REASONS.length : reason.ordinal());
+  }
+
+  void providerAborted(@Nullable ProviderReason reason) {
+    providerAborts.incrementAndGet(
+        reason == null ? PROVIDER_REASONS.length : reason.ordinal());
+  }
+
+  /**
+   * Gets the number of dialogues closed by the peer.
+   *
+   * @return the number of close indications
+   */
+  public long closes() {
+    return others.get(0);
+  }
+
+  /**
+   * Gets the number of dialogues aborted on a notice of the provider.
+   *
+   * @return the number of notice indications
+   */
+  public long notices() {
+    return others.get(1);
+  }
+
+  /**
+   * Gets the number of dialogues aborted by the peer user.
+   *
+   * @param reason the user reason, or null for aborts without a valid reason
+   * @return the number of user abort indications with the reason
+   */
+  public long userAborts(@Nullable UserReason reason) {
+    return userAborts.get(reason == null ? USER_REASONS.length : reason.ordinal());
+  }
+
+  /**
+   * Gets the number of dialogues aborted by the provider.
+   *
+   * @param reason the provider reason, or null for aborts without a valid reason
+   * @return the number of provider abort indications with the reason
+   */
+  public long providerAborts(@Nullable ProviderReason reason) {
+    return providerAborts.get(reason == null ? PROVIDER_REASONS.length : reason.ordinal());
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder();
+    builder.append("{\"close\":").append(closes()).append(",\"notice\":").append(notices());
+    builder.append(",\"u_abort\":{");
+    appendReasons(builder, USER_REASONS, userAborts);
+    builder.append("},\"p_abort\":{");
+    appendReasons(builder, PROVIDER_REASONS, providerAborts);
+    return builder.append("}}").toString();
+  }
+
+  private static void appendReasons(
+      @NotNull StringBuilder builder, Enum<?> @NotNull [] reasons, AtomicLongArray counts) {
+    boolean first = true;
+    for (int i = 0; i <= reasons.length; i++) {
+      long count = counts.get(i);
+      if (count == 0) {
+        continue;
+      }
+      if (!first) {
+        builder.append(',');
+      }
+      first = false;
+      builder
+          .append('"')
+          .append(i < reasons.length ? reasons[i].name() : "unknown")
+          .append("\":")
+          .append(count);
+    }
+  }
+}
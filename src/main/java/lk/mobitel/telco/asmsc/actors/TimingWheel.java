@@ -0,0 +1,186 @@
+package lk.mobitel.telco.asmsc.actors;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Hierarchical timing wheel of one timer per slot. Scheduling, rescheduling and cancelling a timer
+ * take constant time, and no object is allocated per timer: timers are linked into their buckets
+ * through arrays indexed by slot, as the {@link DialogueTable} does for its dialogues.
+ *
+ * <p>Time is counted in ticks, advanced by {@link #advance(long, IntConsumer)}. There are {@value
+ * #LEVELS} wheels of {@value #WHEEL_SIZE} buckets; the first holds the timers expiring within
+ * {@value #WHEEL_SIZE} ticks, one bucket per tick, and each further wheel holds {@value
+ * #WHEEL_SIZE} times longer delays, with buckets as long as the whole previous wheel. When the
+ * previous wheel has turned around, the next bucket of a further wheel is spread into it. Delays
+ * longer than the last wheel are cut down to it.
+ *
+ * <p>A wheel is not thread-safe. It is owned by a single {@link Server} shard.
+ *
+ * @author NISALBA
+ */
+final class TimingWheel {
+
+  static final int LEVELS = 3;
+  static final int WHEEL_SIZE = 256;
+
+  private static final int WHEEL_BITS = 8;
+  private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+  private static final long MAX_DELAY = (1L << (WHEEL_BITS * LEVELS)) - 1;
+
+  /** Marks an unused link, or a slot without a timer in {@link #bucketOf}. */
+  private static final int NONE = -1;
+
+  /** First slot of each bucket, indexed by <code>level * WHEEL_SIZE + index</code>. */
+  private final int[] heads = new int[LEVELS * WHEEL_SIZE];
+
+  private final int[] next;
+  private final int[] prev;
+  private final int[] bucketOf;
+  private final long[] expiry;
+
+  private long currentTick = 0;
+  private int size = 0;
+
+  /**
+   * @param capacity the number of slots
+   */
+  TimingWheel(int capacity) {
+    this.next = new int[capacity];
+    this.prev = new int[capacity];
+    this.bucketOf = new int[capacity];
+    this.expiry = new long[capacity];
+    Arrays.fill(heads, NONE);
+    Arrays.fill(bucketOf, NONE);
+  }
+
+  /**
+   * Starts the timer of a slot, replacing the one it had.
+   *
+   * @param slot       the slot
+   * @param delayTicks the number of ticks until expiry; at least one tick is used
+   */
+  void schedule(int slot, long delayTicks) {
+    cancel(slot);
+    expiry[slot] = currentTick + Math.min(MAX_DELAY, Math.max(1, delayTicks));
+    place(slot);
+    size++;
+  }
+
+  /**
+   * Stops the timer of a slot, if it has one.
+   *
+   * @param slot the slot
+   * @return true if a timer was stopped
+   */
+  boolean cancel(int slot) {
+    if (bucketOf[slot] == NONE) {
+      return false;
+    }
+    unlink(slot);
+    size--;
+    return true;
+  }
+
+  /**
+   * Checks whether a slot has a timer.
+   *
+   * @param slot the slot
+   * @return true if the slot has a timer that has not expired
+   */
+  boolean isScheduled(int slot) {
+    return bucketOf[slot] != NONE;
+  }
+
+  /**
+   * Moves the wheel forward to a tick, expiring the timers due by then, in tick order.
+   *
+   * @param tick    the tick to move to; earlier ticks are ignored
+   * @param expired called with the slot of each expired timer. The timer is already stopped, and
+   *                may be scheduled again.
+   */
+  void advance(long tick, IntConsumer expired) {
+    while (currentTick < tick) {
+      currentTick++;
+      for (int level = LEVELS - 1; level > 0; level--) {
+        int shift = WHEEL_BITS * level;
+        if ((currentTick & ((1L << shift) - 1)) == 0) {
+          cascade(level, (int) (currentTick >>> shift) & WHEEL_MASK);
+        }
+      }
+      int bucket = (int) currentTick & WHEEL_MASK;
+      for (int slot = heads[bucket]; slot != NONE; slot = heads[bucket]) {
+        unlink(slot);
+        size--;
+        expired.accept(slot);
+      }
+    }
+  }
+
+  /**
+   * Gets the current tick.
+   *
+   * @return the tick the wheel has moved to
+   */
+  long currentTick() {
+    return currentTick;
+  }
+
+  /**
+   * Gets the number of running timers.
+   *
+   * @return the number of scheduled slots
+   */
+  int size() {
+    return size;
+  }
+
+  /** Moves the timers of a bucket of a further wheel down to nearer wheels. */
+  private void cascade(int level, int index) {
+    int bucket = level * WHEEL_SIZE + index;
+    int slot = heads[bucket];
+    heads[bucket] = NONE;
+    while (slot != NONE) {
+      int following = next[slot];
+      bucketOf[slot] = NONE;
+      place(slot);
+      slot = following;
+    }
+  }
+
+  private void place(int slot) {
+    long delta = expiry[slot] - currentTick;
+    int level = 0;
+    while (level < LEVELS - 1 && delta >= 1L << (WHEEL_BITS * (level + 1))) {
+      level++;
+    }
+    int bucket = level * WHEEL_SIZE + ((int) (expiry[slot] >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+    int head = heads[bucket];
+    next[slot] = head;
+    prev[slot] = NONE;
+    if (head != NONE) {
+      prev[head] = slot;
+    }
+    heads[bucket] = slot;
+    bucketOf[slot] = bucket;
+  }
+
+  private void unlink(int slot) {
+    int before = prev[slot];
+    int after = next[slot];
+    if (before == NONE) {
+      heads[bucketOf[slot]] = after;
+    } else {
+      next[before] = after;
+    }
+    if (after != NONE) {
+      prev[after] = before;
+    }
+    bucketOf[slot] = NONE;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("{\"tick\":%d,\"timers\":%d}", currentTick, size);
+  }
+}
@@ -0,0 +1,74 @@
+package lk.mobitel.telco.asmsc.actors.service;
+
+import lk.mobitel.telco.asmsc.map.constant.ParameterName;
+import lk.mobitel.telco.asmsc.map.constant.Primitive;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <code>MAP-MO-FORWARD-SHORT-MESSAGE</code> indication (<code>MAPST_MO_FWD_SM_IND</code>).
+ *
+ * @author NISALBA
+ */
+public final class MoForwardSmIndication extends TypedServicePrimitive
+    implements ServiceIndication {
+
+  static final ParameterLayout LAYOUT =
+      ParameterLayout.builder()
+          .mandatory(ParameterName.MAPPN_sm_rp_da)
+          .mandatory(ParameterName.MAPPN_sm_rp_oa)
+          .mandatory(ParameterName.MAPPN_sm_rp_ui)
+          .optional(ParameterName.MAPPN_imsi)
+          .build();
+
+  private static final int SM_RP_DA = 1;
+  private static final int SM_RP_OA = 2;
+  private static final int SM_RP_UI = 3;
+  private static final int IMSI = 4;
+
+  private byte[] smRpDa;
+  private byte[] smRpOa;
+  private byte[] smRpUi;
+  private byte[] imsi;
+
+  MoForwardSmIndication() {
+    super(Primitive.MAPST_MO_FWD_SM_IND, LAYOUT);
+  }
+
+  @Override
+  protected void assign(int slot, ByteBuffer buffer, int offset, int length) {
+    switch (slot) {
+      case SM_RP_DA:
+        smRpDa = copy(buffer, offset, length);
+        break;
+      case SM_RP_OA:
+        smRpOa = copy(buffer, offset, length);
+        break;
+      case SM_RP_UI:
+        smRpUi = copy(buffer, offset, length);
+        break;
+      case IMSI:
+        imsi = copy(buffer, offset, length);
+        break;
+      default:
+        // no other slots
+    }
+  }
+
+  public byte[] smRpDa() {
+    return smRpDa;
+  }
+
+  public byte[] smRpOa() {
+    return smRpOa;
+  }
+
+  public byte[] smRpUi() {
+    return smRpUi;
+  }
+
+  public byte @Nullable [] imsi() {
+    return imsi;
+  }
+}
@@ -0,0 +1,73 @@
+package lk.mobitel.telco.asmsc.actors.service;
+
+import lk.mobitel.telco.asmsc.gct.GctDecode;
+import lk.mobitel.telco.asmsc.map.constant.ParameterName;
+import lk.mobitel.telco.asmsc.map.constant.Primitive;
+import lk.mobitel.telco.asmsc.map.constant.ProviderError;
+import lk.mobitel.telco.asmsc.map.constant.UserError;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <code>MAP-MT-FORWARD-SHORT-MESSAGE</code> confirmation (<code>MAPST_MT_FWD_SM_CNF</code>). On
+ * success, the delivery report of the mobile station may be present; otherwise a user or provider
+ * error is.
+ *
+ * @author NISALBA
+ */
+public final class MtForwardSmConfirm extends TypedServicePrimitive {
+
+  static final ParameterLayout LAYOUT =
+      ParameterLayout.builder()
+          .optional(ParameterName.MAPPN_sm_rp_ui)
+          .optional(ParameterName.MAPPN_user_err)
+          .optional(ParameterName.MAPPN_prov_err)
+          .build();
+
+  private static final int SM_RP_UI = 1;
+  private static final int USER_ERR = 2;
+  private static final int PROV_ERR = 3;
+
+  private byte[] smRpUi;
+  private int userError;
+  private int providerError;
+
+  MtForwardSmConfirm() {
+    super(Primitive.MAPST_MT_FWD_SM_CNF, LAYOUT);
+  }
+
+  @Override
+  protected void assign(int slot, ByteBuffer buffer, int offset, int length) {
+    switch (slot) {
+      case SM_RP_UI:
+        smRpUi = copy(buffer, offset, length);
+        break;
+      case USER_ERR:
+        userError = GctDecode.asInt(buffer, offset, length);
+        break;
+      case PROV_ERR:
+        providerError = GctDecode.asInt(buffer, offset, length);
+        break;
+      default:
+        // no other slots
+    }
+  }
+
+  /** @return true if neither a user error nor a provider error is present */
+  public boolean isSuccess() {
+    return !isPresent(USER_ERR) && !isPresent(PROV_ERR);
+  }
+
+  public byte @Nullable [] smRpUi() {
+    return smRpUi;
+  }
+
+  public @Nullable UserError userError() {
+    return isPresent(USER_ERR) ? UserError.of(userError) : null;
+  }
+
+  public @Nullable ProviderError providerError() {
+    return isPresent(PROV_ERR) ? ProviderError.of(providerError) : null;
+  }
+}
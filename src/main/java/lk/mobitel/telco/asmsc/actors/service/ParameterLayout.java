@@ -0,0 +1,137 @@
+package lk.mobitel.telco.asmsc.actors.service;
+
+import lk.mobitel.telco.asmsc.map.constant.ParameterName;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * The fixed set of parameters of a service primitive, as used by a {@link TypedServicePrimitive}.
+ *
+ * <p>Each parameter is given a slot number, in the order it is declared. Slot numbers index the
+ * fields of the typed class and the bits of its presence mask, so a layout holds at most 64
+ * parameters. The slot of a parameter name is found with one array read, indexed by the ordinal of
+ * the name. <code>MAPPN_invoke_id</code> is always slot 0 and mandatory.
+ *
+ * @author NISALBA
+ */
+public final class ParameterLayout {
+
+  /** Slot of <code>MAPPN_invoke_id</code> in every layout. */
+  public static final int INVOKE_ID = 0;
+
+  public static class ParameterLayoutBuilder {
+    private ParameterName[] names = new ParameterName[8];
+    private int count = 0;
+    private long mandatory = 0L;
+
+    private ParameterLayoutBuilder() {
+      mandatory(ParameterName.MAPPN_invoke_id);
+    }
+
+    /**
+     * Adds a mandatory parameter. Its slot is the number of parameters added before it.
+     *
+     * @param name name of the parameter
+     * @return this builder
+     */
+    public ParameterLayoutBuilder mandatory(ParameterName name) {
+      mandatory |= 1L << count;
+      return optional(name);
+    }
+
+    /**
+     * Adds an optional parameter. Its slot is the number of parameters added before it.
+     *
+     * @param name name of the parameter
+     * @return this builder
+     */
+    public ParameterLayoutBuilder optional(ParameterName name) {
+      if (count == Long.SIZE) {
+        throw new IllegalStateException("A layout cannot hold more than 64 parameters");
+      }
+      for (int i = 0; i < count; i++) {
+        if (names[i] == name) {
+          throw new IllegalStateException("Parameter is already in the layout: " + name);
+        }
+      }
+      if (count == names.length) {
+        names = Arrays.copyOf(names, count << 1);
+      }
+      names[count++] = name;
+      return this;
+    }
+
+    public ParameterLayout build() {
+      return new ParameterLayout(Arrays.copyOf(names, count), mandatory);
+    }
+  }
+
+  public static @NotNull ParameterLayoutBuilder builder() {
+    return new ParameterLayoutBuilder();
+  }
+
+  private final ParameterName[] names;
+  private final byte[] slotByOrdinal;
+  private final long mandatory;
+
+  private ParameterLayout(ParameterName[] names, long mandatory) {
+    this.names = names;
+    this.mandatory = mandatory;
+    this.slotByOrdinal = new byte[ParameterName.values().length];
+    Arrays.fill(slotByOrdinal, (byte) -1);
+    for (int i = 0; i < names.length; i++) {
+      slotByOrdinal[names[i].ordinal()] = (byte) i;
+    }
+  }
+
+  /**
+   * Gets the slot of a parameter.
+   *
+   * @param name name of the parameter
+   * @return the slot number, or -1 if the parameter is not part of this layout
+   */
+  public int slotOf(@NotNull ParameterName name) {
+    return slotByOrdinal[name.ordinal()];
+  }
+
+  /**
+   * Gets the parameter at a slot.
+   *
+   * @param slot the slot number
+   * @return the name of the parameter in the slot
+   */
+  public ParameterName nameOf(int slot) {
+    return names[slot];
+  }
+
+  /**
+   * Gets the number of slots in this layout.
+   *
+   * @return the number of parameters in this layout
+   */
+  public int size() {
+    return names.length;
+  }
+
+  /**
+   * Gets the bits of the mandatory slots.
+   *
+   * @return a mask with bit <i>n</i> set if slot <i>n</i> is mandatory
+   */
+  public long mandatory() {
+    return mandatory;
+  }
+
+  /**
+   * Gets the first mandatory parameter missing from a presence mask.
+   *
+   * @param presence presence mask of a decoded primitive
+   * @return the name of the missing parameter, or null if all mandatory parameters are present
+   */
+  public @Nullable ParameterName firstMissing(long presence) {
+    long missing = mandatory & ~presence;
+    return missing == 0 ? null : names[Long.numberOfTrailingZeros(missing)];
+  }
+}
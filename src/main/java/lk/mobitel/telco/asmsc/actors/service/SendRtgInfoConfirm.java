@@ -0,0 +1,108 @@
+package lk.mobitel.telco.asmsc.actors.service;
+
+import lk.mobitel.telco.asmsc.gct.GctDecode;
+import lk.mobitel.telco.asmsc.map.constant.ParameterName;
+import lk.mobitel.telco.asmsc.map.constant.Primitive;
+import lk.mobitel.telco.asmsc.map.constant.ProviderError;
+import lk.mobitel.telco.asmsc.map.constant.UserError;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <code>MAP-SEND-ROUTING-INFO-FOR-SM</code> confirmation (<code>MAPST_SND_RTISM_CNF</code>). On
+ * success, the IMSI and the serving node are present; otherwise a user or provider error is.
+ *
+ * @author NISALBA
+ */
+public final class SendRtgInfoConfirm extends TypedServicePrimitive {
+
+  static final ParameterLayout LAYOUT =
+      ParameterLayout.builder()
+          .optional(ParameterName.MAPPN_imsi)
+          .optional(ParameterName.MAPPN_msc_num)
+          .optional(ParameterName.MAPPN_lmsi)
+          .optional(ParameterName.MAPPN_gprs_node_ind)
+          .optional(ParameterName.MAPPN_sgsn_number)
+          .optional(ParameterName.MAPPN_user_err)
+          .optional(ParameterName.MAPPN_prov_err)
+          .build();
+
+  private static final int IMSI = 1;
+  private static final int MSC_NUM = 2;
+  private static final int LMSI = 3;
+  private static final int GPRS_NODE_IND = 4;
+  private static final int SGSN_NUMBER = 5;
+  private static final int USER_ERR = 6;
+  private static final int PROV_ERR = 7;
+
+  private byte[] imsi;
+  private byte[] mscNum;
+  private byte[] lmsi;
+  private byte[] sgsnNumber;
+  private int userError;
+  private int providerError;
+
+  SendRtgInfoConfirm() {
+    super(Primitive.MAPST_SND_RTISM_CNF, LAYOUT);
+  }
+
+  @Override
+  protected void assign(int slot, ByteBuffer buffer, int offset, int length) {
+    switch (slot) {
+      case IMSI:
+        imsi = copy(buffer, offset, length);
+        break;
+      case MSC_NUM:
+        mscNum = copy(buffer, offset, length);
+        break;
+      case LMSI:
+        lmsi = copy(buffer, offset, length);
+        break;
+      case SGSN_NUMBER:
+        sgsnNumber = copy(buffer, offset, length);
+        break;
+      case USER_ERR:
+        userError = GctDecode.asInt(buffer, offset, length);
+        break;
+      case PROV_ERR:
+        providerError = GctDecode.asInt(buffer, offset, length);
+        break;
+      default:
+        // GPRS_NODE_IND has no data; presence is enough
+    }
+  }
+
+  /** @return true if neither a user error nor a provider error is present */
+  public boolean isSuccess() {
+    return !isPresent(USER_ERR) && !isPresent(PROV_ERR);
+  }
+
+  public byte @Nullable [] imsi() {
+    return imsi;
+  }
+
+  public byte @Nullable [] mscNum() {
+    return mscNum;
+  }
+
+  public byte @Nullable [] lmsi() {
+    return lmsi;
+  }
+
+  public boolean gprsNode() {
+    return isPresent(GPRS_NODE_IND);
+  }
+
+  public byte @Nullable [] sgsnNumber() {
+    return sgsnNumber;
+  }
+
+  public @Nullable UserError userError() {
+    return isPresent(USER_ERR) ? UserError.of(userError) : null;
+  }
+
+  public @Nullable ProviderError providerError() {
+    return isPresent(PROV_ERR) ? ProviderError.of(providerError) : null;
+  }
+}
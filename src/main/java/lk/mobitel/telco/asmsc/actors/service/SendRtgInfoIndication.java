@@ -1,13 +1,92 @@
 package lk.mobitel.telco.asmsc.actors.service;
 
-import lk.mobitel.telco.asmsc.map.Parameter;
+import lk.mobitel.telco.asmsc.gct.GctDecode;
+import lk.mobitel.telco.asmsc.map.constant.ParameterName;
 import lk.mobitel.telco.asmsc.map.constant.Primitive;
-import lombok.Value;
-
-@Value
-public class SendRtgInfoIndication implements ServiceIndication {
-  Primitive primitive;
-  short invokeId;
-  Parameter msisdn;
-  Parameter scAddr;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <code>MAP-SEND-ROUTING-INFO-FOR-SM</code> indication (<code>MAPST_SND_RTISM_IND</code>).
+ *
+ * @author NISALBA
+ */
+public final class SendRtgInfoIndication extends TypedServicePrimitive
+    implements ServiceIndication {
+
+  static final ParameterLayout LAYOUT =
+      ParameterLayout.builder()
+          .mandatory(ParameterName.MAPPN_msisdn)
+          .mandatory(ParameterName.MAPPN_sm_rp_pri)
+          .mandatory(ParameterName.MAPPN_sc_addr)
+          .optional(ParameterName.MAPPN_gprs_support_ind)
+          .optional(ParameterName.MAPPN_sm_rp_mti)
+          .optional(ParameterName.MAPPN_sm_rp_smea)
+          .build();
+
+  private static final int MSISDN = 1;
+  private static final int SM_RP_PRI = 2;
+  private static final int SC_ADDR = 3;
+  private static final int GPRS_SUPPORT_IND = 4;
+  private static final int SM_RP_MTI = 5;
+  private static final int SM_RP_SMEA = 6;
+
+  private byte[] msisdn;
+  private boolean smRpPri;
+  private byte[] scAddr;
+  private int smRpMti = -1;
+  private byte[] smRpSmea;
+
+  SendRtgInfoIndication() {
+    super(Primitive.MAPST_SND_RTISM_IND, LAYOUT);
+  }
+
+  @Override
+  protected void assign(int slot, ByteBuffer buffer, int offset, int length) {
+    switch (slot) {
+      case MSISDN:
+        msisdn = copy(buffer, offset, length);
+        break;
+      case SM_RP_PRI:
+        smRpPri = length > 0 && buffer.get(offset) == 1;
+        break;
+      case SC_ADDR:
+        scAddr = copy(buffer, offset, length);
+        break;
+      case SM_RP_MTI:
+        smRpMti = GctDecode.asInt(buffer, offset, length);
+        break;
+      case SM_RP_SMEA:
+        smRpSmea = copy(buffer, offset, length);
+        break;
+      default:
+        // GPRS_SUPPORT_IND has no data; presence is enough
+    }
+  }
+
+  public byte[] msisdn() {
+    return msisdn;
+  }
+
+  public boolean smRpPri() {
+    return smRpPri;
+  }
+
+  public byte[] scAddr() {
+    return scAddr;
+  }
+
+  public boolean gprsSupport() {
+    return isPresent(GPRS_SUPPORT_IND);
+  }
+
+  /** @return the SM-RP-MTI, or -1 if absent */
+  public int smRpMti() {
+    return smRpMti;
+  }
+
+  public byte @Nullable [] smRpSmea() {
+    return smRpSmea;
+  }
 }
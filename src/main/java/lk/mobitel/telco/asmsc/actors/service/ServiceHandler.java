@@ -0,0 +1,31 @@
+package lk.mobitel.telco.asmsc.actors.service;
+
+import lk.mobitel.telco.asmsc.actors.ServingDialogue;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Executes the invocations of a service, for the {@link ServingDialogue}s. Handlers are
+ * registered by indication primitive in {@link ServiceHandlers}.
+ *
+ * <p>{@link #handle} is called on the thread of the dialogue, and must return without blocking:
+ * a handler that queries a store or an HLR starts the query and returns its pending result. All
+ * invocations of a dialogue turn are started before any of them completes, so they run at the same
+ * time. The stage may be completed on any thread. If the dialogue ends before that, the stage is
+ * cancelled, where it supports it.
+ *
+ * @author NISALBA
+ */
+@FunctionalInterface
+public interface ServiceHandler {
+
+  /**
+   * Starts a service invocation.
+   *
+   * @param indication the decoded service indication
+   * @return the result of the invocation. A stage completed exceptionally, or with null, is
+   *     answered with <code>MAPUE_system_failure</code>.
+   */
+  @NotNull CompletionStage<ServiceResult> handle(@NotNull TypedServicePrimitive indication);
+}
@@ -0,0 +1,60 @@
+package lk.mobitel.telco.asmsc.actors.service;
+
+import lk.mobitel.telco.asmsc.map.constant.Primitive;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Registry of the {@link ServiceHandler}s, by indication primitive. The handler of an indication
+ * is found with one array read. Invocations of primitives without a handler are answered with
+ * <code>MAPUE_facility_not_supported</code>.
+ *
+ * <p>Handlers are usually registered once at startup, but can be replaced at any time from any
+ * thread; invocations already started keep their handler.
+ *
+ * @author NISALBA
+ */
+public final class ServiceHandlers {
+
+  /** Handlers indexed by {@link Primitive} ordinal. */
+  private static final AtomicReferenceArray<ServiceHandler> handlers =
+      new AtomicReferenceArray<>(Primitive.values().length);
+
+  private ServiceHandlers() {}
+
+  /**
+   * Registers the handler of a service, replacing the previous one.
+   *
+   * @param indication the indication primitive of the service
+   * @param handler    the handler
+   * @throws IllegalStateException if the primitive has no typed class in {@link ServicePrimitives}
+   */
+  public static void register(@NotNull Primitive indication, @NotNull ServiceHandler handler)
+      throws IllegalStateException {
+    if (!ServicePrimitives.isSupported(indication)) {
+      throw new IllegalStateException("No typed primitive for " + indication);
+    }
+    handlers.set(indication.ordinal(), handler);
+  }
+
+  /**
+   * Removes the handler of a service.
+   *
+   * @param indication the indication primitive of the service
+   */
+  public static void unregister(@NotNull Primitive indication) {
+    handlers.set(indication.ordinal(), null);
+  }
+
+  /**
+   * Gets the handler of a service.
+   *
+   * @param indication the indication primitive of the service
+   * @return the handler, or null if none is registered
+   */
+  public static @Nullable ServiceHandler handlerOf(@NotNull Primitive indication) {
+    return handlers.get(indication.ordinal());
+  }
+}
@@ -0,0 +1,65 @@
+package lk.mobitel.telco.asmsc.actors.service;
+
+import lk.mobitel.telco.asmsc.map.Message;
+import lk.mobitel.telco.asmsc.map.constant.Primitive;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.function.Supplier;
+
+/**
+ * Decodes messages into {@link TypedServicePrimitive} objects. The typed class of a message is
+ * found by its primitive, with one array read.
+ *
+ * @author NISALBA
+ */
+public final class ServicePrimitives {
+
+  /** Factories of typed primitives, indexed by {@link Primitive} ordinal. */
+  private static final Supplier<?>[] factories = new Supplier<?>[Primitive.values().length];
+
+  private static void register(
+      @NotNull Primitive primitive, @NotNull Supplier<? extends TypedServicePrimitive> factory) {
+    factories[primitive.ordinal()] = factory;
+  }
+
+  static {
+    register(Primitive.MAPST_SND_RTISM_IND, SendRtgInfoIndication::new);
+    register(Primitive.MAPST_SND_RTISM_CNF, SendRtgInfoConfirm::new);
+    register(Primitive.MAPST_MO_FWD_SM_IND, MoForwardSmIndication::new);
+    register(Primitive.MAPST_MT_FWD_SM_IND, MtForwardSmIndication::new);
+    register(Primitive.MAPST_MT_FWD_SM_CNF, MtForwardSmConfirm::new);
+  }
+
+  private ServicePrimitives() {}
+
+  /**
+   * Returns true if there is a typed class for the primitive.
+   *
+   * @param primitive the primitive to check
+   * @return true if {@link #decode(Message)} can decode messages of this primitive
+   */
+  public static boolean isSupported(@NotNull Primitive primitive) {
+    return factories[primitive.ordinal()] != null;
+  }
+
+  /**
+   * Decodes a message into its typed primitive. The message is not released, and is not referred
+   * by the result.
+   *
+   * @param message the message to decode
+   * @return the typed primitive, or null if there is no typed class for the primitive of the message
+   * @throws IllegalStateException if a mandatory parameter is missing, or the parameter area cannot
+   *     be read
+   */
+  public static @Nullable TypedServicePrimitive decode(@NotNull Message message)
+      throws IllegalStateException {
+    Supplier<?> factory = factories[message.getPrimitive().ordinal()];
+    if (factory == null) {
+      return null;
+    }
+    TypedServicePrimitive primitive = (TypedServicePrimitive) factory.get();
+    primitive.decode(message);
+    return primitive;
+  }
+}
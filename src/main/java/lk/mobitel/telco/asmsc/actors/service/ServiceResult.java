@@ -0,0 +1,110 @@
+package lk.mobitel.telco.asmsc.actors.service;
+
+import lk.mobitel.telco.asmsc.actors.ServingDialogue;
+import lk.mobitel.telco.asmsc.gct.GctEncodable;
+import lk.mobitel.telco.asmsc.gct.GctMessage;
+import lk.mobitel.telco.asmsc.gct.GctParameter;
+import lk.mobitel.telco.asmsc.gct.GctTemplates;
+import lk.mobitel.telco.asmsc.map.constant.MessageType;
+import lk.mobitel.telco.asmsc.map.constant.ParameterName;
+import lk.mobitel.telco.asmsc.map.constant.Primitive;
+import lk.mobitel.telco.asmsc.map.constant.UserError;
+import lombok.Value;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * Outcome of a service invocation, given by a {@link ServiceHandler}. The dialogue engine (see
+ * {@link ServingDialogue}) answers the invocation with the response primitive of its indication:
+ * carrying the parameters on success, or the user error otherwise. The invoke-id is added by the
+ * dialogue.
+ *
+ * <p>By default the dialogue is closed once all of its invocations have results. A result can
+ * keep it open instead, for services that expect more invocations in the next turn (e.g. a
+ * <code>MO-FORWARD-SHORT-MESSAGE</code> with more messages to send). The dialogue is then
+ * delimited.
+ *
+ * @author NISALBA
+ */
+@Value
+public class ServiceResult implements ServingDialogue.ServiceResponse {
+
+  /**
+   * Creates a successful result.
+   *
+   * @param parameters parameters of the response
+   * @return the result
+   */
+  @Contract("_ -> new")
+  public static @NotNull ServiceResult success(@NotNull List<GctParameter> parameters) {
+    return new ServiceResult(List.copyOf(parameters), null, false);
+  }
+
+  /**
+   * Creates a successful result.
+   *
+   * @param parameters parameters of the response
+   * @return the result
+   */
+  @Contract("_ -> new")
+  public static @NotNull ServiceResult success(GctParameter @NotNull ... parameters) {
+    return new ServiceResult(List.of(parameters), null, false);
+  }
+
+  /**
+   * Creates a failed result.
+   *
+   * @param error the user error to respond with
+   * @return the result
+   */
+  @Contract("_ -> new")
+  public static @NotNull ServiceResult error(@NotNull UserError error) {
+    return new ServiceResult(List.of(), error, false);
+  }
+
+  List<GctParameter> parameters;
+  @Nullable UserError userError;
+  boolean keepsDialogueOpen;
+
+  /**
+   * Gets a copy of this result that keeps the dialogue open.
+   *
+   * @return the result
+   */
+  @Contract(" -> new")
+  public @NotNull ServiceResult keepingDialogueOpen() {
+    return new ServiceResult(parameters, userError, true);
+  }
+
+  /** @return true if there is no user error */
+  public boolean isSuccess() {
+    return userError == null;
+  }
+
+  /**
+   * Encodes the answer of an invocation with this result.
+   *
+   * @param response   the response primitive of the invocation
+   * @param dialogueId id of the dialogue
+   * @param instance   instance of the dialogue
+   * @param invokeId   invoke-id of the invocation
+   * @return the response, carrying the parameters on success, or the user error otherwise
+   */
+  public @NotNull GctEncodable responseTo(
+      @NotNull Primitive response, int dialogueId, long instance, int invokeId) {
+    if (userError != null) {
+      return GctTemplates.userError(response, userError).bind(dialogueId, instance, invokeId);
+    }
+    return GctMessage.builder()
+        .type(MessageType.MAP_MSG_SRV_REQ)
+        .primitive(response)
+        .id(dialogueId)
+        .instance(instance)
+        .parameter(GctParameter.of8BitValue(ParameterName.MAPPN_invoke_id, (byte) invokeId))
+        .parameters(parameters)
+        .build();
+  }
+}
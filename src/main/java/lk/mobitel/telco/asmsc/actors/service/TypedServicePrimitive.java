@@ -0,0 +1,138 @@
+package lk.mobitel.telco.asmsc.actors.service;
+
+import lk.mobitel.telco.asmsc.gct.GctDecode;
+import lk.mobitel.telco.asmsc.map.Message;
+import lk.mobitel.telco.asmsc.map.constant.ParameterName;
+import lk.mobitel.telco.asmsc.map.constant.Primitive;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Base of the typed service primitives. A typed primitive has one field per parameter in its
+ * {@link ParameterLayout}, and is filled from a {@link Message} with a single pass over the
+ * parameters (see {@link Message#visitParameters}). Nothing is looked up by name afterwards.
+ *
+ * <p>The data of the parameters is copied into the fields, so a typed primitive does not refer to
+ * the message it is decoded from. The message can be released right after {@link #decode}.
+ *
+ * @author NISALBA
+ */
+public abstract class TypedServicePrimitive {
+
+  private final Primitive primitive;
+  private final ParameterLayout layout;
+  private long presence = 0L;
+  private short invokeId = -1;
+
+  protected TypedServicePrimitive(
+      @NotNull Primitive primitive, @NotNull ParameterLayout layout) {
+    this.primitive = primitive;
+    this.layout = layout;
+  }
+
+  /**
+   * Fills the fields from the parameters of {@code message}. Parameters that are not in the layout
+   * are ignored. If a parameter is repeated, the last one is kept.
+   *
+   * @param message the message to decode
+   * @throws IllegalStateException if the primitive of the message is not of this class, or a
+   *     mandatory parameter is missing
+   */
+  final void decode(@NotNull Message message) throws IllegalStateException {
+    if (message.getPrimitive() != primitive) {
+      throw new IllegalStateException(
+          "Cannot decode " + message.getPrimitive() + " as " + primitive);
+    }
+    message.visitParameters(this::visit);
+    ParameterName missing = layout.firstMissing(presence);
+    if (missing != null) {
+      throw new IllegalStateException(
+          "Mandatory parameter " + missing + " is missing in " + primitive);
+    }
+  }
+
+  private boolean visit(ParameterName name, ByteBuffer buffer, int offset, int length) {
+    int slot = layout.slotOf(name);
+    if (slot < 0) {
+      return true;
+    }
+    presence |= 1L << slot;
+    if (slot == ParameterLayout.INVOKE_ID) {
+      invokeId = (short) GctDecode.asInt(buffer, offset, length);
+    } else {
+      assign(slot, buffer, offset, length);
+    }
+    return true;
+  }
+
+  /**
+   * Stores the data of a parameter in the field of its slot. Called once per parameter during
+   * {@link #decode}, never for {@link ParameterLayout#INVOKE_ID}. The buffer must not be referred
+   * after this returns.
+   *
+   * @param slot   slot of the parameter in the layout
+   * @param buffer buffer holding the <i>Data</i> field
+   * @param offset absolute index of the <i>Data</i> field in {@code buffer}
+   * @param length length of the <i>Data</i> field
+   */
+  protected abstract void assign(int slot, ByteBuffer buffer, int offset, int length);
+
+  /**
+   * Copies a <i>Data</i> field.
+   *
+   * @return a new array holding the octets of the field
+   */
+  protected static byte @NotNull [] copy(@NotNull ByteBuffer buffer, int offset, int length) {
+    byte[] bytes = new byte[length];
+    buffer.duplicate().position(offset).get(bytes);
+    return bytes;
+  }
+
+  public Primitive primitive() {
+    return primitive;
+  }
+
+  public short invokeId() {
+    return invokeId;
+  }
+
+  /**
+   * Gets the presence mask of the parameters.
+   *
+   * @return a mask with bit <i>n</i> set if the parameter in slot <i>n</i> was present
+   * @see ParameterLayout#slotOf(ParameterName)
+   */
+  public long presence() {
+    return presence;
+  }
+
+  /**
+   * Returns true if a parameter of the layout was present in the decoded message.
+   *
+   * @param slot slot of the parameter
+   * @return true if the parameter was present
+   */
+  protected boolean isPresent(int slot) {
+    return (presence & (1L << slot)) != 0;
+  }
+
+  /**
+   * Returns true if a parameter was present in the decoded message. Always false for parameters
+   * that are not in the layout.
+   *
+   * @param name name of the parameter
+   * @return true if the parameter was present
+   */
+  public boolean isPresent(@NotNull ParameterName name) {
+    int slot = layout.slotOf(name);
+    return slot >= 0 && isPresent(slot);
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "{ \"primitive\": \"%s\", \"invoke_id\": %d, \"presence\": \"0x%x\" }",
+        primitive.mnemonic(), invokeId, presence);
+  }
+}
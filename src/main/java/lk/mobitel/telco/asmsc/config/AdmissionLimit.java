@@ -0,0 +1,59 @@
+package lk.mobitel.telco.asmsc.config;
+
+import lk.mobitel.telco.asmsc.map.constant.ApplicationContext;
+import lombok.Value;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Admission limit of the incoming dialogues of an application context: a token bucket refilled
+ * with <code>rate</code> dialogues per second, holding at most <code>burst</code> dialogues.
+ *
+ * @author NISALBA
+ * @see RuntimeConfiguration#admissionLimits()
+ */
+@Value
+public class AdmissionLimit {
+  ApplicationContext applicationContext;
+  double rate;
+  double burst;
+
+  /**
+   * Parses a list of limits, written as <code>context:rate:burst</code> and separated by commas,
+   * as in <code>admission.limits</code>. The context is the name of an {@link ApplicationContext}.
+   * The burst can be left out, and is then the rate.
+   *
+   * @param value the list of limits
+   * @return the limits, in the written order
+   * @throws IllegalStateException if a limit is malformed
+   */
+  public static @NotNull List<AdmissionLimit> parseList(@NotNull String value)
+      throws IllegalStateException {
+    List<AdmissionLimit> limits = new ArrayList<>();
+    for (String item : value.split(",")) {
+      String trimmed = item.trim();
+      if (trimmed.isEmpty()) {
+        continue;
+      }
+      String[] fields = trimmed.split(":");
+      if (fields.length != 2 && fields.length != 3) {
+        throw new IllegalStateException(
+            "Malformed admission limit, expected context:rate:burst: " + item);
+      }
+      try {
+        double rate = Double.parseDouble(fields[1].trim());
+        double burst = fields.length == 3 ? Double.parseDouble(fields[2].trim()) : rate;
+        if (rate < 0 || burst < 1) {
+          throw new IllegalStateException("Admission rate and burst are out of range: " + item);
+        }
+        limits.add(
+            new AdmissionLimit(ApplicationContext.valueOf(fields[0].trim()), rate, burst));
+      } catch (IllegalArgumentException e) {
+        throw new IllegalStateException("Malformed admission limit: " + item);
+      }
+    }
+    return limits;
+  }
+}
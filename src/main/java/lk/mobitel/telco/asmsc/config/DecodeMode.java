@@ -0,0 +1,28 @@
+package lk.mobitel.telco.asmsc.config;
+
+/**
+ * Declares how received GctMsg objects are turned into {@link lk.mobitel.telco.asmsc.map.Message}
+ * objects by the {@link lk.mobitel.telco.asmsc.actors.Collector}.
+ *
+ * @author NISALBA
+ */
+public enum DecodeMode {
+  /**
+   * Every parameter is copied into its own buffer and the native message is released right after
+   * decoding. This is the original behaviour.
+   */
+  COPY,
+
+  /**
+   * The whole parameter area is copied into a single array with one bulk transfer. Parameters are
+   * slices of that array. The native message is released right after decoding.
+   */
+  SLAB,
+
+  /**
+   * The native message is retained and wrapped in a {@link
+   * lk.mobitel.telco.asmsc.gct.GctMessageView}. Parameters are indexed on first access and handed
+   * out as read-only slices. The native message is released by the last consumer of the message.
+   */
+  VIEW
+}
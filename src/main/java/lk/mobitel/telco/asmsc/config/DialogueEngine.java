@@ -0,0 +1,21 @@
+package lk.mobitel.telco.asmsc.config;
+
+/**
+ * Declares how the incoming dialogues of a {@link lk.mobitel.telco.asmsc.actors.Server} shard are
+ * run.
+ *
+ * @author NISALBA
+ */
+public enum DialogueEngine {
+  /**
+   * Each dialogue is a {@link lk.mobitel.telco.asmsc.actors.ServingDialogue} actor, spawned at
+   * open and watched by the shard. This is the original behaviour.
+   */
+  ACTOR,
+
+  /**
+   * The state of all dialogues of a shard is kept in a preallocated table, and the dialogue state
+   * machine is run by the shard itself. No actor is spawned per dialogue or per reply.
+   */
+  FLYWEIGHT
+}
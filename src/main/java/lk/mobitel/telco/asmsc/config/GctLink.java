@@ -0,0 +1,55 @@
+package lk.mobitel.telco.asmsc.config;
+
+import lombok.Value;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A path to a MAP task: the module id this application receives on, the module id of the MAP task,
+ * and the instance carried by the messages of that MAP task.
+ *
+ * @author NISALBA
+ * @see RuntimeConfiguration#links()
+ */
+@Value
+public class GctLink {
+  short localModuleId;
+  short remoteModuleId;
+  long instance;
+
+  /**
+   * Parses a list of links, written as <code>local:remote:instance</code> and separated by commas,
+   * as in <code>gct.links</code>. Numbers can be decimal or hexadecimal (<code>0x</code> prefix).
+   *
+   * @param value the list of links
+   * @return the links, in the written order
+   * @throws IllegalStateException if a link is malformed
+   */
+  public static @NotNull List<GctLink> parseList(@NotNull String value)
+      throws IllegalStateException {
+    List<GctLink> links = new ArrayList<>();
+    for (String item : value.split(",")) {
+      String trimmed = item.trim();
+      if (trimmed.isEmpty()) {
+        continue;
+      }
+      String[] fields = trimmed.split(":");
+      if (fields.length != 3) {
+        throw new IllegalStateException(
+            "Malformed GCT link, expected local:remote:instance: " + item);
+      }
+      try {
+        links.add(
+            new GctLink(
+                Integer.decode(fields[0].trim()).shortValue(),
+                Integer.decode(fields[1].trim()).shortValue(),
+                Long.decode(fields[2].trim())));
+      } catch (NumberFormatException e) {
+        throw new IllegalStateException("Malformed GCT link: " + item);
+      }
+    }
+    return links;
+  }
+}
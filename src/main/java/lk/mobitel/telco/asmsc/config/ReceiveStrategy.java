@@ -0,0 +1,28 @@
+package lk.mobitel.telco.asmsc.config;
+
+/**
+ * Declares how the {@link lk.mobitel.telco.asmsc.actors.Collector} waits for the next message from
+ * the GCT Stack.
+ *
+ * @author NISALBA
+ */
+public enum ReceiveStrategy {
+  /**
+   * Blocks in <code>GctTransport.receive</code>. Uses no CPU while idle. This is the original
+   * behaviour.
+   */
+  BLOCKING,
+
+  /**
+   * Polls with the non-blocking <code>GctTransport.grab</code>, spinning for a configured number of
+   * empty polls, then parking between polls, with the park time doubling up to a configured
+   * maximum.
+   */
+  SPIN_THEN_PARK,
+
+  /**
+   * Polls with the non-blocking <code>GctTransport.grab</code> without ever parking. Takes a whole
+   * core, for the lowest receive latency.
+   */
+  BUSY_POLL
+}
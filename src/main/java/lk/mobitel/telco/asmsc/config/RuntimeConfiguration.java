@@ -1,5 +1,9 @@
 package lk.mobitel.telco.asmsc.config;
 
+import lk.mobitel.telco.asmsc.map.constant.RefuseReason;
+
+import java.util.List;
+
 /**
  * This interface declares the configuration items accepted by the Advanced SMSC Application.
  * Implementations can provide various methods to retrieve configurations.
@@ -70,10 +74,325 @@ public interface RuntimeConfiguration {
    */
   int incomingDialogueCount();
 
+  /**
+   * The maximum number of incoming dialogues open at the same time, per link, as in <code>
+   * incoming.dialogue.limit</code>. Open indications beyond this are aborted immediately.
+   *
+   * @return the maximum number of open incoming dialogues of a link. Defaults to {@link
+   *     #incomingDialogueCount()}.
+   */
+  default int incomingDialogueLimit() {
+    return incomingDialogueCount();
+  }
+
   /**
    * Global Title (GT) of this node.
    *
    * @return the GT address of the node.
    */
   String gtAddress();
+
+  /**
+   * Decoding strategy for received messages, as in <code>gct.decode.mode</code>.
+   *
+   * @return the decoding strategy of the collector. Defaults to {@link DecodeMode#COPY}.
+   */
+  default DecodeMode decodeMode() {
+    return DecodeMode.COPY;
+  }
+
+  /**
+   * Whether responses may be written into the received message they respond to, as in <code>
+   * gct.reply.in-place</code>. This takes effect only with {@link DecodeMode#VIEW}, where received
+   * messages are retained until they are consumed.
+   *
+   * @return true if the received native messages are reused for responses. Defaults to false.
+   */
+  default boolean replyInPlace() {
+    return false;
+  }
+
+  /**
+   * Number of {@link lk.mobitel.telco.asmsc.actors.Server} shards that incoming dialogues are
+   * partitioned into, as in <code>server.shards</code>. A value less than 1 means one shard per
+   * available processor.
+   *
+   * @return the number of server shards. Defaults to 0.
+   */
+  default int serverShards() {
+    return 0;
+  }
+
+  /**
+   * How incoming dialogues are run by the server shards, as in <code>server.dialogue.engine</code>.
+   *
+   * @return the dialogue engine. Defaults to {@link DialogueEngine#ACTOR}.
+   */
+  default DialogueEngine dialogueEngine() {
+    return DialogueEngine.ACTOR;
+  }
+
+  /**
+   * Number of outgoing messages that can wait in the emitter queue, as in <code>
+   * gct.emitter.queue</code>. Rounded up to a power of two.
+   *
+   * @return the capacity of the emitter queue. Defaults to 65536.
+   */
+  default int emitterQueueCapacity() {
+    return 1 << 16;
+  }
+
+  /**
+   * Maximum number of messages the emitter thread sends in one pass over its queue, as in <code>
+   * gct.emitter.batch</code>.
+   *
+   * @return the emitter batch size. Defaults to 64.
+   */
+  default int emitterBatchSize() {
+    return 64;
+  }
+
+  /**
+   * Maximum number of messages the collector receives before dispatching them, as in <code>
+   * gct.receive.batch.size</code>. With 1, each message is dispatched as soon as it is received.
+   *
+   * @return the receive batch size. Defaults to 1.
+   */
+  default int receiveBatchSize() {
+    return 1;
+  }
+
+  /**
+   * Maximum time, in microseconds, the collector spends filling a batch after its first message,
+   * as in <code>gct.receive.batch.budget</code>.
+   *
+   * @return the time budget of a receive batch. Defaults to 200.
+   */
+  default long receiveBatchBudget() {
+    return 200;
+  }
+
+  /**
+   * How the collector waits for received messages, as in <code>gct.receive.strategy</code>.
+   *
+   * @return the receive strategy. Defaults to {@link ReceiveStrategy#BLOCKING}.
+   */
+  default ReceiveStrategy receiveStrategy() {
+    return ReceiveStrategy.BLOCKING;
+  }
+
+  /**
+   * Number of empty polls the collector spins for before parking, as in <code>gct.receive.spin
+   * </code>. Used by {@link ReceiveStrategy#SPIN_THEN_PARK}.
+   *
+   * @return the number of spinning polls. Defaults to 10000.
+   */
+  default int receiveSpinLimit() {
+    return 10_000;
+  }
+
+  /**
+   * Longest time, in microseconds, the collector parks for between two empty polls, as in <code>
+   * gct.receive.park</code>. Used by {@link ReceiveStrategy#SPIN_THEN_PARK}.
+   *
+   * @return the maximum park time. Defaults to 100.
+   */
+  default long receiveMaxPark() {
+    return 100;
+  }
+
+  /**
+   * The links to the MAP tasks, as in <code>gct.links</code>. One collector thread and one emitter
+   * thread run per link. Replies go back through the link their dialogue arrived on, found by the
+   * instance of the messages.
+   *
+   * <p>Each link has its own block of dialogue ids. The MAP task of link <i>i</i> must be
+   * configured with the incoming dialogue ids <code>[base + i * count, base + (i + 1) * count)
+   * </code>, where base and count are {@link #incomingDialogueIdBase()} and {@link
+   * #incomingDialogueCount()}, and likewise for the outgoing dialogue ids.
+   *
+   * @return the links, in order. Defaults to a single link between {@link #localModuleId()} and
+   *     {@link #remoteModuleId()}, with instance 0.
+   * @see GctLink#parseList(String)
+   */
+  default List<GctLink> links() {
+    return List.of(new GctLink(localModuleId(), remoteModuleId(), 0));
+  }
+
+  /**
+   * The transport GCT messages go through, as in <code>gct.transport</code>.
+   *
+   * @return the transport. Defaults to {@link Transport#NATIVE}.
+   */
+  default Transport transport() {
+    return Transport.NATIVE;
+  }
+
+  /**
+   * Delay, in microseconds, before a message sent through the loopback transport can be received,
+   * as in <code>gct.loopback.latency</code>. Used by {@link Transport#LOOPBACK}.
+   *
+   * @return the injected latency. Defaults to 0.
+   */
+  default long loopbackLatency() {
+    return 0;
+  }
+
+  /**
+   * Fraction of the messages sent through the loopback transport that are dropped, between 0 and
+   * 1, as in <code>gct.loopback.loss</code>. Used by {@link Transport#LOOPBACK}.
+   *
+   * @return the injected loss ratio. Defaults to 0.
+   */
+  default double loopbackLossRatio() {
+    return 0;
+  }
+
+  /**
+   * Maximum number of messages waiting to be received by a module of the loopback transport, as
+   * in <code>gct.loopback.queue</code>. Sending to a full module fails. Used by {@link
+   * Transport#LOOPBACK}.
+   *
+   * @return the queue limit of a module. Defaults to 65536.
+   */
+  default int loopbackQueueLimit() {
+    return 65536;
+  }
+
+  /**
+   * Number of received messages waiting for a server shard at which the inbound path is
+   * overloaded, as in <code>inbound.watermark.high</code>. While overloaded, the collectors stop
+   * receiving, or refuse new dialogues if {@link #inboundOverloadRefuse()} is set. Below 1, the
+   * inbound path is never overloaded.
+   *
+   * @return the high watermark. Defaults to 8192.
+   */
+  default int inboundHighWatermark() {
+    return 8192;
+  }
+
+  /**
+   * Number of received messages waiting for a server shard, which every shard must be drained to
+   * before the overload of the inbound path is over, as in <code>inbound.watermark.low</code>.
+   *
+   * @return the low watermark. Defaults to 2048.
+   */
+  default int inboundLowWatermark() {
+    return 2048;
+  }
+
+  /**
+   * Whether the collectors keep receiving while the inbound path is overloaded, as in <code>
+   * inbound.overload.refuse</code>. If set, new dialogues are refused at once with a pre-encoded
+   * <code>MAPDT_OPEN_RSP</code>, and the messages of open dialogues are still dispatched. If not,
+   * the collectors stop receiving until the shards are drained, leaving messages queued in the
+   * GCT environment.
+   *
+   * @return true to refuse new dialogues while overloaded. Defaults to false.
+   */
+  default boolean inboundOverloadRefuse() {
+    return false;
+  }
+
+  /**
+   * Reason given to new dialogues refused while the inbound path is overloaded, as in <code>
+   * inbound.overload.refuse.reason</code>. Only used with {@link #inboundOverloadRefuse()}.
+   *
+   * @return the refuse reason. Defaults to {@link RefuseReason#MAPRR_no_reason}.
+   */
+  default RefuseReason inboundOverloadRefuseReason() {
+    return RefuseReason.MAPRR_no_reason;
+  }
+
+  /**
+   * Admission limits of the incoming dialogues, by application context, as in <code>
+   * admission.limits</code>. A new dialogue over the limit of its context is refused with {@link
+   * #admissionRefuseReason()}, before any dialogue is created for it.
+   *
+   * @return the limits. Defaults to none, so that all dialogues are admitted.
+   * @see AdmissionLimit#parseList(String)
+   */
+  default List<AdmissionLimit> admissionLimits() {
+    return List.of();
+  }
+
+  /**
+   * Reason given to dialogues refused by the admission limits, as in <code>
+   * admission.refuse.reason</code>.
+   *
+   * @return the refuse reason. Defaults to {@link RefuseReason#MAPRR_no_reason}.
+   */
+  default RefuseReason admissionRefuseReason() {
+    return RefuseReason.MAPRR_no_reason;
+  }
+
+  /**
+   * Resolution, in milliseconds, of the guard timers of incoming dialogues, as in <code>
+   * dialogue.guard.tick</code>. Each server shard keeps the timers of its dialogues in a timing
+   * wheel, moved forward once per tick. Below 1, dialogues are never timed out.
+   *
+   * @return the tick of the guard timers. Defaults to 100.
+   */
+  default long dialogueGuardTick() {
+    return 100;
+  }
+
+  /**
+   * Time, in milliseconds, an incoming dialogue may wait from its opening to its first service
+   * indication, as in <code>dialogue.guard.open</code>. A timed out dialogue is aborted and its
+   * slot is freed. Below 1, this wait is not guarded.
+   *
+   * @return the open guard time. Defaults to 10000.
+   */
+  default long dialogueOpenGuard() {
+    return 10_000;
+  }
+
+  /**
+   * Time, in milliseconds, an incoming dialogue may wait from the delimiter of its service
+   * indications to its responses, as in <code>dialogue.guard.service</code>. Below 1, this wait is
+   * not guarded.
+   *
+   * @return the service guard time. Defaults to 30000.
+   */
+  default long dialogueServiceGuard() {
+    return 30_000;
+  }
+
+  /**
+   * Time, in milliseconds, an incoming dialogue may wait for the MAP provider at any other point,
+   * such as from a service indication to its delimiter, as in <code>dialogue.guard.idle</code>.
+   * Below 1, this wait is not guarded.
+   *
+   * @return the idle guard time. Defaults to 60000.
+   */
+  default long dialogueIdleGuard() {
+    return 60_000;
+  }
+
+  /**
+   * Time, in milliseconds, an outgoing dialogue may wait for the confirmation of its invocation
+   * and its closing, as in <code>dialogue.guard.outgoing</code>. A dialogue whose time is over is
+   * aborted, and its result fails with a {@link java.util.concurrent.TimeoutException}. Below 1,
+   * outgoing dialogues are not guarded.
+   *
+   * @return the outgoing guard time. Defaults to 30000.
+   */
+  default long dialogueOutgoingGuard() {
+    return 30_000;
+  }
+
+  /**
+   * Time, in milliseconds, the replies of an incoming dialogue may be held back to be sent with the
+   * rest of its turn, as in <code>outbound.flush.timeout</code>. The replies of a turn are sent as
+   * one batch with the dialogue primitive that ends it; if the turn is not over by then, the
+   * replies held so far are sent on their own. Below 1, replies are held until the end of the
+   * turn. With {@link DialogueEngine#FLYWEIGHT}, it is rounded up to whole {@link
+   * #dialogueGuardTick()}s, and replies are held until the end of the turn if guard ticks are off.
+   *
+   * @return the outbound flush timeout. Defaults to 50.
+   */
+  default long outboundFlushTimeout() {
+    return 50;
+  }
 }
@@ -0,0 +1,17 @@
+package lk.mobitel.telco.asmsc.config;
+
+/**
+ * Declares which {@link lk.mobitel.telco.asmsc.gct.GctTransport} GCT messages go through.
+ *
+ * @author NISALBA
+ */
+public enum Transport {
+  /** The Dialogic GCT environment, through <code>GctLib</code>. Required in production. */
+  NATIVE,
+
+  /**
+   * An in-memory transport between the modules of this process, with injectable latency, loss and
+   * queue limits. For running and load-testing the application without the Septel stack.
+   */
+  LOOPBACK
+}
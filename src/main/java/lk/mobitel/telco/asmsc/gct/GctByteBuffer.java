@@ -1,14 +1,23 @@
 package lk.mobitel.telco.asmsc.gct;
 
-import com.dialogic.signaling.gct.BBUtil;
 import org.jetbrains.annotations.NotNull;
 
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 /**
- * This class combines the use of {@code com.dialogic.signaling.gct.BBUtil} with Java ByteBuffers.
- * While {@code BBUtil} class provides correct methods to extract values from ByteBuffers, those
- * methods are static and stateless. Which is not pleasant when parsing byte buffers.
+ * A cursor over a Java ByteBuffer, for parsing and writing GCT parameter areas.
+ *
+ * <p>All multi-octet fields are unsigned and big-endian, as in {@code
+ * com.dialogic.signaling.gct.BBUtil}. Unlike {@code BBUtil}, the fields are read with the
+ * ByteBuffer's own multi-octet accessors instead of octet by octet, and the data fields can be
+ * copied, sliced or skipped in bulk. Callers that know the size of a whole TLV can check it once
+ * with {@link #require(int)} (or {@link #ensure(int)} when writing) instead of relying on per-octet
+ * checks.
+ *
+ * <p>The byte order of the wrapped buffer is set to big-endian.
  *
  * @author NISALBA
  */
@@ -16,79 +25,195 @@ public class GctByteBuffer {
   private final ByteBuffer buffer;
 
   public GctByteBuffer(@NotNull ByteBuffer buffer) {
-    this.buffer = buffer.rewind();
+    this.buffer = buffer.rewind().order(ByteOrder.BIG_ENDIAN);
   }
 
   public boolean hasRemaining() {
     return buffer.hasRemaining();
   }
 
+  public int remaining() {
+    return buffer.remaining();
+  }
+
+  public int position() {
+    return buffer.position();
+  }
+
+  public GctByteBuffer position(int position) {
+    buffer.position(position);
+    return this;
+  }
+
+  public int limit() {
+    return buffer.limit();
+  }
+
   public GctByteBuffer rewind() {
     buffer.rewind();
     return this;
   }
 
+  /**
+   * Checks that at least {@code length} octets can be read from the current position.
+   *
+   * @param length number of octets about to be read
+   * @throws BufferUnderflowException if fewer octets remain
+   */
+  public void require(int length) throws BufferUnderflowException {
+    if (length < 0 || buffer.remaining() < length) {
+      throw new BufferUnderflowException();
+    }
+  }
+
+  /**
+   * Checks that at least {@code length} octets can be written from the current position.
+   *
+   * @param length number of octets about to be written
+   * @throws BufferOverflowException if fewer octets remain
+   */
+  public void ensure(int length) throws BufferOverflowException {
+    if (length < 0 || buffer.remaining() < length) {
+      throw new BufferOverflowException();
+    }
+  }
+
+  /**
+   * Moves the cursor forward without reading.
+   *
+   * @param length number of octets to skip
+   * @throws BufferUnderflowException if fewer octets remain
+   */
+  public void skip(int length) throws BufferUnderflowException {
+    require(length);
+    buffer.position(buffer.position() + length);
+  }
+
   public short next8() {
-    return BBUtil.getU8(buffer);
+    return (short) (buffer.get() & 0xFF);
   }
 
   public short at8(int offset) {
-    return BBUtil.getU8(buffer, offset);
+    return (short) (buffer.get(offset) & 0xFF);
   }
 
   public int next16() {
-    return BBUtil.getU16(buffer);
+    return buffer.getShort() & 0xFFFF;
   }
 
   public int at16(int offset) {
-    return BBUtil.getU16(buffer, offset);
+    return buffer.getShort(offset) & 0xFFFF;
   }
 
   public int next24() {
-    return BBUtil.getU24(buffer);
+    require(3);
+    int high = buffer.getShort() & 0xFFFF;
+    return high << 8 | (buffer.get() & 0xFF);
   }
 
   public int at24(int offset) {
-    return BBUtil.getU24(buffer, offset);
+    return (buffer.getShort(offset) & 0xFFFF) << 8 | (buffer.get(offset + 2) & 0xFF);
   }
 
   public long next32() {
-    return BBUtil.getU32(buffer);
+    return buffer.getInt() & 0xFFFFFFFFL;
   }
 
   public long at32(int offset) {
-    return BBUtil.getU32(buffer, offset);
+    return buffer.getInt(offset) & 0xFFFFFFFFL;
+  }
+
+  /**
+   * Copies the next {@code length} octets into a new array.
+   *
+   * @param length number of octets to copy
+   * @return the copied octets
+   * @throws BufferUnderflowException if fewer octets remain
+   */
+  public byte @NotNull [] nextBytes(int length) throws BufferUnderflowException {
+    require(length);
+    byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return bytes;
+  }
+
+  /**
+   * Gets the next {@code length} octets as a buffer sharing content with this one. Nothing is
+   * copied; the cursor is moved past the sliced region.
+   *
+   * @param length number of octets to slice
+   * @return a buffer of capacity {@code length}, positioned at 0
+   * @throws BufferUnderflowException if fewer octets remain
+   */
+  public @NotNull ByteBuffer slice(int length) throws BufferUnderflowException {
+    require(length);
+    int position = buffer.position();
+    ByteBuffer slice = buffer.duplicate();
+    slice.limit(position + length);
+    buffer.position(position + length);
+    return slice.slice();
   }
 
   public void put8(int value) {
-    BBUtil.putU8(buffer, value);
+    buffer.put((byte) value);
   }
 
   public void put8(int value, int offset) {
-    BBUtil.putU8(buffer, offset, value);
+    buffer.put(offset, (byte) value);
   }
 
   public void put16(int value) {
-    BBUtil.putU16(buffer, value);
+    buffer.putShort((short) value);
   }
 
   public void put16(int value, int offset) {
-    BBUtil.putU16(buffer, offset, value);
+    buffer.putShort(offset, (short) value);
   }
 
   public void put24(int value) {
-    BBUtil.putU24(buffer, value);
+    ensure(3);
+    buffer.putShort((short) (value >> 8));
+    buffer.put((byte) value);
   }
 
   public void put24(int value, int offset) {
-    BBUtil.putU24(buffer, offset, value);
+    buffer.putShort(offset, (short) (value >> 8));
+    buffer.put(offset + 2, (byte) value);
   }
 
   public void put32(long value) {
-    BBUtil.putU32(buffer, value);
+    buffer.putInt((int) value);
   }
 
   public void put32(long value, int offset) {
-    BBUtil.putU32(buffer, offset, value);
+    buffer.putInt(offset, (int) value);
+  }
+
+  /**
+   * Copies a region of an array at the current position.
+   *
+   * @param bytes  source array
+   * @param offset offset of the region in {@code bytes}
+   * @param length length of the region
+   * @throws BufferOverflowException if fewer than {@code length} octets remain
+   */
+  public void putBytes(byte @NotNull [] bytes, int offset, int length)
+      throws BufferOverflowException {
+    buffer.put(bytes, offset, length);
+  }
+
+  /**
+   * Copies the remaining octets of {@code bytes} at the current position. The position of {@code
+   * bytes} is not changed.
+   *
+   * @param bytes source buffer
+   * @throws BufferOverflowException if there is not enough room for {@code bytes}
+   */
+  public void putBytes(@NotNull ByteBuffer bytes) throws BufferOverflowException {
+    if (bytes.hasArray()) {
+      buffer.put(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+    } else {
+      buffer.put(bytes.duplicate());
+    }
   }
 }
@@ -1,6 +1,5 @@
 package lk.mobitel.telco.asmsc.gct;
 
-import com.dialogic.signaling.gct.BBUtil;
 import lk.mobitel.telco.asmsc.map.constant.*;
 import org.jetbrains.annotations.NotNull;
 
@@ -19,57 +18,85 @@ import java.util.NoSuchElementException;
  */
 public class GctDecode {
   public static boolean asBoolean(@NotNull GctParameter parameter) {
-    short value = BBUtil.getU8(parameter.getData());
-    return value == 1;
+    return parameter.byteAt(0) == 1;
   }
 
   public static short asByte(@NotNull GctParameter parameter) {
-    return BBUtil.getU8(parameter.getData());
+    return (short) parameter.byteAt(0);
   }
 
   public static int asInt(@NotNull GctParameter parameter) {
-    ByteBuffer buffer = parameter.getData();
-    switch (buffer.capacity()) {
+    switch (parameter.getLength()) {
       case 1:
-        return BBUtil.getU8(buffer);
+        return parameter.byteAt(0);
       case 2:
-        return BBUtil.getU16(buffer);
+        return parameter.byteAt(0) << 8 | parameter.byteAt(1);
       default:
         /* consider upto 3 bytes only */
-        return BBUtil.getU24(buffer);
+        return parameter.byteAt(0) << 16 | parameter.byteAt(1) << 8 | parameter.byteAt(2);
+    }
+  }
+
+  /**
+   * Same as {@link #asInt(GctParameter)}, for a <i>Data</i> field given as a region of a buffer,
+   * as in {@link lk.mobitel.telco.asmsc.map.ParameterVisitor}.
+   */
+  public static int asInt(@NotNull ByteBuffer buffer, int offset, int length) {
+    switch (length) {
+      case 1:
+        return buffer.get(offset) & 0xFF;
+      case 2:
+        return (buffer.get(offset) & 0xFF) << 8 | (buffer.get(offset + 1) & 0xFF);
+      default:
+        /* consider upto 3 bytes only */
+        return (buffer.get(offset) & 0xFF) << 16
+            | (buffer.get(offset + 1) & 0xFF) << 8
+            | (buffer.get(offset + 2) & 0xFF);
     }
   }
 
   public static long asLong(@NotNull GctParameter parameter) {
-    ByteBuffer buffer = parameter.getData();
-    switch (buffer.capacity()) {
+    switch (parameter.getLength()) {
       case 1:
-        return BBUtil.getU8(buffer);
       case 2:
-        return BBUtil.getU16(buffer);
       case 3:
-        return BBUtil.getU24(buffer);
+        return asInt(parameter);
       default:
         /* consider upto 4 bytes only */
-        return BBUtil.getU32(buffer);
+        return (long) parameter.byteAt(0) << 24
+            | parameter.byteAt(1) << 16
+            | parameter.byteAt(2) << 8
+            | parameter.byteAt(3);
     }
   }
 
   public static @NotNull ApplicationContext asMobileDomainApplicationContext(
       @NotNull GctParameter parameter) throws IllegalArgumentException, NoSuchElementException {
-    ByteBuffer buffer = parameter.getData();
-
     // assumed at lease 9 bytes in the parameter area
-    if (buffer.capacity() < 9)
+    if (parameter.getLength() < 9)
       throw new IllegalArgumentException(
           "Mobile Domain Application Context is expected to have at least 9 octets");
 
-    byte mapAc = (byte) BBUtil.getU8(buffer, 7);
-    byte version = (byte) BBUtil.getU8(buffer, 8);
+    byte mapAc = (byte) parameter.byteAt(7);
+    byte version = (byte) parameter.byteAt(8);
 
     return ApplicationContext.of(mapAc, version);
   }
 
+  /**
+   * Same as {@link #asMobileDomainApplicationContext(GctParameter)}, for a <i>Data</i> field given
+   * as a region of a buffer, as in {@link lk.mobitel.telco.asmsc.map.ParameterVisitor}.
+   */
+  public static @NotNull ApplicationContext asMobileDomainApplicationContext(
+      @NotNull ByteBuffer buffer, int offset, int length)
+      throws IllegalArgumentException, NoSuchElementException {
+    if (length < 9)
+      throw new IllegalArgumentException(
+          "Mobile Domain Application Context is expected to have at least 9 octets");
+
+    return ApplicationContext.of(buffer.get(offset + 7), buffer.get(offset + 8));
+  }
+
   public static @NotNull UserReason asUserReason(@NotNull GctParameter parameter)
       throws NoSuchElementException {
     return UserReason.of(asByte(parameter));
@@ -0,0 +1,35 @@
+package lk.mobitel.telco.asmsc.gct;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Something that can be encoded into a {@link GctFrame}, ready to be sent.
+ *
+ * @author NISALBA
+ */
+public interface GctEncodable {
+
+  /**
+   * Encodes this into a newly allocated {@link GctFrame}. The caller owns the returned message, and
+   * must either send it or release it.
+   *
+   * @return An allocated GctFrame.
+   * @throws IllegalStateException if the message cannot be allocated or populated.
+   */
+  @NotNull
+  GctFrame encode() throws IllegalStateException;
+
+  /**
+   * Gets the instance the encoded message will carry. It selects the link the message is sent
+   * through (see {@link GctUtil#linkIndexOf(long)}).
+   *
+   * @return the instance
+   */
+  long getInstance();
+
+  /**
+   * Gives up this message without encoding it. Releases any native message held by this, such as
+   * a received message to be replied in place. Does nothing by default.
+   */
+  default void discard() {}
+}
@@ -0,0 +1,142 @@
+package lk.mobitel.telco.asmsc.gct;
+
+import com.dialogic.signaling.gct.GctException;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A message of the GCT environment: the header fields and the parameter area of a <code>GctMsg
+ * </code>. Frames are allocated, sent, received and released through a {@link GctTransport}, which
+ * decides where they live.
+ *
+ * <p>The codec works on frames only, so that it runs the same whether frames are native messages
+ * ({@link NativeGctTransport}) or arrays in the Java heap ({@link LoopbackGctTransport}).
+ *
+ * <p>The parameter area of a frame may be longer than the parameters it carries: a frame that is
+ * rewritten in place keeps the length it was received with, unless its transport can {@link
+ * #shrinkParam(int) shrink} it. The parameters then end with <code>MAPPN_null</code>, and every
+ * receiver, as the MAP module and {@link GctUtil} do, must stop reading there.
+ *
+ * @author NISALBA
+ */
+public interface GctFrame {
+
+  /**
+   * Gets the message type, the primitive group, such as <code>MAP_MSG_DLG_IND</code>.
+   *
+   * @return the message type
+   * @throws GctException if the header cannot be accessed
+   */
+  int getType() throws GctException;
+
+  /**
+   * Sets the message type.
+   *
+   * @param type the message type
+   * @throws GctException if the header cannot be accessed
+   */
+  void setType(int type) throws GctException;
+
+  /**
+   * Gets the id of the message, the dialogue id for MAP primitives.
+   *
+   * @return the id
+   * @throws GctException if the header cannot be accessed
+   */
+  int getId() throws GctException;
+
+  /**
+   * Sets the id of the message.
+   *
+   * @param id the id
+   * @throws GctException if the header cannot be accessed
+   */
+  void setId(int id) throws GctException;
+
+  /**
+   * Gets the module id of the sender.
+   *
+   * @return the source module id
+   * @throws GctException if the header cannot be accessed
+   */
+  short getSrc() throws GctException;
+
+  /**
+   * Sets the module id of the sender.
+   *
+   * @param src the source module id
+   * @throws GctException if the header cannot be accessed
+   */
+  void setSrc(short src) throws GctException;
+
+  /**
+   * Gets the module id of the receiver.
+   *
+   * @return the destination module id
+   * @throws GctException if the header cannot be accessed
+   */
+  short getDst() throws GctException;
+
+  /**
+   * Sets the module id of the receiver.
+   *
+   * @param dst the destination module id
+   * @throws GctException if the header cannot be accessed
+   */
+  void setDst(short dst) throws GctException;
+
+  /**
+   * Gets the instance of the stack the message belongs to.
+   *
+   * @return the instance
+   * @throws GctException if the header cannot be accessed
+   */
+  long getInstance() throws GctException;
+
+  /**
+   * Sets the instance of the stack the message is for.
+   *
+   * @param instance the instance
+   * @throws GctException if the header cannot be accessed
+   */
+  void setInstance(long instance) throws GctException;
+
+  /**
+   * Gets whether the sender asked for the message to be confirmed.
+   *
+   * @return true if a response is requested
+   * @throws GctException if the header cannot be accessed
+   */
+  boolean getRspReq() throws GctException;
+
+  /**
+   * Sets whether the message is to be confirmed to the sender.
+   *
+   * @param rspReq true to request a response
+   * @throws GctException if the header cannot be accessed
+   */
+  void setRspReq(boolean rspReq) throws GctException;
+
+  /**
+   * Gets the parameter area. Position is 0 and limit is the length of the area. Writes to the
+   * buffer go to the frame.
+   *
+   * @return a buffer over the parameter area
+   * @throws GctException if the parameter area cannot be accessed
+   */
+  @NotNull
+  ByteBuffer getParam() throws GctException;
+
+  /**
+   * Shortens the parameter area, where the transport allows it. Native messages keep the length
+   * they were allocated with.
+   *
+   * @param length the new length, not more than the current one
+   * @return true if the parameter area now has the given length
+   * @throws GctException if the parameter area cannot be accessed
+   */
+  default boolean shrinkParam(int length) throws GctException {
+    return false;
+  }
+}
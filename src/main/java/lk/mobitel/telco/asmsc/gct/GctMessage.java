@@ -1,31 +1,49 @@
 package lk.mobitel.telco.asmsc.gct;
 
 import lk.mobitel.telco.asmsc.map.Message;
+import lk.mobitel.telco.asmsc.map.ParameterVisitor;
 import lk.mobitel.telco.asmsc.map.constant.MessageType;
 import lk.mobitel.telco.asmsc.map.constant.ParameterName;
 import lk.mobitel.telco.asmsc.map.constant.Primitive;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 
-public class GctMessage implements Message {
+/**
+ * Immutable, heap based {@link Message}.
+ *
+ * <p>Parameters are kept in a single array, sorted by {@link ParameterName} ordinal, with at most
+ * one parameter per name. Names with an ordinal below 64, which covers all the dialogue and short
+ * message parameters, are also recorded in a presence bitmask. For those, {@link #hasParameter}
+ * is a bit test and {@link #getParameter} computes the array slot from the bitmask. Other names
+ * are found with a binary search over the array. Iteration is in ordinal order and does not copy.
+ *
+ * @author NISALBA
+ */
+public class GctMessage implements Message, GctEncodable {
+
+  private static final GctParameter[] NO_PARAMETERS = new GctParameter[0];
 
   public static class GctMessageBuilder {
     private MessageType type = MessageType.MAP_MSG_NULL;
     private Primitive primitive = Primitive.MAP_NULL_PRIMITIVE;
     private int id = 0;
-    private int source = GctUtil.config().localModuleId();
-    private int destination = GctUtil.config().remoteModuleId();
+    private int source;
+    private int destination;
     private long instance = 0L;
     private boolean rspReq = false;
-    private ArrayList<ParameterName> parameters_Keys;
-    private ArrayList<GctParameter> parameters_Values;
+    private GctParameter[] parameters = NO_PARAMETERS;
+    private int parameterCount = 0;
 
-    GctMessageBuilder() {}
+    GctMessageBuilder() {
+      this.source = GctUtil.localModuleId();
+      this.destination = GctUtil.remoteModuleId();
+    }
 
     public GctMessageBuilder type(MessageType type) {
       this.type = type;
@@ -71,73 +89,60 @@ public class GctMessage implements Message {
     }
 
     public GctMessageBuilder parameter(GctParameter parameter) {
-      if (this.parameters_Keys == null) {
-        this.parameters_Keys = new ArrayList<>();
-        this.parameters_Values = new ArrayList<>();
+      if (parameterCount == parameters.length) {
+        parameters = Arrays.copyOf(parameters, Math.max(4, parameterCount << 1));
       }
-      this.parameters_Keys.add(parameter.getName());
-      this.parameters_Values.add(parameter);
+      parameters[parameterCount++] = parameter;
       return this;
     }
 
     public GctMessageBuilder parameters(
         Map<? extends ParameterName, ? extends GctParameter> parameters) {
-      if (this.parameters_Keys == null) {
-        this.parameters_Keys = new ArrayList<>();
-        this.parameters_Values = new ArrayList<>();
-      }
-      for (final Map.Entry<? extends ParameterName, ? extends GctParameter> entry :
-          parameters.entrySet()) {
-        this.parameters_Keys.add(entry.getKey());
-        this.parameters_Values.add(entry.getValue());
+      for (final GctParameter parameter : parameters.values()) {
+        parameter(parameter);
       }
       return this;
     }
 
     public GctMessageBuilder parameters(List<? extends GctParameter> parameters) {
-      if (this.parameters_Keys == null) {
-        this.parameters_Keys = new ArrayList<>();
-        this.parameters_Values = new ArrayList<>();
-      }
-
       for (GctParameter parameter : parameters) {
-        this.parameters_Keys.add(parameter.getName());
-        this.parameters_Values.add(parameter);
+        parameter(parameter);
       }
       return this;
     }
 
     public GctMessageBuilder clearParameters() {
-      if (this.parameters_Keys != null) {
-        this.parameters_Keys.clear();
-        this.parameters_Values.clear();
-      }
+      Arrays.fill(parameters, 0, parameterCount, null);
+      parameterCount = 0;
       return this;
     }
 
     public GctMessage build() {
-      Map<ParameterName, GctParameter> parameters;
-      switch (this.parameters_Keys == null ? 0 : this.parameters_Keys.size()) {
-        case 0:
-          parameters = java.util.Collections.emptyMap();
-          break;
-        case 1:
-          parameters =
-              java.util.Collections.singletonMap(
-                  this.parameters_Keys.get(0), this.parameters_Values.get(0));
-          break;
-        default:
-          parameters =
-              new java.util.LinkedHashMap<>(
-                  this.parameters_Keys.size() < 1073741824
-                      ? 1 + this.parameters_Keys.size() + (this.parameters_Keys.size() - 3) / 3
-                      : Integer.MAX_VALUE);
-          for (int i = 0; i < this.parameters_Keys.size(); i++)
-            parameters.put(this.parameters_Keys.get(i), this.parameters_Values.get(i));
-          parameters = java.util.Collections.unmodifiableMap(parameters);
+      // Insertion sort by ordinal: parameter lists are short and often already sorted. Equal names
+      // are collapsed, the parameter added last wins.
+      GctParameter[] sorted =
+          parameterCount == 0 ? NO_PARAMETERS : new GctParameter[parameterCount];
+      int n = 0;
+      for (int i = 0; i < parameterCount; i++) {
+        GctParameter parameter = parameters[i];
+        int ordinal = parameter.getName().ordinal();
+        int j = n - 1;
+        while (j >= 0 && sorted[j].getName().ordinal() > ordinal) {
+          j--;
+        }
+        if (j >= 0 && sorted[j].getName().ordinal() == ordinal) {
+          sorted[j] = parameter;
+        } else {
+          System.arraycopy(sorted, j + 1, sorted, j + 2, n - j - 1);
+          sorted[j + 1] = parameter;
+          n++;
+        }
+      }
+      if (n != sorted.length) {
+        sorted = Arrays.copyOf(sorted, n);
       }
 
-      return new GctMessage(type, primitive, id, source, destination, instance, rspReq, parameters);
+      return new GctMessage(type, primitive, id, source, destination, instance, rspReq, sorted);
     }
 
     public String toString() {
@@ -155,10 +160,8 @@ public class GctMessage implements Message {
           + this.instance
           + ", responseRequired="
           + this.rspReq
-          + ", parameters/key="
-          + this.parameters_Keys
-          + ", parameters/value="
-          + this.parameters_Values
+          + ", parameters="
+          + Arrays.toString(Arrays.copyOf(this.parameters, this.parameterCount))
           + ")";
     }
   }
@@ -175,7 +178,14 @@ public class GctMessage implements Message {
   private final int destination;
   private final long instance;
   private final boolean responseRequired;
-  private final Map<ParameterName, GctParameter> parameters;
+
+  /** Parameters sorted by name ordinal, one per name. */
+  private final GctParameter[] parameters;
+
+  /** Bit <i>n</i> is set if the parameter with ordinal <i>n</i> (< 64) is present. */
+  private final long presence;
+
+  private List<GctParameter> parameterList;
 
   private GctMessage(
       MessageType type,
@@ -185,7 +195,7 @@ public class GctMessage implements Message {
       int destination,
       long instance,
       boolean responseRequired,
-      Map<ParameterName, GctParameter> parameters) {
+      GctParameter[] parameters) {
     this.type = type;
     this.primitive = primitive;
     this.id = id;
@@ -194,6 +204,48 @@ public class GctMessage implements Message {
     this.instance = instance;
     this.responseRequired = responseRequired;
     this.parameters = parameters;
+
+    long mask = 0L;
+    for (GctParameter parameter : parameters) {
+      int ordinal = parameter.getName().ordinal();
+      if (ordinal >= Long.SIZE) {
+        break;
+      }
+      mask |= 1L << ordinal;
+    }
+    this.presence = mask;
+  }
+
+  /**
+   * Finds the array slot of a parameter.
+   *
+   * @param name name to look up
+   * @return slot of the parameter in {@link #parameters}, or a negative value if absent.
+   */
+  private int indexOf(@NotNull ParameterName name) {
+    int ordinal = name.ordinal();
+    if (ordinal < Long.SIZE) {
+      long bit = 1L << ordinal;
+      if ((presence & bit) == 0) {
+        return -1;
+      }
+      return Long.bitCount(presence & (bit - 1));
+    }
+
+    int low = Long.bitCount(presence);
+    int high = parameters.length - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int midOrdinal = parameters[mid].getName().ordinal();
+      if (midOrdinal < ordinal) {
+        low = mid + 1;
+      } else if (midOrdinal > ordinal) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -1;
   }
 
   @Override
@@ -233,32 +285,67 @@ public class GctMessage implements Message {
 
   @Override
   public GctParameter getParameter(ParameterName name) throws NoSuchElementException {
-    GctParameter param = parameters.get(name);
-    if (param == null)
+    int index = indexOf(name);
+    if (index < 0)
       throw new NoSuchElementException(
           "No such parameter found in this message(#" + id + "): " + name);
-    return param;
+    return parameters[index];
   }
 
+  /**
+   * Gets all parameters as a list, ordered by name. The list is a read-only view created once per
+   * message; the parameters are not copied.
+   *
+   * @return The list of parameters in this message.
+   */
   @Override
   public List<GctParameter> parameterList() {
-    return List.copyOf(parameters.values());
+    if (parameterList == null) {
+      parameterList = Collections.unmodifiableList(Arrays.asList(parameters));
+    }
+    return parameterList;
+  }
+
+  /** Encodes this message with {@link GctUtil#encodeMsg(GctMessage)}. */
+  @Override
+  public @NotNull GctFrame encode() throws IllegalStateException {
+    return GctUtil.encodeMsg(this);
+  }
+
+  /**
+   * Visits the parameters in name order, without creating any buffers. As with {@link
+   * GctUtil#visitParameters(java.nio.ByteBuffer, ParameterVisitor)}, <code>MAPPN_CODE_SHIFT</code>
+   * and <code>MAPPN_LONG_PARAM_CODE_EXTENSION</code> are not visited.
+   */
+  @Override
+  public boolean visitParameters(ParameterVisitor visitor) {
+    for (GctParameter parameter : parameters) {
+      ParameterName name = parameter.getName();
+      if (name == ParameterName.MAPPN_CODE_SHIFT
+          || name == ParameterName.MAPPN_LONG_PARAM_CODE_EXTENSION) {
+        continue;
+      }
+      if (!visitor.visit(name, parameter.buffer(), 0, parameter.getLength())) {
+        return false;
+      }
+    }
+    return true;
   }
 
   @Override
   public boolean hasParameter(ParameterName name) {
-    return parameters.containsKey(name);
+    return indexOf(name) >= 0;
   }
 
   @Override
   public int parameterCount() {
-    return parameters.size();
+    return parameters.length;
   }
 
   @Override
   public String toString() {
     StringBuilder paramStr = new StringBuilder("[ ");
-    for (GctParameter param : parameters.values()) {
+    for (GctParameter param : parameters) {
       paramStr.append(param.toString()).append(", ");
     }
     paramStr.replace(paramStr.length() - 2, paramStr.length(), " ]");
@@ -0,0 +1,366 @@
+package lk.mobitel.telco.asmsc.gct;
+
+import com.dialogic.signaling.gct.GctException;
+import lk.mobitel.telco.asmsc.map.Message;
+import lk.mobitel.telco.asmsc.map.ParameterVisitor;
+import lk.mobitel.telco.asmsc.map.constant.MessageType;
+import lk.mobitel.telco.asmsc.map.constant.ParameterName;
+import lk.mobitel.telco.asmsc.map.constant.Primitive;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A {@link Message} backed directly by the parameter area of a received <code>GctFrame</code>.
+ *
+ * <p>Unlike {@link GctMessage}, nothing is copied when this object is created. Only the header
+ * fields and the primitive are decoded up front. The parameter area is walked once, on the first
+ * parameter access, to build a small index of name/offset/length entries. Parameters are then
+ * handed out as read-only slices of the native buffer.
+ *
+ * <p>The native message is owned by this object. It must be released with {@link #release()}
+ * (or {@link GctUtil#release(Message)}) by the last consumer of the message. Parameters must not
+ * be accessed after the message is released. This class is not thread-safe; it is expected to be
+ * handed over between actors, not shared.
+ *
+ * @author NISALBA
+ */
+@Slf4j
+public class GctMessageView implements Message {
+
+  private final GctFrame nativeMsg;
+  private final ByteBuffer params;
+  private final MessageType type;
+  private final int id;
+  private final int source;
+  private final int destination;
+  private final long instance;
+  private final boolean responseRequired;
+  private final Primitive primitive;
+
+  private ParameterName[] names;
+  private int[] offsets;
+  private int[] lengths;
+  private int count = -1;
+  private boolean released = false;
+
+  GctMessageView(
+      @NotNull GctFrame nativeMsg,
+      @NotNull ByteBuffer params,
+      @NotNull MessageType type,
+      int id,
+      int source,
+      int destination,
+      long instance,
+      boolean responseRequired)
+      throws IllegalStateException {
+    this.nativeMsg = nativeMsg;
+    this.params = params.asReadOnlyBuffer();
+    this.type = type;
+    this.id = id;
+    this.source = source;
+    this.destination = destination;
+    this.instance = instance;
+    this.responseRequired = responseRequired;
+    this.primitive = decodePrimitive();
+  }
+
+  /**
+   * Resolves the primitive of the message. Extended service primitives are carried in the
+   * <code>MAPPN_SERVICE_TYPE</code> parameter, in which case the index is built right away.
+   */
+  private @NotNull Primitive decodePrimitive() throws IllegalStateException {
+    if (params.limit() < 1) {
+      throw new IllegalStateException("bad parameter area");
+    }
+
+    int primitiveVal = params.get(0) & 0xFF;
+    if (!type.isDialogue() && primitiveVal == Primitive.MAPST_EXTENDED_SERVICE_TYPE.value()) {
+      ensureIndexed();
+      for (int i = 0; i < count; i++) {
+        if (names[i] == ParameterName.MAPPN_SERVICE_TYPE) {
+          primitiveVal = u16(offsets[i]);
+        }
+      }
+    }
+
+    Primitive prim = Primitive.lookup(primitiveVal, type.isDialogue());
+    if (prim == null) {
+      throw new IllegalStateException(String.format("bad primitive: 0x%x", primitiveVal));
+    }
+    return prim;
+  }
+
+  /**
+   * Walks the parameter area once and records where each parameter is, with {@link
+   * GctUtil#visitParameters(ByteBuffer, ParameterVisitor)}.
+   *
+   * @throws IllegalStateException if the parameter area is truncated or the message is released.
+   */
+  private void ensureIndexed() throws IllegalStateException {
+    if (released) {
+      throw new IllegalStateException("Message #" + id + " is already released");
+    }
+    if (count >= 0) {
+      return;
+    }
+
+    names = new ParameterName[4];
+    offsets = new int[4];
+    lengths = new int[4];
+    count = 0;
+    try {
+      GctUtil.visitParameters(params, this::index);
+    } catch (IndexOutOfBoundsException | BufferUnderflowException ex) {
+      log.error("Unable to index parameter area of Message #{}: {}", id, ex.getMessage());
+      names = null;
+      offsets = null;
+      lengths = null;
+      count = -1;
+      throw new IllegalStateException("bad parameter area");
+    }
+  }
+
+  private boolean index(ParameterName name, ByteBuffer buffer, int offset, int length) {
+    // Same as a map: a repeated parameter replaces the earlier one, in place.
+    int slot = count;
+    for (int i = 0; i < count; i++) {
+      if (names[i] == name) {
+        slot = i;
+        break;
+      }
+    }
+    if (slot == count) {
+      if (count == names.length) {
+        names = Arrays.copyOf(names, count << 1);
+        offsets = Arrays.copyOf(offsets, count << 1);
+        lengths = Arrays.copyOf(lengths, count << 1);
+      }
+      count++;
+    }
+    names[slot] = name;
+    offsets[slot] = offset;
+    lengths[slot] = length;
+    return true;
+  }
+
+  private int u8(int offset) {
+    return params.get(offset) & 0xFF;
+  }
+
+  private int u16(int offset) {
+    return (u8(offset) << 8) | u8(offset + 1);
+  }
+
+  private @NotNull ByteBuffer slice(int offset, int length) {
+    ByteBuffer slice = params.duplicate();
+    slice.position(offset).limit(offset + length);
+    return slice.slice();
+  }
+
+  private int indexOf(ParameterName name) {
+    ensureIndexed();
+    for (int i = 0; i < count; i++) {
+      if (names[i] == name) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Releases the underlying native message back to the GCT stack. Calling this more than once has
+   * no effect. Header fields remain readable after release, parameters do not.
+   */
+  public void release() {
+    if (released) {
+      return;
+    }
+    released = true;
+    try {
+      GctUtil.transport().relm(nativeMsg);
+    } catch (GctException e) {
+      log.warn("Unable to release GctFrame of Message #{}: {}", id, e.getMessage());
+    }
+  }
+
+  /**
+   * Takes the ownership of the underlying native message away from this view, so that it can be
+   * rewritten and sent. The view is then treated as released, but the native message is not
+   * released.
+   *
+   * @return the native message, or null if it has already been released or detached.
+   */
+  @Nullable
+  GctFrame detach() {
+    if (released) {
+      return null;
+    }
+    released = true;
+    return nativeMsg;
+  }
+
+  /**
+   * Gets the length of the parameter area of the native message.
+   *
+   * @return the length, in octets
+   */
+  int paramLength() {
+    return params.limit();
+  }
+
+  /**
+   * Returns true if the underlying native message has been released.
+   *
+   * @return true if {@link #release()} has been called.
+   */
+  public boolean isReleased() {
+    return released;
+  }
+
+  /**
+   * Copies this view into a heap based {@link GctMessage}, which outlives the native message.
+   *
+   * @return an equivalent {@link GctMessage}
+   */
+  public @NotNull GctMessage materialize() {
+    return GctMessage.builder()
+        .id(id)
+        .source(source)
+        .destination(destination)
+        .instance(instance)
+        .type(type)
+        .primitive(primitive)
+        .parameters(parameterList())
+        .responseRequired(responseRequired)
+        .build();
+  }
+
+  @Override
+  public MessageType getType() {
+    return type;
+  }
+
+  @Override
+  public Primitive getPrimitive() {
+    return primitive;
+  }
+
+  @Override
+  public int getId() {
+    return id;
+  }
+
+  @Override
+  public int getSource() {
+    return source;
+  }
+
+  @Override
+  public int getDestination() {
+    return destination;
+  }
+
+  @Override
+  public long getInstance() {
+    return instance;
+  }
+
+  @Override
+  public boolean isResponseRequired() {
+    return responseRequired;
+  }
+
+  @Override
+  public GctParameter getParameter(ParameterName name) throws NoSuchElementException {
+    int i = indexOf(name);
+    if (i < 0) {
+      throw new NoSuchElementException(
+          "No such parameter found in this message(#" + id + "): " + name);
+    }
+    return new GctParameter(names[i], slice(offsets[i], lengths[i]));
+  }
+
+  @Override
+  public boolean hasParameter(ParameterName name) {
+    return indexOf(name) >= 0;
+  }
+
+  @Override
+  public int parameterCount() {
+    ensureIndexed();
+    return count;
+  }
+
+  /**
+   * Walks the native parameter area directly. If the index is already built, it is used instead.
+   */
+  @Override
+  public boolean visitParameters(ParameterVisitor visitor) throws IllegalStateException {
+    if (count >= 0 || released) {
+      ensureIndexed();
+      for (int i = 0; i < count; i++) {
+        if (!visitor.visit(names[i], params, offsets[i], lengths[i])) {
+          return false;
+        }
+      }
+      return true;
+    }
+    try {
+      return GctUtil.visitParameters(params, visitor);
+    } catch (IndexOutOfBoundsException | BufferUnderflowException ex) {
+      log.error("Unable to visit parameter area of Message #{}: {}", id, ex.getMessage());
+      throw new IllegalStateException("bad parameter area");
+    }
+  }
+
+  @Override
+  public List<GctParameter> parameterList() {
+    ensureIndexed();
+    List<GctParameter> list = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      list.add(new GctParameter(names[i], slice(offsets[i], lengths[i])));
+    }
+    return list;
+  }
+
+  /**
+   * Formats the message without building the parameter index. The parameter area is dumped as
+   * raw octets, so that logging a message does not defeat the lazy decoding.
+   */
+  @Override
+  public String toString() {
+    StringBuilder paramStr = new StringBuilder("[");
+    if (released) {
+      paramStr.append("released");
+    } else {
+      for (int i = 0; i < params.limit(); i++) {
+        paramStr.append(String.format("%02x,", u8(i)));
+      }
+      if (params.limit() > 0) {
+        paramStr.setLength(paramStr.length() - 1);
+      }
+    }
+    paramStr.append("]");
+
+    return String.format(
+        "{ \"type\": \"%s\", \"primitive\": \"%s\", "
+            + "\"id\": %d, \"source\": %d, \"destination\": %d, \"origin\": %d, "
+            + "\"response_required\": %b, \"parameter_area\": \"%s\" }",
+        type.mnemonic(),
+        primitive.mnemonic(),
+        id,
+        source,
+        destination,
+        instance,
+        responseRequired,
+        paramStr);
+  }
+}
@@ -59,6 +59,20 @@ public class GctParameter implements Parameter {
     this.data = data.rewind();
   }
 
+  /**
+   * Creates a parameter whose data is a region of a shared backing array. Nothing is copied, so the
+   * array must not be modified while the parameter is in use.
+   *
+   * @param name   name of the parameter
+   * @param slab   backing array, usually holding the whole parameter area of a message
+   * @param offset offset of the data field in {@code slab}
+   * @param length length of the data field
+   */
+  public GctParameter(ParameterName name, byte @NotNull [] slab, int offset, int length) {
+    this.name = name;
+    this.data = ByteBuffer.wrap(slab, offset, length).slice();
+  }
+
   @Override
   public ParameterName getName() {
     return name;
@@ -74,6 +88,37 @@ public class GctParameter implements Parameter {
     return data.asReadOnlyBuffer();
   }
 
+  /**
+   * Gets the buffer holding the <i>Data</i> field itself, from index 0. It must not be modified.
+   *
+   * @return the backing buffer of the data field
+   */
+  ByteBuffer buffer() {
+    return data;
+  }
+
+  /**
+   * Gets an octet of the <i>Data</i> field. Unlike {@link #getData()}, this does not create a
+   * buffer.
+   *
+   * @param index index of the octet, starting from 0
+   * @return the unsigned value of the octet
+   * @throws IndexOutOfBoundsException if {@code index} is not less than {@link #getLength()}
+   */
+  public int byteAt(int index) throws IndexOutOfBoundsException {
+    return data.get(index) & 0xFF;
+  }
+
+  /**
+   * Copies the <i>Data</i> field into {@code out}, at its current position. Unlike {@link
+   * #getData()}, this does not create a buffer.
+   *
+   * @param out buffer to copy the data field into
+   */
+  public void writeTo(@NotNull GctByteBuffer out) {
+    out.putBytes(data);
+  }
+
   @Override
   public String toString() {
     StringBuilder bytes = new StringBuilder();
@@ -0,0 +1,298 @@
+package lk.mobitel.telco.asmsc.gct;
+
+import com.dialogic.signaling.gct.GctException;
+import lk.mobitel.telco.asmsc.map.Message;
+import lk.mobitel.telco.asmsc.map.constant.MessageType;
+import lk.mobitel.telco.asmsc.map.constant.ParameterName;
+import lk.mobitel.telco.asmsc.map.constant.Primitive;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A message whose parameter area is encoded once, up front. Only the header fields, and optionally
+ * the invoke-id, differ from one message to another. Those are patched in at {@link
+ * Bound#encode()}, which copies the pre-encoded area into the native message with a single bulk
+ * transfer.
+ *
+ * <p>Source and destination are the configured module ids, and no response is required, same as
+ * the defaults of {@link GctMessage#builder()}. Templates are immutable and can be shared.
+ *
+ * @author NISALBA
+ * @see GctTemplates
+ */
+@Slf4j
+public final class GctTemplate {
+
+  /**
+   * An instance of a template, bound to a dialogue. This is what gets sent.
+   */
+  public static final class Bound implements GctEncodable {
+    private final GctTemplate template;
+    private final int dialogueId;
+    private final long instance;
+    private final int invokeId;
+
+    private Bound(GctTemplate template, int dialogueId, long instance, int invokeId) {
+      this.template = template;
+      this.dialogueId = dialogueId;
+      this.instance = instance;
+      this.invokeId = invokeId;
+    }
+
+    @Override
+    public @NotNull GctFrame encode() throws IllegalStateException {
+      return template.encode(dialogueId, instance, invokeId);
+    }
+
+    @Override
+    public long getInstance() {
+      return instance;
+    }
+
+    /**
+     * Makes this a reply written into the native message of {@code received}, when replying in
+     * place is enabled and {@code received} still holds its native message (see {@link
+     * GctMessageView}). Otherwise, this is returned as is.
+     *
+     * <p>If a reusable message is found, its ownership moves to the returned object and {@code
+     * received} is released; only its header fields can be read afterwards. If the reply does not
+     * fit in the received message, a new message is allocated at encoding and the received one is
+     * released then.
+     *
+     * @param received the message being replied to
+     * @return the reply, ready to be encoded
+     */
+    public @NotNull GctEncodable replacing(@NotNull Message received) {
+      if (GctUtil.replyInPlace() && received instanceof GctMessageView) {
+        GctFrame nativeMsg = ((GctMessageView) received).detach();
+        if (nativeMsg != null) {
+          return new InPlace(this, nativeMsg);
+        }
+      }
+      return this;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          "{ \"type\": \"%s\", \"primitive\": \"%s\", \"id\": %d, \"origin\": %d, "
+              + "\"invoke_id\": %d, \"template\": true }",
+          template.type.mnemonic(),
+          template.primitive.mnemonic(),
+          dialogueId,
+          instance,
+          invokeId);
+    }
+  }
+
+  /** A {@link Bound} template, to be written into a received native message. */
+  private static final class InPlace implements GctEncodable {
+    private final Bound reply;
+    private final GctFrame nativeMsg;
+
+    private InPlace(Bound reply, GctFrame nativeMsg) {
+      this.reply = reply;
+      this.nativeMsg = nativeMsg;
+    }
+
+    @Override
+    public @NotNull GctFrame encode() throws IllegalStateException {
+      try {
+        if (reply.template.encodeInto(
+            nativeMsg, reply.dialogueId, reply.instance, reply.invokeId)) {
+          return nativeMsg;
+        }
+      } catch (GctException | RuntimeException e) {
+        log.warn("Unable to reply in place, a new message is allocated: {}", e.toString());
+      }
+      GctUtil.releaseQuietly(nativeMsg);
+      return reply.encode();
+    }
+
+    @Override
+    public long getInstance() {
+      return reply.instance;
+    }
+
+    @Override
+    public void discard() {
+      GctUtil.releaseQuietly(nativeMsg);
+    }
+
+    @Override
+    public String toString() {
+      return reply.toString();
+    }
+  }
+
+  private final MessageType type;
+  private final Primitive primitive;
+  private final byte[] area;
+  private final int invokeIdOffset;
+
+  /**
+   * Creates a template.
+   *
+   * @param type         type of the messages
+   * @param primitive    primitive of the messages
+   * @param parameters   the constant parameters
+   * @param withInvokeId if true, a <code>MAPPN_invoke_id</code> parameter is added, to be patched
+   *                     with {@link #bind(int, long, int)}.
+   */
+  GctTemplate(
+      @NotNull MessageType type,
+      @NotNull Primitive primitive,
+      @NotNull List<GctParameter> parameters,
+      boolean withInvokeId) {
+    this.type = type;
+    this.primitive = primitive;
+
+    List<GctParameter> all = new ArrayList<>(parameters.size() + 1);
+    if (withInvokeId) {
+      all.add(GctParameter.of8BitValue(ParameterName.MAPPN_invoke_id, (byte) 0));
+    }
+    all.addAll(parameters);
+
+    this.area = new byte[GctUtil.parameterAreaLength(primitive, all)];
+    GctUtil.writeParameterArea(primitive, all, new GctByteBuffer(ByteBuffer.wrap(area)));
+
+    int[] offset = {-1};
+    if (withInvokeId) {
+      GctUtil.visitParameters(
+          ByteBuffer.wrap(area),
+          (name, buffer, o, length) -> {
+            if (name != ParameterName.MAPPN_invoke_id) {
+              return true;
+            }
+            offset[0] = o;
+            return false;
+          });
+    }
+    this.invokeIdOffset = offset[0];
+  }
+
+  public MessageType type() {
+    return type;
+  }
+
+  public Primitive primitive() {
+    return primitive;
+  }
+
+  /**
+   * Binds this template to a dialogue.
+   *
+   * @param dialogueId id of the dialogue
+   * @param instance   instance of the message
+   * @return a message, ready to be encoded
+   */
+  public @NotNull Bound bind(int dialogueId, long instance) {
+    return new Bound(this, dialogueId, instance, -1);
+  }
+
+  /**
+   * Binds this template to an invocation within a dialogue.
+   *
+   * @param dialogueId id of the dialogue
+   * @param instance   instance of the message
+   * @param invokeId   invoke-id of the invocation
+   * @return a message, ready to be encoded
+   * @throws IllegalStateException if this template does not have an invoke-id
+   */
+  public @NotNull Bound bind(int dialogueId, long instance, int invokeId)
+      throws IllegalStateException {
+    if (invokeIdOffset < 0) {
+      throw new IllegalStateException(primitive + " template does not have an invoke-id");
+    }
+    return new Bound(this, dialogueId, instance, invokeId);
+  }
+
+  /**
+   * Checks whether a reply made with this template would be written into the native message of
+   * {@code received}, as by {@link Bound#replacing(Message)}, rather than into a new message.
+   *
+   * @param received the message being replied to
+   * @return true if replying in place is enabled, and {@code received} holds a native message with
+   *     a parameter area long enough for this template
+   */
+  public boolean fitsInto(@NotNull Message received) {
+    if (!GctUtil.replyInPlace() || !(received instanceof GctMessageView)) {
+      return false;
+    }
+    GctMessageView view = (GctMessageView) received;
+    return !view.isReleased() && view.paramLength() >= area.length;
+  }
+
+  /**
+   * Rewrites a native message with this template. When the template is shorter than the parameter
+   * area of the native message, the area is shrunk to the template if the transport allows it;
+   * otherwise it keeps its length, and is terminated with <code>MAPPN_null</code> (see {@link
+   * GctFrame}).
+   *
+   * @return false if the template does not fit in the native message, which is then left untouched
+   */
+  private boolean encodeInto(
+      @NotNull GctFrame nativeMsg, int dialogueId, long instance, int invokeId)
+      throws GctException {
+    ByteBuffer param = nativeMsg.getParam();
+    if (param == null || param.limit() < area.length) {
+      return false;
+    }
+
+    nativeMsg.setId(dialogueId);
+    nativeMsg.setSrc(GctUtil.localModuleId());
+    nativeMsg.setDst(GctUtil.remoteModuleId());
+    nativeMsg.setInstance(instance);
+    nativeMsg.setRspReq(false);
+    nativeMsg.setType(type.value());
+
+    GctByteBuffer out = new GctByteBuffer(param);
+    out.putBytes(area, 0, area.length);
+    if (invokeIdOffset >= 0) {
+      out.put8(invokeId, invokeIdOffset);
+    }
+    if (out.hasRemaining() && !nativeMsg.shrinkParam(area.length)) {
+      out.put8(ParameterName.MAPPN_null.value());
+    }
+    return true;
+  }
+
+  private @NotNull GctFrame encode(int dialogueId, long instance, int invokeId)
+      throws IllegalStateException {
+    GctFrame nativeMsg;
+    try {
+      nativeMsg = GctUtil.transport().getm(area.length);
+    } catch (GctException e) {
+      log.error("Unable to allocate GctFrame. GctException occurred: {}", e.getMessage());
+      throw new IllegalStateException("Unable to allocate GctFrame: " + e.getMessage());
+    }
+
+    try {
+      nativeMsg.setId(dialogueId);
+      nativeMsg.setSrc(GctUtil.localModuleId());
+      nativeMsg.setDst(GctUtil.remoteModuleId());
+      nativeMsg.setInstance(instance);
+      nativeMsg.setRspReq(false);
+      nativeMsg.setType(type.value());
+
+      GctByteBuffer out = new GctByteBuffer(nativeMsg.getParam());
+      out.putBytes(area, 0, area.length);
+      if (invokeIdOffset >= 0) {
+        out.put8(invokeId, invokeIdOffset);
+      }
+      return nativeMsg;
+    } catch (GctException e) {
+      log.error("Unable to set values for GctFrame. GctException occurred: {}", e.getMessage());
+      GctUtil.releaseQuietly(nativeMsg);
+      throw new IllegalStateException("Unable to set values for GctFrame: " + e.getMessage());
+    } catch (RuntimeException e) {
+      log.error("Unable to write parameter area of GctFrame: {}", e.toString());
+      GctUtil.releaseQuietly(nativeMsg);
+      throw new IllegalStateException("Unable to write parameter area: " + e);
+    }
+  }
+}
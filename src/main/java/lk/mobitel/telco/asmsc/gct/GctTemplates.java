@@ -0,0 +1,176 @@
+package lk.mobitel.telco.asmsc.gct;
+
+import lk.mobitel.telco.asmsc.map.constant.ApplicationContext;
+import lk.mobitel.telco.asmsc.map.constant.MAPResult;
+import lk.mobitel.telco.asmsc.map.constant.MessageType;
+import lk.mobitel.telco.asmsc.map.constant.ParameterName;
+import lk.mobitel.telco.asmsc.map.constant.Primitive;
+import lk.mobitel.telco.asmsc.map.constant.RefuseReason;
+import lk.mobitel.telco.asmsc.map.constant.UserError;
+import lk.mobitel.telco.asmsc.map.constant.UserReason;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Pre-encoded {@link GctTemplate}s for the messages emitted most often: dialogue accept and
+ * refuse, delimiter, close, user abort, and error responses. They are looked up by enum ordinal,
+ * and each is built once: the dialogue templates and the error responses of the short message
+ * services when this class is initialized, the error responses of other services on first use.
+ *
+ * @author NISALBA
+ */
+public final class GctTemplates {
+
+  /** Service responses which have error templates. */
+  private static final Primitive[] ERROR_RESPONSES = {
+    Primitive.MAPST_SND_RTISM_RSP, Primitive.MAPST_MO_FWD_SM_RSP, Primitive.MAPST_MT_FWD_SM_RSP,
+  };
+
+  private static final GctTemplate[] openAccept =
+      new GctTemplate[ApplicationContext.values().length];
+
+  private static final GctTemplate[] openRefuse = new GctTemplate[RefuseReason.values().length];
+
+  private static final GctTemplate[] userAbort = new GctTemplate[UserReason.values().length];
+
+  private static final GctTemplate delimiter =
+      new GctTemplate(MessageType.MAP_MSG_DLG_REQ, Primitive.MAPDT_DELIMITER_REQ, List.of(), false);
+
+  private static final GctTemplate close =
+      new GctTemplate(
+          MessageType.MAP_MSG_DLG_REQ,
+          Primitive.MAPDT_CLOSE_REQ,
+          List.of(GctParameter.of8BitValue(ParameterName.MAPPN_release_method, (byte) 0)),
+          false);
+
+  /**
+   * Indexed by response {@link Primitive} ordinal, then by {@link UserError} ordinal. A row is set
+   * when the response is first used, unless it is one of the {@link #ERROR_RESPONSES}.
+   */
+  private static final AtomicReferenceArray<GctTemplate[]> userError =
+      new AtomicReferenceArray<>(Primitive.values().length);
+
+  static {
+    for (ApplicationContext ac : ApplicationContext.values()) {
+      openAccept[ac.ordinal()] =
+          new GctTemplate(
+              MessageType.MAP_MSG_DLG_REQ,
+              Primitive.MAPDT_OPEN_RSP,
+              List.of(
+                  GctParameter.of8BitValue(
+                      ParameterName.MAPPN_result, (byte) MAPResult.MAPRS_DLG_ACC.value()),
+                  GctParameter.ofBytes(ParameterName.MAPPN_applic_context, ac.asByteBuffer())),
+              false);
+    }
+
+    for (RefuseReason reason : RefuseReason.values()) {
+      openRefuse[reason.ordinal()] =
+          new GctTemplate(
+              MessageType.MAP_MSG_DLG_REQ,
+              Primitive.MAPDT_OPEN_RSP,
+              List.of(
+                  GctParameter.of8BitValue(
+                      ParameterName.MAPPN_result, (byte) MAPResult.MAPRS_DLG_REF.value()),
+                  GctParameter.of8BitValue(ParameterName.MAPPN_refuse_rsn, reason.value())),
+              false);
+    }
+
+    for (UserReason reason : UserReason.values()) {
+      userAbort[reason.ordinal()] =
+          new GctTemplate(
+              MessageType.MAP_MSG_DLG_REQ,
+              Primitive.MAPDT_U_ABORT_REQ,
+              List.of(GctParameter.of8BitValue(ParameterName.MAPPN_user_rsn, reason.value())),
+              false);
+    }
+
+    for (Primitive response : ERROR_RESPONSES) {
+      userError.set(response.ordinal(), userErrors(response));
+    }
+  }
+
+  private GctTemplates() {}
+
+  private static GctTemplate @NotNull [] userErrors(@NotNull Primitive response) {
+    GctTemplate[] templates = new GctTemplate[UserError.values().length];
+    for (UserError error : UserError.values()) {
+      templates[error.ordinal()] =
+          new GctTemplate(
+              MessageType.MAP_MSG_SRV_REQ,
+              response,
+              List.of(GctParameter.of8BitValue(ParameterName.MAPPN_user_err, error.value())),
+              true);
+    }
+    return templates;
+  }
+
+  /**
+   * Gets the <code>MAPDT_OPEN_RSP</code> that accepts a dialogue with the given application
+   * context.
+   *
+   * @param applicationContext application context of the dialogue
+   * @return the template; bind it with the dialogue id and instance of the open indication
+   */
+  public static @NotNull GctTemplate openAccept(@NotNull ApplicationContext applicationContext) {
+    return openAccept[applicationContext.ordinal()];
+  }
+
+  /**
+   * Gets the <code>MAPDT_OPEN_RSP</code> that refuses a dialogue.
+   *
+   * @param reason the refuse reason
+   * @return the template; bind it with the dialogue id and instance of the open indication
+   */
+  public static @NotNull GctTemplate openRefuse(@NotNull RefuseReason reason) {
+    return openRefuse[reason.ordinal()];
+  }
+
+  /**
+   * Gets the <code>MAPDT_U_ABORT_REQ</code> with the given user reason.
+   *
+   * @param reason the user reason
+   * @return the template; bind it with the dialogue id and instance
+   */
+  public static @NotNull GctTemplate userAbort(@NotNull UserReason reason) {
+    return userAbort[reason.ordinal()];
+  }
+
+  /**
+   * Gets the <code>MAPDT_DELIMITER_REQ</code>.
+   *
+   * @return the template; bind it with the dialogue id and instance
+   */
+  public static @NotNull GctTemplate delimiter() {
+    return delimiter;
+  }
+
+  /**
+   * Gets the <code>MAPDT_CLOSE_REQ</code> with normal release.
+   *
+   * @return the template; bind it with the dialogue id and instance
+   */
+  public static @NotNull GctTemplate close() {
+    return close;
+  }
+
+  /**
+   * Gets a service response carrying a user error. Templates are pre-encoded for the responses of
+   * the short message services; those of other responses are encoded on their first use, and
+   * cached. Two threads may both encode them on first use; the first to finish is kept.
+   *
+   * @param response the response primitive
+   * @param error    the user error
+   * @return the template; bind it with the dialogue id, instance and invoke-id
+   */
+  public static @NotNull GctTemplate userError(
+      @NotNull Primitive response, @NotNull UserError error) {
+    GctTemplate[] templates = userError.get(response.ordinal());
+    if (templates == null) {
+      userError.compareAndSet(response.ordinal(), null, userErrors(response));
+      templates = userError.get(response.ordinal());
+    }
+    return templates[error.ordinal()];
+  }
+}
@@ -0,0 +1,68 @@
+package lk.mobitel.telco.asmsc.gct;
+
+import com.dialogic.signaling.gct.GctException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Moves {@link GctFrame}s between modules: the receive, send, allocate and release calls of the
+ * GCT environment. The transport in use is chosen by {@link
+ * lk.mobitel.telco.asmsc.config.RuntimeConfiguration#transport()} and is available from {@link
+ * GctUtil#transport()}.
+ *
+ * <p>A frame is owned by one party at a time. {@link #getm}, {@link #receive} and {@link #grab}
+ * hand a frame over to the caller, which must give it back with {@link #send} or {@link #relm}.
+ *
+ * @author NISALBA
+ * @see NativeGctTransport
+ * @see LoopbackGctTransport
+ */
+public interface GctTransport {
+
+  /**
+   * Receives the next frame sent to a module, waiting until one is available.
+   *
+   * @param moduleId the receiving module
+   * @return the frame
+   * @throws GctException if receiving fails
+   */
+  @NotNull
+  GctFrame receive(short moduleId) throws GctException;
+
+  /**
+   * Receives the next frame sent to a module, if one is available now.
+   *
+   * @param moduleId the receiving module
+   * @return the frame, or null if there is none
+   * @throws GctException if receiving fails
+   */
+  @Nullable
+  GctFrame grab(short moduleId) throws GctException;
+
+  /**
+   * Sends a frame to a module. The frame is owned by the transport afterwards.
+   *
+   * @param moduleId the destination module
+   * @param frame    the frame to send
+   * @throws GctException if sending fails; the caller still owns the frame then
+   */
+  void send(short moduleId, @NotNull GctFrame frame) throws GctException;
+
+  /**
+   * Allocates a frame.
+   *
+   * @param length length of the parameter area
+   * @return a new frame
+   * @throws GctException if no frame can be allocated
+   */
+  @NotNull
+  GctFrame getm(int length) throws GctException;
+
+  /**
+   * Releases a frame.
+   *
+   * @param frame the frame to release
+   * @throws GctException if releasing fails
+   */
+  void relm(@NotNull GctFrame frame) throws GctException;
+}
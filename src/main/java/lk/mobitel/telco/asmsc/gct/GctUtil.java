@@ -1,18 +1,23 @@
 package lk.mobitel.telco.asmsc.gct;
 
-import com.dialogic.signaling.gct.BBUtil;
 import com.dialogic.signaling.gct.GctException;
-import com.dialogic.signaling.gct.GctLib;
-import com.dialogic.signaling.gct.GctMsg;
 import io.vavr.Tuple;
 import io.vavr.Tuple2;
+import lk.mobitel.telco.asmsc.config.GctLink;
 import lk.mobitel.telco.asmsc.config.RuntimeConfiguration;
+import lk.mobitel.telco.asmsc.map.Message;
+import lk.mobitel.telco.asmsc.map.Parameter;
+import lk.mobitel.telco.asmsc.map.ParameterVisitor;
+import lk.mobitel.telco.asmsc.map.constant.ApplicationContext;
+import lk.mobitel.telco.asmsc.map.constant.MAPResult;
 import lk.mobitel.telco.asmsc.map.constant.MessageType;
 import lk.mobitel.telco.asmsc.map.constant.ParameterName;
 import lk.mobitel.telco.asmsc.map.constant.Primitive;
+import lk.mobitel.telco.asmsc.map.constant.ProviderReason;
 import lk.mobitel.telco.asmsc.map.constant.UserReason;
 import lombok.extern.slf4j.Slf4j;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
@@ -24,26 +29,92 @@ import java.util.NoSuchElementException;
 public class GctUtil {
 
   /**
-   * This is a rough estimation on how many parameters would appear in one GctMsg. It reduces
+   * This is a rough estimation on how many parameters would appear in one GctFrame. It reduces
    * unnecessary memory allocations.
    */
   private static final int NORMAL_PARAMETER_COUNT = 3;
 
   /**
-   * Empty buffer can be used safely to indicate empty parameter area in the GctMsg. It keeps the
+   * Empty buffer can be used safely to indicate empty parameter area in the GctFrame. It keeps the
    * parsing algorithm happy.
    */
   private static final ByteBuffer EMPTY_BUFFER = ByteBuffer.allocate(2);
 
+  /** Dialogue ids are 16-bit, all ids of all links lie below this. */
+  private static final long DIALOGUE_ID_SPACE = 0x10000;
+
   static RuntimeConfiguration config;
 
+  /** Read once at {@link #init(RuntimeConfiguration)}, since every message uses it. */
+  private static short localModuleId;
+
+  private static short remoteModuleId;
+
+  private static boolean replyInPlace;
+
+  private static List<GctLink> links = List.of();
+
+  private static GctTransport transport;
+
   /**
    * Initializes the static data for Gct internals
    *
    * @param config configuration object
+   * @throws IllegalStateException if no link is configured, the incoming and outgoing dialogue ids
+   *     of all links overlap, or do not fit in the 16-bit dialogue id, or two links have the same
+   *     instance
    */
-  public static void init(RuntimeConfiguration config) {
+  public static void init(RuntimeConfiguration config) throws IllegalStateException {
+    List<GctLink> links = List.copyOf(config.links());
+    if (links.isEmpty()) {
+      throw new IllegalStateException("At least one GCT link is required");
+    }
+    long incomingEnd =
+        config.incomingDialogueIdBase() + (long) config.incomingDialogueCount() * links.size();
+    long outgoingEnd =
+        config.outgoingDialogueIdBase() + (long) config.outgoingDialogueCount() * links.size();
+    if (config.incomingDialogueIdBase() < 0 || incomingEnd > DIALOGUE_ID_SPACE) {
+      throw new IllegalStateException(
+          String.format(
+              "Incoming dialogue ids of %d links [0x%x, 0x%x) exceed the dialogue id space",
+              links.size(), config.incomingDialogueIdBase(), incomingEnd));
+    }
+    if (config.outgoingDialogueIdBase() < 0 || outgoingEnd > DIALOGUE_ID_SPACE) {
+      throw new IllegalStateException(
+          String.format(
+              "Outgoing dialogue ids of %d links [0x%x, 0x%x) exceed the dialogue id space",
+              links.size(), config.outgoingDialogueIdBase(), outgoingEnd));
+    }
+    if (config.incomingDialogueIdBase() < outgoingEnd
+        && config.outgoingDialogueIdBase() < incomingEnd) {
+      throw new IllegalStateException(
+          "Incoming and outgoing dialogue ids of " + links.size() + " links overlap");
+    }
+    for (int i = 1; i < links.size(); i++) {
+      for (int j = 0; j < i; j++) {
+        if (links.get(i).instance() == links.get(j).instance()) {
+          throw new IllegalStateException(
+              String.format(
+                  "GCT links %d and %d have the same instance %d", j, i, links.get(i).instance()));
+        }
+      }
+    }
+
     GctUtil.config = config;
+    GctUtil.localModuleId = config.localModuleId();
+    GctUtil.remoteModuleId = config.remoteModuleId();
+    GctUtil.replyInPlace = config.replyInPlace();
+    GctUtil.links = links;
+    switch (config.transport()) {
+      case LOOPBACK:
+        GctUtil.transport = new LoopbackGctTransport(config);
+        log.warn("GCT messages go through the in-memory loopback transport: {}", transport);
+        break;
+      case NATIVE:
+      default:
+        GctUtil.transport = new NativeGctTransport();
+        break;
+    }
   }
 
   /**
@@ -62,6 +133,77 @@ public class GctUtil {
     return config;
   }
 
+  /**
+   * Gets the transport messages are received, sent, allocated and released with. See {@link
+   * RuntimeConfiguration#transport()}.
+   *
+   * @return the transport
+   * @throws IllegalStateException if GctUtil is not initialized
+   */
+  public static @NotNull GctTransport transport() throws IllegalStateException {
+    config();
+    return transport;
+  }
+
+  /**
+   * Gets the configured local module id, which is the default source of outgoing messages.
+   *
+   * @return the module id of the application
+   * @throws IllegalStateException if GctUtil is not initialized
+   */
+  public static short localModuleId() throws IllegalStateException {
+    config();
+    return localModuleId;
+  }
+
+  /**
+   * Gets the configured remote module id, which is the default destination of outgoing messages.
+   *
+   * @return the module id of the MAP task
+   * @throws IllegalStateException if GctUtil is not initialized
+   */
+  public static short remoteModuleId() throws IllegalStateException {
+    config();
+    return remoteModuleId;
+  }
+
+  /**
+   * Gets the configured links. See {@link RuntimeConfiguration#links()}.
+   *
+   * @return the links, in order
+   */
+  public static @NotNull List<GctLink> links() {
+    return links;
+  }
+
+  /**
+   * Finds the link of a message by its instance. With a single link, every message belongs to it.
+   *
+   * @param instance instance of the message
+   * @return the index of the link in {@link #links()}, or -1 if no link has the instance
+   */
+  public static int linkIndexOf(long instance) {
+    if (links.size() == 1) {
+      return 0;
+    }
+    for (int i = 0; i < links.size(); i++) {
+      if (links.get(i).instance() == instance) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns true if responses may reuse the received native message. See {@link
+   * RuntimeConfiguration#replyInPlace()}.
+   *
+   * @return the configured value
+   */
+  static boolean replyInPlace() {
+    return replyInPlace;
+  }
+
   /**
    * Gets value suited for rspReq field in native dialogic messages. This value is calculated as
    * follows:
@@ -79,17 +221,17 @@ public class GctUtil {
    * @return The value for rspReq field in native messages
    */
   public static short rspReqValue() {
-    return (short) (1 << (config.localModuleId() & 15));
+    return (short) (1 << (localModuleId & 15));
   }
 
   /**
-   * Copies the given byte-buffer to given GctMsg's parameter buffer. GctMsg does not provide a
+   * Copies the given byte-buffer to given GctFrame's parameter buffer. GctFrame does not provide a
    * direct method to set parameter buffer.
    *
-   * @param msg    GctMsg to copy the buffer to.
+   * @param msg    GctFrame to copy the buffer to.
    * @param buffer buffer to copy
    */
-  public static void copyParameterBuffer(@NotNull GctMsg msg, @NotNull ByteBuffer buffer) {
+  public static void copyParameterBuffer(@NotNull GctFrame msg, @NotNull ByteBuffer buffer) {
     int id = -1;
     try {
       id = msg.getId();
@@ -173,35 +315,27 @@ public class GctUtil {
         length = buffer.next8();
       }
 
-      // read data field
-      ByteBuffer data = ByteBuffer.allocate(length);
+      // read data field, checked once for the whole field
+      buffer.require(length);
       if (nameVal == ParameterName.MAPPN_CODE_SHIFT.value()) {
-        short c = buffer.next8();
-        codeShift = (c == 0x01);
-        data.put((byte) c);
+        codeShift = (buffer.at8(buffer.position()) == 0x01);
       } else if (nameVal == ParameterName.MAPPN_SERVICE_TYPE.value()) {
-        primitiveVal = buffer.next16();
-        data.putShort((short) primitiveVal);
-      } else {
-        for (int i = 0; i < length; i++) {
-          data.put((byte) buffer.next8());
-        }
+        primitiveVal = buffer.at16(buffer.position());
       }
-      data.rewind();
+      ByteBuffer data = ByteBuffer.wrap(buffer.nextBytes(length));
 
-      try {
-        ParameterName name = ParameterName.of(nameVal);
+      ParameterName name = ParameterName.lookup(nameVal);
+      if (name != null) {
         params.add(new GctParameter(name, data));
-      } catch (NoSuchElementException ex) {
+      } else {
         log.warn(
             String.format(
                 "No parameter for value '0x%x'(%d). Ignoring this parameter...", nameVal, nameVal));
       }
     }
 
-    try {
-      primitive = Primitive.of(primitiveVal, messageType.isDialogue());
-    } catch (NoSuchElementException ex) {
+    primitive = Primitive.lookup(primitiveVal, messageType.isDialogue());
+    if (primitive == null) {
       log.warn(
           String.format(
               "Unable to parse buffer, unknown primitive value '0x%x'(%d). Default primitive is applied",
@@ -215,13 +349,179 @@ public class GctUtil {
   }
 
   /**
-   * Converts a <code>GctMsg</code> to a {@link GctMessage}.
+   * Walks a parameter area as specified in Dialogic MAP Programmer's Manual, passing each parameter
+   * to {@code visitor} as a region of {@code buffer}. Nothing is copied and no parameter objects
+   * are created.
+   *
+   * <p>The area is read from index 0, where the primitive octet is, and offsets given to the
+   * visitor are absolute indexes of {@code buffer}. <code>MAPPN_CODE_SHIFT</code> and <code>
+   * MAPPN_LONG_PARAM_CODE_EXTENSION</code> are handled here and are not visited; extended
+   * parameters are visited under their actual names. <code>MAPPN_SERVICE_TYPE</code> is visited
+   * like any other parameter. Parameters with unknown names are skipped.
+   *
+   * @param buffer  The parameter area. Its position and limit are not changed.
+   * @param visitor Visitor to receive the parameters. Returning false stops the walk.
+   *
+   * @return true if the whole area was visited, false if {@code visitor} stopped early.
+   *
+   * @throws BufferUnderflowException if the parameter area is empty or truncated.
+   */
+  public static boolean visitParameters(
+      @NotNull ByteBuffer buffer, @NotNull ParameterVisitor visitor)
+      throws BufferUnderflowException {
+    GctByteBuffer cursor = new GctByteBuffer(buffer.duplicate());
+    cursor.skip(1); // primitive
+    boolean codeShift = false;
+    while (cursor.hasRemaining()) {
+      // read name tag
+      int nameVal = cursor.next8();
+      if (nameVal == ParameterName.MAPPN_LONG_PARAM_CODE_EXTENSION.value()) {
+        cursor.skip(codeShift ? 2 : 1);
+        nameVal = cursor.next16();
+      }
+
+      if (nameVal == ParameterName.MAPPN_null.value()) {
+        break;
+      }
+
+      // read length field, then skip the data field as a whole
+      int length = codeShift ? cursor.next16() : cursor.next8();
+      int offset = cursor.position();
+      cursor.skip(length);
+
+      if (nameVal == ParameterName.MAPPN_CODE_SHIFT.value()) {
+        codeShift = (cursor.at8(offset) == 0x01);
+        continue;
+      }
+
+      ParameterName name = ParameterName.lookup(nameVal);
+      if (name == null) {
+        log.warn(
+            String.format(
+                "No parameter for value '0x%x'(%d). Ignoring this parameter...", nameVal, nameVal));
+      } else if (!visitor.visit(name, buffer, offset, length)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Walks the parameter area of a <code>GctFrame</code>. See {@link #visitParameters(ByteBuffer,
+   * ParameterVisitor)}.
+   *
+   * @param msg     The <code>GctFrame</code> to visit. It is not released.
+   * @param visitor Visitor to receive the parameters. Returning false stops the walk.
+   *
+   * @return true if the whole area was visited, false if {@code visitor} stopped early.
+   *
+   * @throws IllegalStateException if the parameter area cannot be read or is truncated.
+   */
+  public static boolean visitParameters(@NotNull GctFrame msg, @NotNull ParameterVisitor visitor)
+      throws IllegalStateException {
+    try {
+      ByteBuffer params = msg.getParam();
+      return visitParameters(params == null ? EMPTY_BUFFER : params, visitor);
+    } catch (GctException ex) {
+      log.error("Unable to read parameter area: {}", ex.getMessage());
+      throw new IllegalStateException("bad parameter area");
+    } catch (BufferUnderflowException | IndexOutOfBoundsException ex) {
+      throw new IllegalStateException("bad parameter area");
+    }
+  }
+
+  /**
+   * Parses a parameter area as specified in Dialogic MAP Programmer's Manual, backing all
+   * parameters with a single array.
+   *
+   * <p>The remaining bytes of {@code buffer} are copied into one array with a single bulk transfer.
+   * Each decoded {@link GctParameter} is then a slice of that array, and is added straight to the
+   * given builder. Compared to {@link #decodeParameterBuffer(ByteBuffer, MessageType)}, no buffer
+   * is allocated per parameter and there is no intermediate list.
+   *
+   * @param buffer      The byte buffer to parse.
+   * @param messageType Type of the message from which this buffer is extracted. This is necessary
+   *                    since dialogue and service primitive type values are overlapping.
+   * @param builder     Builder to which the decoded parameters are added.
+   *
+   * @return the primitive of the message.
+   *
+   * @throws BufferUnderflowException if the parameter area is empty or truncated.
+   * @throws IllegalStateException    if the primitive in parameter area is unknown.
+   */
+  public static @NotNull Primitive decodeParameterSlab(
+      @NotNull ByteBuffer buffer,
+      @NotNull MessageType messageType,
+      @NotNull GctMessage.GctMessageBuilder builder)
+      throws BufferUnderflowException, IllegalStateException {
+    byte[] slab = new byte[buffer.remaining()];
+    buffer.get(slab);
+    if (slab.length == 0) {
+      log.warn("Parameter buffer is empty");
+      throw new BufferUnderflowException();
+    }
+
+    GctByteBuffer cursor = new GctByteBuffer(ByteBuffer.wrap(slab));
+    int primitiveVal = cursor.next8();
+    boolean codeShift = false;
+    try {
+      while (cursor.hasRemaining()) {
+        // read name tag
+        int nameVal = cursor.next8();
+        if (nameVal == ParameterName.MAPPN_LONG_PARAM_CODE_EXTENSION.value()) {
+          cursor.skip(codeShift ? 2 : 1);
+          nameVal = cursor.next16();
+        }
+
+        if (nameVal == ParameterName.MAPPN_null.value()) {
+          break;
+        }
+
+        // read length field
+        int length = codeShift ? cursor.next16() : cursor.next8();
+        int pos = cursor.position();
+
+        // data field is not copied, only referred
+        cursor.skip(length);
+        if (nameVal == ParameterName.MAPPN_CODE_SHIFT.value()) {
+          codeShift = (cursor.at8(pos) == 0x01);
+        } else if (nameVal == ParameterName.MAPPN_SERVICE_TYPE.value()) {
+          primitiveVal = cursor.at16(pos);
+        }
+
+        ParameterName name = ParameterName.lookup(nameVal);
+        if (name != null) {
+          builder.parameter(new GctParameter(name, slab, pos, length));
+        } else {
+          log.warn(
+              String.format(
+                  "No parameter for value '0x%x'(%d). Ignoring this parameter...",
+                  nameVal, nameVal));
+        }
+      }
+    } catch (IndexOutOfBoundsException ex) {
+      throw new BufferUnderflowException();
+    }
+
+    Primitive primitive = Primitive.lookup(primitiveVal, messageType.isDialogue());
+    if (primitive == null) {
+      log.warn(
+          String.format(
+              "Unable to parse buffer, unknown primitive value '0x%x'(%d).",
+              primitiveVal, primitiveVal));
+      throw new IllegalStateException(String.format("bad primitive: 0x%x", primitiveVal));
+    }
+    return primitive;
+  }
+
+  /**
+   * Converts a <code>GctFrame</code> to a {@link GctMessage}.
    *
-   * @param msg The <code>GctMsg</code> object to convert
+   * @param msg The <code>GctFrame</code> object to convert
    *
    * @return A {@link GctMessage} object.
    */
-  public static GctMessage parseMsg(@NotNull GctMsg msg) {
+  public static GctMessage parseMsg(@NotNull GctFrame msg) {
     ByteBuffer params = null;
     int id = 0;
     int src = 0;
@@ -276,6 +576,99 @@ public class GctUtil {
     }
   }
 
+  /**
+   * Converts a <code>GctFrame</code> to a {@link GctMessage}, using {@link
+   * #decodeParameterSlab(ByteBuffer, MessageType, GctMessage.GctMessageBuilder)} for the parameter
+   * area. The resultant message does not refer to {@code msg}, which can be released right away.
+   *
+   * @param msg The <code>GctFrame</code> object to convert
+   *
+   * @return A {@link GctMessage} object.
+   */
+  public static GctMessage parseMsgSlab(@NotNull GctFrame msg) {
+    ByteBuffer params = null;
+    int id = 0;
+    GctMessage.GctMessageBuilder builder = GctMessage.builder();
+
+    try {
+      id = msg.getId();
+      builder
+          .id(id)
+          .source(msg.getSrc())
+          .destination(msg.getDst())
+          .instance(msg.getInstance())
+          .responseRequired(msg.getRspReq());
+      MessageType mType = MessageType.of(msg.getType());
+      params = msg.getParam();
+      builder.type(mType);
+      return builder
+          .primitive(
+              decodeParameterSlab(
+                  params == null ? EMPTY_BUFFER.duplicate().rewind() : params, mType, builder))
+          .build();
+    } catch (GctException ex) {
+      log.error("Unable to read header of Message #{}: {}", id, ex.getMessage());
+      throw new IllegalStateException("bad message header: " + ex.getMessage());
+    } catch (BufferUnderflowException ex) {
+      log.error("Unable to parse parameter area of Message #{}", id);
+      throw new IllegalStateException("bad parameter area");
+    } catch (NoSuchElementException ex) {
+      log.error("Unknown message type for Message #{}", id);
+      throw new IllegalStateException("bad message type: " + ex.getMessage());
+    }
+  }
+
+  /**
+   * Wraps a <code>GctFrame</code> in a {@link GctMessageView} without copying its parameter area.
+   * The ownership of the native message is transferred to the returned view, which must be
+   * released with {@link #release(Message)} once it is no longer needed. If this method throws, the
+   * native message is still owned by the caller.
+   *
+   * @param msg The <code>GctFrame</code> object to wrap
+   *
+   * @return A {@link GctMessageView} over {@code msg}.
+   *
+   * @throws IllegalStateException if the message type or primitive is unknown, or the parameter
+   *                               area cannot be read.
+   */
+  public static @NotNull GctMessageView viewMsg(@NotNull GctFrame msg)
+      throws IllegalStateException {
+    int id = 0;
+    try {
+      id = msg.getId();
+      ByteBuffer params = msg.getParam();
+      MessageType mType = MessageType.of(msg.getType());
+      return new GctMessageView(
+          msg,
+          params == null ? EMPTY_BUFFER : params,
+          mType,
+          id,
+          msg.getSrc(),
+          msg.getDst(),
+          msg.getInstance(),
+          msg.getRspReq());
+    } catch (GctException ex) {
+      log.error("Unable to read header of Message #{}: {}", id, ex.getMessage());
+      throw new IllegalStateException("bad message header: " + ex.getMessage());
+    } catch (NoSuchElementException ex) {
+      log.error("Unknown message type for Message #{}", id);
+      throw new IllegalStateException("bad message type: " + ex.getMessage());
+    }
+  }
+
+  /**
+   * Releases resources held by a received message. Messages decoded with {@link
+   * #viewMsg(GctFrame)} hold on to their <code>GctFrame</code> until this is called. For other
+   * messages this is a no-op, so it is always safe to call by the last consumer of a message.
+   *
+   * @param message the message that is no longer needed
+   */
+  public static void release(@NotNull Message message) {
+    if (message instanceof GctMessageView) {
+      ((GctMessageView) message).release();
+    }
+  }
+
   /**
    * Encodes a parameter buffer according to Dialogic MAP Programmer's manual
    *
@@ -299,20 +692,21 @@ public class GctUtil {
     int bufferLength = organizedResult._2 + 1; // +1 for primitive
     List<GctParameter> newParameters = organizedResult._1;
     ByteBuffer result = ByteBuffer.allocate(bufferLength);
+    GctByteBuffer out = new GctByteBuffer(result);
 
     // (4) Put primitive. It is guaranteed to be an 8-bit value at (1)
-    result.put((byte) (primitive.value() & 0xFF));
+    out.put8(primitive.value() & 0xFF);
 
     // (5) Insert parameters
     boolean codeShifted = false;
     for (GctParameter parameter : newParameters) {
-      BBUtil.putU8(result, parameter.getName().value());
+      out.put8(parameter.getName().value());
       if (codeShifted) {
-        BBUtil.putU16(result, parameter.getLength());
+        out.put16(parameter.getLength());
       } else {
-        BBUtil.putU8(result, parameter.getLength());
+        out.put8(parameter.getLength());
       }
-      result.put(parameter.getData());
+      parameter.writeTo(out);
 
       if (parameter.getName() == ParameterName.MAPPN_CODE_SHIFT) {
         codeShifted = GctDecode.asBoolean(parameter);
@@ -323,34 +717,219 @@ public class GctUtil {
   }
 
   /**
-   * Encodes a {@link GctMessage} into a <code>GctMsg</code>. A GctMsg is allocated in this method
-   * and caller must release it.
+   * Encodes a {@link GctMessage} into a <code>GctFrame</code>. A GctFrame is allocated in this
+   * method and caller must release it.
    *
    * @param message The {@link GctMessage} to encode
    *
-   * @return An allocated GctMsg, populated with data from {@code message}. Caller must release
+   * @return An allocated GctFrame, populated with data from {@code message}. Caller must release
+   * this.
+   *
+   * @throws IllegalStateException if {@code com.dialogic.signaling.gct.GctException} is thrown
+   *                               while setting data.
+   */
+  public static @NotNull GctFrame encodeMsg(@NotNull GctMessage message)
+      throws IllegalStateException {
+    return encodeMsgDirect(message);
+  }
+
+  /**
+   * Encodes a {@link Message} into a <code>GctFrame</code>, writing the parameter area straight
+   * into the frame.
+   *
+   * <p>The exact length of the parameter area is computed with one pass over the parameters, so
+   * that <code>GctTransport.getm</code> is called once and no intermediate buffer is needed. See
+   * {@link #writeParameterArea} for the layout.
+   *
+   * @param message The {@link Message} to encode
+   *
+   * @return An allocated GctFrame, populated with data from {@code message}. Caller must release
    * this.
    *
    * @throws IllegalStateException if {@code com.dialogic.signaling.gct.GctException} is thrown
    *                               while setting data.
    */
-  public static @NotNull GctMsg encodeMsg(@NotNull GctMessage message)
+  public static @NotNull GctFrame encodeMsgDirect(@NotNull Message message)
       throws IllegalStateException {
+    Primitive primitive = message.getPrimitive();
+    List<? extends Parameter> parameters = message.parameterList();
+    int length = parameterAreaLength(primitive, parameters);
+
+    GctFrame nativeMsg;
     try {
-      ByteBuffer buffer = encodeParameterBuffer(message.getPrimitive(), message.parameterList());
+      nativeMsg = transport.getm(length);
+    } catch (GctException e) {
+      log.error("Unable to allocate GctFrame. GctException occurred: {}", e.getMessage());
+      throw new IllegalStateException("Unable to allocate GctFrame: " + e.getMessage());
+    }
 
-      GctMsg nativeMsg = GctLib.getm(buffer.limit());
+    try {
       nativeMsg.setId(message.getId());
       nativeMsg.setSrc((short) message.getSource());
       nativeMsg.setDst((short) message.getDestination());
       nativeMsg.setInstance(message.getInstance());
       nativeMsg.setRspReq(message.isResponseRequired());
       nativeMsg.setType(message.getType().value());
-      copyParameterBuffer(nativeMsg, buffer);
+      writeParameterArea(primitive, parameters, new GctByteBuffer(nativeMsg.getParam()));
       return nativeMsg;
     } catch (GctException e) {
-      log.error("Unable to set values for GctMsg. GctException occurred: {}", e.getMessage());
-      throw new IllegalStateException("Unable to set values for GctMsg: " + e.getMessage());
+      log.error("Unable to set values for GctFrame. GctException occurred: {}", e.getMessage());
+      releaseQuietly(nativeMsg);
+      throw new IllegalStateException("Unable to set values for GctFrame: " + e.getMessage());
+    } catch (RuntimeException e) {
+      log.error("Unable to write parameter area of GctFrame: {}", e.toString());
+      releaseQuietly(nativeMsg);
+      throw new IllegalStateException("Unable to write parameter area: " + e);
+    }
+  }
+
+  /**
+   * Computes the exact length of the parameter area written by {@link #writeParameterArea}.
+   *
+   * @param primitive  Primitive of the message.
+   * @param parameters Parameters of the message.
+   *
+   * @return The number of octets in the parameter area.
+   */
+  static int parameterAreaLength(
+      @NotNull Primitive primitive, @NotNull List<? extends Parameter> parameters) {
+    int length = 1; // primitive
+    boolean hasLong = false;
+    for (Parameter parameter : parameters) {
+      int dataLength = parameter.getLength();
+      if (parameter.getName().value() > 255) {
+        if (dataLength + 3 > 255) {
+          // [CODE_EXTENSION][len16][name16][len16][data]
+          hasLong = true;
+          length += 1 + 2 + 2 + 2 + dataLength;
+        } else {
+          // [CODE_EXTENSION][len8][name16][len8][data]
+          length += 1 + 1 + 2 + 1 + dataLength;
+        }
+      } else if (dataLength > 255) {
+        hasLong = true;
+        length += 1 + 2 + dataLength;
+      } else {
+        length += 1 + 1 + dataLength;
+      }
+    }
+    if (primitive.value() > 0xff) {
+      length += 1 + 1 + 2; // MAPPN_SERVICE_TYPE
+    }
+    if (hasLong) {
+      length += 1 + 1 + 1; // MAPPN_CODE_SHIFT
+    }
+    return length;
+  }
+
+  /**
+   * Writes a parameter area, as laid out through {@link #reorganizeParameters(List)}:
+   *
+   * <pre>
+   *   [primitive][MAPPN_SERVICE_TYPE]?[S]*...[SE]*...[<b>MAPPN_CODE_SHIFT</b>][L]*...[LE]*...
+   * </pre>
+   *
+   * <p>The code shift is only written when there are long parameters. When all the parameters are
+   * short, they are written in a single loop without any categorization. {@code out} must have
+   * room for {@link #parameterAreaLength} octets.
+   *
+   * @param primitive  Primitive of the message.
+   * @param parameters Parameters of the message.
+   * @param out        Cursor to write the area at.
+   */
+  static void writeParameterArea(
+      @NotNull Primitive primitive,
+      @NotNull List<? extends Parameter> parameters,
+      @NotNull GctByteBuffer out) {
+    boolean allShort = true;
+    boolean hasLong = false;
+    for (Parameter parameter : parameters) {
+      int dataLength = parameter.getLength();
+      if (parameter.getName().value() > 255) {
+        allShort = false;
+        hasLong |= dataLength + 3 > 255;
+      } else if (dataLength > 255) {
+        allShort = false;
+        hasLong = true;
+      }
+    }
+
+    // Multi-octet fields are big-endian.
+    if (primitive.value() > 0xff) {
+      out.put8(Primitive.MAPST_EXTENDED_SERVICE_TYPE.value());
+      out.put8(ParameterName.MAPPN_SERVICE_TYPE.value());
+      out.put8(2);
+      out.put16(primitive.value());
+    } else {
+      out.put8(primitive.value());
+    }
+
+    if (allShort) {
+      // Fast path: [name8][len8][data]
+      for (Parameter parameter : parameters) {
+        out.put8(parameter.getName().value());
+        out.put8(parameter.getLength());
+        GctParameter.of(parameter).writeTo(out);
+      }
+      return;
+    }
+
+    // Short and short extended parameters, with 8-bit lengths
+    for (Parameter parameter : parameters) {
+      int name = parameter.getName().value();
+      int dataLength = parameter.getLength();
+      if (name > 255) {
+        if (dataLength + 3 <= 255) {
+          out.put8(ParameterName.MAPPN_LONG_PARAM_CODE_EXTENSION.value());
+          out.put8(2 + 1 + dataLength);
+          out.put16(name);
+          out.put8(dataLength);
+          GctParameter.of(parameter).writeTo(out);
+        }
+      } else if (dataLength <= 255) {
+        out.put8(name);
+        out.put8(dataLength);
+        GctParameter.of(parameter).writeTo(out);
+      }
+    }
+
+    if (hasLong) {
+      out.put8(ParameterName.MAPPN_CODE_SHIFT.value());
+      out.put8(1);
+      out.put8(1);
+
+      // Long and long extended parameters, with 16-bit lengths
+      for (Parameter parameter : parameters) {
+        int name = parameter.getName().value();
+        int dataLength = parameter.getLength();
+        if (name > 255) {
+          if (dataLength + 3 > 255) {
+            out.put8(ParameterName.MAPPN_LONG_PARAM_CODE_EXTENSION.value());
+            out.put16(2 + 2 + dataLength);
+            out.put16(name);
+            out.put16(dataLength);
+            GctParameter.of(parameter).writeTo(out);
+          }
+        } else if (dataLength > 255) {
+          out.put8(name);
+          out.put16(dataLength);
+          GctParameter.of(parameter).writeTo(out);
+        }
+      }
+    }
+  }
+
+  /**
+   * Releases a native message, only logging a failure. Used on error paths, where the original
+   * error is more relevant.
+   *
+   * @param msg the native message to release
+   */
+  static void releaseQuietly(@NotNull GctFrame msg) {
+    try {
+      transport.relm(msg);
+    } catch (GctException e) {
+      log.warn("Unable to release GctFrame: {}", e.getMessage());
     }
   }
 
@@ -411,18 +990,20 @@ public class GctUtil {
           // Extended Long parameters
           int l = 2 + 2 + parameter.getLength();
           ByteBuffer b = ByteBuffer.allocate(l);
-          BBUtil.putU16(b, parameter.getName().value());
-          BBUtil.putU16(b, parameter.getLength());
-          b.put(parameter.getData());
+          GctByteBuffer out = new GctByteBuffer(b);
+          out.put16(parameter.getName().value());
+          out.put16(parameter.getLength());
+          parameter.writeTo(out);
           paramsLE.add(new GctParameter(ParameterName.MAPPN_LONG_PARAM_CODE_EXTENSION, b));
           bufferLength += 1 + 2 + l;
         } else {
           // Extended Short parameters
           int l = 2 + 1 + parameter.getLength();
           ByteBuffer b = ByteBuffer.allocate(l);
-          BBUtil.putU16(b, parameter.getName().value());
-          BBUtil.putU8(b, parameter.getLength());
-          b.put(parameter.getData());
+          GctByteBuffer out = new GctByteBuffer(b);
+          out.put16(parameter.getName().value());
+          out.put8(parameter.getLength());
+          parameter.writeTo(out);
           paramsSE.add(new GctParameter(ParameterName.MAPPN_LONG_PARAM_CODE_EXTENSION, b));
           bufferLength += 1 + 1 + l;
         }
@@ -455,6 +1036,77 @@ public class GctUtil {
     return Tuple.of(organized, bufferLength);
   }
 
+  /**
+   * Gets the user reason of a message, from its <code>MAPPN_user_rsn</code> parameter, as in a
+   * <code>MAPDT_U_ABORT_IND</code>.
+   *
+   * @param message Message to retrieve the user reason from.
+   *
+   * @return The user reason, or null if the parameter is absent or has an unknown value.
+   */
+  public static @Nullable UserReason getUserReason(@NotNull Message message) {
+    int value = getByteParameter(message, ParameterName.MAPPN_user_rsn);
+    try {
+      return value < 0 ? null : UserReason.of(value);
+    } catch (NoSuchElementException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Gets the provider reason of a message, from its <code>MAPPN_prov_rsn</code> parameter, as in a
+   * <code>MAPDT_P_ABORT_IND</code>.
+   *
+   * @param message Message to retrieve the provider reason from.
+   *
+   * @return The provider reason, or null if the parameter is absent or has an unknown value.
+   */
+  public static @Nullable ProviderReason getProviderReason(@NotNull Message message) {
+    int value = getByteParameter(message, ParameterName.MAPPN_prov_rsn);
+    try {
+      return value < 0 ? null : ProviderReason.of(value);
+    } catch (NoSuchElementException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Gets the result of a message, from its <code>MAPPN_result</code> parameter, as in a
+   * <code>MAPDT_OPEN_CNF</code>.
+   *
+   * @param message Message to retrieve the result from.
+   *
+   * @return The result, or null if the parameter is absent or has an unknown value.
+   */
+  public static @Nullable MAPResult getResult(@NotNull Message message) {
+    int value = getByteParameter(message, ParameterName.MAPPN_result);
+    try {
+      return value < 0 ? null : MAPResult.of(value);
+    } catch (NoSuchElementException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Gets the first octet of a parameter of a message, decoded in place.
+   *
+   * @return the unsigned octet, or -1 if the parameter is absent or empty
+   */
+  private static int getByteParameter(@NotNull Message message, @NotNull ParameterName target) {
+    int[] value = {-1};
+    message.visitParameters(
+        (name, buffer, offset, length) -> {
+          if (name != target) {
+            return true;
+          }
+          if (length > 0) {
+            value[0] = buffer.get(offset) & 0xFF;
+          }
+          return false;
+        });
+    return value[0];
+  }
+
   /**
    * Gets the invoke-id of a message. When the MAPPN_invoke_id is missing from the message, this
    * returns -1.
@@ -463,13 +1115,43 @@ public class GctUtil {
    *
    * @return The invoke-id in the message. -1 if invoke-id parameter is absent.
    */
-  public static int getInvokeId(@NotNull GctMessage message) {
-    int invokeId = -1;
-    if (message.hasParameter(ParameterName.MAPPN_invoke_id)) {
-      GctParameter invokeIdParam = message.getParameter(ParameterName.MAPPN_invoke_id);
-      invokeId = GctDecode.asInt(invokeIdParam);
-    }
-    return invokeId;
+  public static int getInvokeId(@NotNull Message message) {
+    int[] invokeId = {-1};
+    message.visitParameters(
+        (name, buffer, offset, length) -> {
+          if (name != ParameterName.MAPPN_invoke_id) {
+            return true;
+          }
+          invokeId[0] = GctDecode.asInt(buffer, offset, length);
+          return false;
+        });
+    return invokeId[0];
+  }
+
+  /**
+   * Gets the application context of a message, from its <code>MAPPN_applic_context</code>
+   * parameter. The parameter is decoded in place; no parameter object is created.
+   *
+   * @param message Message to retrieve the application context from.
+   *
+   * @return The application context, or null if the parameter is absent.
+   *
+   * @throws IllegalArgumentException if the parameter is too short.
+   * @throws NoSuchElementException   if the application context is not supported.
+   */
+  public static @Nullable ApplicationContext getApplicationContext(@NotNull Message message)
+      throws IllegalArgumentException, NoSuchElementException {
+    ApplicationContext[] applicationContext = {null};
+    message.visitParameters(
+        (name, buffer, offset, length) -> {
+          if (name != ParameterName.MAPPN_applic_context) {
+            return true;
+          }
+          applicationContext[0] =
+              GctDecode.asMobileDomainApplicationContext(buffer, offset, length);
+          return false;
+        });
+    return applicationContext[0];
   }
 
   /**
@@ -482,7 +1164,7 @@ public class GctUtil {
    *
    * @throws NoSuchElementException if the given message is already an ack message.
    */
-  public static GctMessage getAckFor(@NotNull GctMessage message,
+  public static GctMessage getAckFor(@NotNull Message message,
                                      List<GctParameter> params)
       throws NoSuchElementException {
     return GctMessage.builder()
@@ -522,9 +1204,9 @@ public class GctUtil {
    *
    * @return true if the message is an incoming message, otherwise false.
    */
-  public static boolean isIncomingMessage(@NotNull GctMessage message) {
-    return message.getId() >= config().incomingDialogueIdBase()
-        && message.getId() < config().incomingDialogueCount();
+  public static boolean isIncomingMessage(@NotNull Message message) {
+    long offset = (long) message.getId() - config().incomingDialogueIdBase();
+    return offset >= 0 && offset < (long) config().incomingDialogueCount() * links.size();
   }
 
   /**
@@ -534,9 +1216,9 @@ public class GctUtil {
    *
    * @return true if the message is an outgoing message, otherwise false.
    */
-  public static boolean isOutgoingMessage(@NotNull GctMessage message) {
-    return message.getId() >= config().outgoingDialogueIdBase()
-        && message.getId() < config().outgoingDialogueCount();
+  public static boolean isOutgoingMessage(@NotNull Message message) {
+    long offset = (long) message.getId() - config().outgoingDialogueIdBase();
+    return offset >= 0 && offset < (long) config().outgoingDialogueCount() * links.size();
   }
 
   static {
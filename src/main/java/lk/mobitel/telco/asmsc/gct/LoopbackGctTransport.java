@@ -0,0 +1,310 @@
+package lk.mobitel.telco.asmsc.gct;
+
+import lk.mobitel.telco.asmsc.config.RuntimeConfiguration;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An in-memory {@link GctTransport}. Frames are arrays in the Java heap, and each module is a
+ * queue of the frames sent to it. No Septel stack or native library is needed, so that the whole
+ * application can be run and load-tested in a single process: a test driver plays the MAP task by
+ * receiving on the remote module id and sending to the local module id of a link.
+ *
+ * <p>Latency, loss and queue limits can be injected (see {@link
+ * RuntimeConfiguration#loopbackLatency()}, {@link RuntimeConfiguration#loopbackLossRatio()} and
+ * {@link RuntimeConfiguration#loopbackQueueLimit()}). A sent frame becomes receivable after the
+ * latency, in the order it was sent. A lost frame is released at send, as if it had been sent.
+ * Sending to a module with a full queue fails with an {@link IllegalStateException}.
+ *
+ * <p>A transport can be used from any thread, but each module must have a single receiver.
+ *
+ * @author NISALBA
+ */
+public final class LoopbackGctTransport implements GctTransport {
+
+  /**
+   * A frame in the Java heap, laid out in a single array as a <code>MSG</code> of the GCT
+   * environment: the fields of the header at fixed offsets in native byte order, the length of the
+   * parameter area, then the parameter area. The pointers of the header are left out, and the
+   * instance is kept right after the header fields.
+   */
+  private static final class LoopbackFrame implements GctFrame {
+    private static final int TYPE = 0;
+    private static final int ID = 2;
+    private static final int SRC = 4;
+    private static final int DST = 5;
+    private static final int RSP_REQ = 6;
+    private static final int INSTANCE = 16;
+    private static final int LEN = 20;
+    private static final int PARAM = 24;
+
+    /** Longest parameter area, as the length is 16-bit. */
+    private static final int MAX_LENGTH = 0xffff;
+
+    private final byte[] msg;
+    private final ByteBuffer header;
+
+    /** {@link System#nanoTime()} after which the frame can be received. */
+    private long deliverAt;
+
+    private LoopbackFrame(int length) throws IllegalStateException {
+      if (length < 0 || length > MAX_LENGTH) {
+        throw new IllegalStateException("Parameter area length is out of range: " + length);
+      }
+      this.msg = new byte[PARAM + length];
+      this.header = ByteBuffer.wrap(msg).order(ByteOrder.nativeOrder());
+      header.putShort(LEN, (short) length);
+    }
+
+    @Override
+    public int getType() {
+      return header.getShort(TYPE) & 0xffff;
+    }
+
+    @Override
+    public void setType(int type) {
+      header.putShort(TYPE, (short) type);
+    }
+
+    @Override
+    public int getId() {
+      return header.getShort(ID) & 0xffff;
+    }
+
+    @Override
+    public void setId(int id) {
+      header.putShort(ID, (short) id);
+    }
+
+    @Override
+    public short getSrc() {
+      return (short) (header.get(SRC) & 0xff);
+    }
+
+    @Override
+    public void setSrc(short src) {
+      header.put(SRC, (byte) src);
+    }
+
+    @Override
+    public short getDst() {
+      return (short) (header.get(DST) & 0xff);
+    }
+
+    @Override
+    public void setDst(short dst) {
+      header.put(DST, (byte) dst);
+    }
+
+    @Override
+    public long getInstance() {
+      return header.getInt(INSTANCE) & 0xffffffffL;
+    }
+
+    @Override
+    public void setInstance(long instance) {
+      header.putInt(INSTANCE, (int) instance);
+    }
+
+    @Override
+    public boolean getRspReq() {
+      return header.getShort(RSP_REQ) != 0;
+    }
+
+    @Override
+    public void setRspReq(boolean rspReq) {
+      header.putShort(RSP_REQ, (short) (rspReq ? 1 : 0));
+    }
+
+    @Override
+    public @NotNull ByteBuffer getParam() {
+      return ByteBuffer.wrap(msg, PARAM, length()).slice();
+    }
+
+    @Override
+    public boolean shrinkParam(int length) {
+      if (length < 0 || length > length()) {
+        throw new IllegalStateException(
+            "Cannot shrink a parameter area of " + length() + " bytes to " + length);
+      }
+      header.putShort(LEN, (short) length);
+      return true;
+    }
+
+    private int length() {
+      return header.getShort(LEN) & 0xffff;
+    }
+  }
+
+  /** Time a receiver parks for while its queue is empty, or its head is not due yet. */
+  private static final long RECEIVE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+  private final Map<Short, LinkedBlockingQueue<LoopbackFrame>> modules = new ConcurrentHashMap<>();
+  private final long latencyNanos;
+  private final double lossRatio;
+  private final int queueLimit;
+
+  private final AtomicLong sent = new AtomicLong();
+  private final AtomicLong lost = new AtomicLong();
+  private final AtomicLong rejected = new AtomicLong();
+  private final AtomicLong received = new AtomicLong();
+
+  /**
+   * @param config the configuration to read the loopback settings from
+   */
+  public LoopbackGctTransport(@NotNull RuntimeConfiguration config) {
+    this(config.loopbackLatency(), config.loopbackLossRatio(), config.loopbackQueueLimit());
+  }
+
+  /**
+   * @param latencyMicros delay before a sent frame can be received, in microseconds
+   * @param lossRatio     fraction of the sent frames that are dropped, between 0 and 1
+   * @param queueLimit    maximum number of frames waiting to be received by a module
+   */
+  public LoopbackGctTransport(long latencyMicros, double lossRatio, int queueLimit) {
+    if (lossRatio < 0 || lossRatio > 1) {
+      throw new IllegalStateException("Loss ratio must be between 0 and 1: " + lossRatio);
+    }
+    if (queueLimit < 1) {
+      throw new IllegalStateException("Queue limit must be positive: " + queueLimit);
+    }
+    this.latencyNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(0, latencyMicros));
+    this.lossRatio = lossRatio;
+    this.queueLimit = queueLimit;
+  }
+
+  @Override
+  public @NotNull GctFrame receive(short moduleId) {
+    for (; ; ) {
+      GctFrame frame = grab(moduleId);
+      if (frame != null) {
+        return frame;
+      }
+      LockSupport.parkNanos(this, RECEIVE_PARK_NANOS);
+    }
+  }
+
+  @Override
+  public @Nullable GctFrame grab(short moduleId) {
+    LinkedBlockingQueue<LoopbackFrame> queue = queueOf(moduleId);
+    LoopbackFrame head = queue.peek();
+    if (head == null || (latencyNanos > 0 && System.nanoTime() - head.deliverAt < 0)) {
+      return null;
+    }
+    // The module has a single receiver, so the head is still the same frame.
+    LoopbackFrame frame = queue.poll();
+    received.incrementAndGet();
+    return frame;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @throws IllegalStateException if the queue of the module is full
+   */
+  @Override
+  public void send(short moduleId, @NotNull GctFrame frame) throws IllegalStateException {
+    LoopbackFrame loopbackFrame = unwrap(frame);
+    if (lossRatio > 0 && ThreadLocalRandom.current().nextDouble() < lossRatio) {
+      lost.incrementAndGet();
+      return;
+    }
+    loopbackFrame.deliverAt = System.nanoTime() + latencyNanos;
+    if (!queueOf(moduleId).offer(loopbackFrame)) {
+      rejected.incrementAndGet();
+      throw new IllegalStateException("Queue of module " + moduleId + " is full");
+    }
+    sent.incrementAndGet();
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @throws IllegalStateException if the length does not fit in the 16-bit length of a frame
+   */
+  @Override
+  public @NotNull GctFrame getm(int length) throws IllegalStateException {
+    return new LoopbackFrame(length);
+  }
+
+  @Override
+  public void relm(@NotNull GctFrame frame) {
+    // Frames are garbage collected.
+    unwrap(frame);
+  }
+
+  /**
+   * Gets the number of frames waiting to be received by a module, including those not due yet.
+   *
+   * @param moduleId the module
+   * @return the number of queued frames
+   */
+  public int queued(short moduleId) {
+    return queueOf(moduleId).size();
+  }
+
+  /**
+   * Gets the number of frames queued to a module.
+   *
+   * @return the number of sent frames
+   */
+  public long sent() {
+    return sent.get();
+  }
+
+  /**
+   * Gets the number of frames dropped by the injected loss.
+   *
+   * @return the number of lost frames
+   */
+  public long lost() {
+    return lost.get();
+  }
+
+  /**
+   * Gets the number of frames not sent because the queue of their module was full.
+   *
+   * @return the number of rejected frames
+   */
+  public long rejected() {
+    return rejected.get();
+  }
+
+  /**
+   * Gets the number of frames taken by receivers.
+   *
+   * @return the number of received frames
+   */
+  public long received() {
+    return received.get();
+  }
+
+  private LinkedBlockingQueue<LoopbackFrame> queueOf(short moduleId) {
+    return modules.computeIfAbsent(moduleId, key -> new LinkedBlockingQueue<>(queueLimit));
+  }
+
+  private static LoopbackFrame unwrap(GctFrame frame) throws IllegalStateException {
+    if (!(frame instanceof LoopbackFrame)) {
+      throw new IllegalStateException("Not a loopback frame: " + frame.getClass().getName());
+    }
+    return (LoopbackFrame) frame;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "{\"latencyNanos\":%d,\"lossRatio\":%s,\"queueLimit\":%d,\"sent\":%d,\"lost\":%d,"
+            + "\"rejected\":%d,\"received\":%d}",
+        latencyNanos, lossRatio, queueLimit, sent(), lost(), rejected(), received());
+  }
+}
@@ -0,0 +1,130 @@
+package lk.mobitel.telco.asmsc.gct;
+
+import com.dialogic.signaling.gct.GctException;
+import com.dialogic.signaling.gct.GctLib;
+import com.dialogic.signaling.gct.GctMsg;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The {@link GctTransport} of the Dialogic GCT environment. Frames are native messages, wrapped,
+ * and every call goes to <code>GctLib</code>.
+ *
+ * @author NISALBA
+ */
+public final class NativeGctTransport implements GctTransport {
+
+  /** A native message as a {@link GctFrame}. */
+  private static final class NativeFrame implements GctFrame {
+    private final GctMsg msg;
+
+    private NativeFrame(GctMsg msg) {
+      this.msg = msg;
+    }
+
+    @Override
+    public int getType() throws GctException {
+      return msg.getType();
+    }
+
+    @Override
+    public void setType(int type) throws GctException {
+      msg.setType(type);
+    }
+
+    @Override
+    public int getId() throws GctException {
+      return msg.getId();
+    }
+
+    @Override
+    public void setId(int id) throws GctException {
+      msg.setId(id);
+    }
+
+    @Override
+    public short getSrc() throws GctException {
+      return msg.getSrc();
+    }
+
+    @Override
+    public void setSrc(short src) throws GctException {
+      msg.setSrc(src);
+    }
+
+    @Override
+    public short getDst() throws GctException {
+      return msg.getDst();
+    }
+
+    @Override
+    public void setDst(short dst) throws GctException {
+      msg.setDst(dst);
+    }
+
+    @Override
+    public long getInstance() throws GctException {
+      return msg.getInstance();
+    }
+
+    @Override
+    public void setInstance(long instance) throws GctException {
+      msg.setInstance(instance);
+    }
+
+    @Override
+    public boolean getRspReq() throws GctException {
+      return msg.getRspReq();
+    }
+
+    @Override
+    public void setRspReq(boolean rspReq) throws GctException {
+      msg.setRspReq(rspReq);
+    }
+
+    @Override
+    public @NotNull ByteBuffer getParam() throws GctException {
+      return msg.getParam();
+    }
+  }
+
+  private static GctMsg unwrap(GctFrame frame) throws IllegalStateException {
+    if (!(frame instanceof NativeFrame)) {
+      throw new IllegalStateException("Not a native frame: " + frame.getClass().getName());
+    }
+    return ((NativeFrame) frame).msg;
+  }
+
+  @Override
+  public @NotNull GctFrame receive(short moduleId) throws GctException {
+    return new NativeFrame(GctLib.receive(moduleId));
+  }
+
+  @Override
+  public @Nullable GctFrame grab(short moduleId) throws GctException {
+    GctMsg msg = GctLib.grab(moduleId);
+    return msg == null ? null : new NativeFrame(msg);
+  }
+
+  @Override
+  public void send(short moduleId, @NotNull GctFrame frame) throws GctException {
+    GctLib.send(moduleId, unwrap(frame));
+  }
+
+  @Override
+  public @NotNull GctFrame getm(int length) throws GctException {
+    return new NativeFrame(GctLib.getm(length));
+  }
+
+  @Override
+  public void relm(@NotNull GctFrame frame) throws GctException {
+    GctLib.relm(unwrap(frame));
+  }
+
+  @Override
+  public String toString() {
+    return "native";
+  }
+}
@@ -0,0 +1,99 @@
+package lk.mobitel.telco.asmsc.gct;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Encodes the SCCP called and calling party addresses of outgoing dialogues, as carried by the
+ * <code>MAPPN_dest_address</code> and <code>MAPPN_orig_address</code> parameters of a
+ * <code>MAPDT_OPEN_REQ</code>. The format is that of Q.713, without the length octet.
+ *
+ * <p>Addresses are routed on global title, and carry a subsystem number but no point code. The
+ * global title has indicator 4: translation type 0, the E.164 numbering plan and the international
+ * nature of address, followed by the digits in BCD.
+ *
+ * @author NISALBA
+ */
+public final class SccpAddress {
+
+  /** Subsystem number of the HLR. */
+  public static final int SSN_HLR = 6;
+
+  /** Subsystem number of the MSC. */
+  public static final int SSN_MSC = 8;
+
+  /** Route on global title, global title indicator 4, subsystem number present. */
+  private static final int ADDRESS_INDICATOR = 0x12;
+
+  private static final int TRANSLATION_TYPE = 0;
+  private static final int NUMBERING_PLAN_E164 = 1;
+  private static final int ENCODING_BCD_ODD = 1;
+  private static final int ENCODING_BCD_EVEN = 2;
+  private static final int NATURE_INTERNATIONAL = 4;
+
+  /** Octets before the digits: indicator, subsystem, translation type, plan, nature. */
+  private static final int HEADER_LENGTH = 5;
+
+  private SccpAddress() {}
+
+  /**
+   * Encodes an address from decimal digits, such as {@link
+   * lk.mobitel.telco.asmsc.config.RuntimeConfiguration#gtAddress()}.
+   *
+   * @param digits the international number, in decimal digits
+   * @param ssn    the subsystem number
+   * @return the encoded address
+   * @throws IllegalStateException if there are no digits, or a character is not a decimal digit
+   */
+  public static byte @NotNull [] ofDigits(@NotNull String digits, int ssn)
+      throws IllegalStateException {
+    int count = digits.length();
+    byte[] address = header(count, ssn);
+    for (int i = 0; i < count; i++) {
+      int digit = Character.digit(digits.charAt(i), 10);
+      if (digit < 0) {
+        throw new IllegalStateException("Not a decimal number: " + digits);
+      }
+      address[HEADER_LENGTH + i / 2] |= (byte) (i % 2 == 0 ? digit : digit << 4);
+    }
+    return address;
+  }
+
+  /**
+   * Encodes an address from a MAP <code>AddressString</code>, such as a MSISDN or a network node
+   * number: an octet of nature and plan, followed by the digits in TBCD.
+   *
+   * @param addressString the address string
+   * @param ssn           the subsystem number
+   * @return the encoded address
+   * @throws IllegalStateException if the address string has no digits
+   */
+  public static byte @NotNull [] ofAddressString(byte @NotNull [] addressString, int ssn)
+      throws IllegalStateException {
+    int octets = addressString.length - 1;
+    if (octets < 1) {
+      throw new IllegalStateException("Address string has no digits");
+    }
+    // An odd number of digits is padded with a filler in the last high nibble.
+    boolean odd = (addressString[octets] & 0xF0) == 0xF0;
+    byte[] address = header(octets * 2 - (odd ? 1 : 0), ssn);
+    System.arraycopy(addressString, 1, address, HEADER_LENGTH, octets);
+    if (odd) {
+      address[address.length - 1] &= 0x0F;
+    }
+    return address;
+  }
+
+  private static byte[] header(int digits, int ssn) {
+    if (digits < 1) {
+      throw new IllegalStateException("Address has no digits");
+    }
+    byte[] address = new byte[HEADER_LENGTH + (digits + 1) / 2];
+    address[0] = (byte) ADDRESS_INDICATOR;
+    address[1] = (byte) ssn;
+    address[2] = (byte) TRANSLATION_TYPE;
+    int encoding = digits % 2 == 1 ? ENCODING_BCD_ODD : ENCODING_BCD_EVEN;
+    address[3] = (byte) (NUMBERING_PLAN_E164 << 4 | encoding);
+    address[4] = (byte) NATURE_INTERNATIONAL;
+    return address;
+  }
+}
@@ -103,4 +103,22 @@ public interface Message {
    * @return The list of parameters in this message.
    */
   List<? extends Parameter> parameterList();
+
+  /**
+   * Passes the parameters of this message to {@code visitor}, in order, until it returns false.
+   *
+   * <p>Implementations backed by an encoded parameter area walk the area directly and create no
+   * {@link Parameter} objects. This default implementation goes through {@link #parameterList()}.
+   *
+   * @param visitor the visitor to receive the parameters
+   * @return true if all the parameters were visited, false if {@code visitor} stopped early
+   */
+  default boolean visitParameters(ParameterVisitor visitor) {
+    for (Parameter parameter : parameterList()) {
+      if (!visitor.visit(parameter.getName(), parameter.getData(), 0, parameter.getLength())) {
+        return false;
+      }
+    }
+    return true;
+  }
 }
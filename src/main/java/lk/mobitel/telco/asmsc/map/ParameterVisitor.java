@@ -0,0 +1,35 @@
+package lk.mobitel.telco.asmsc.map;
+
+import lk.mobitel.telco.asmsc.map.constant.ParameterName;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Receives the parameters of a message one by one, without any {@link Parameter} objects being
+ * created.
+ *
+ * <p>The <i>Data</i> field of each parameter is given as a region of a buffer, which is usually the
+ * whole parameter area of the message. Offsets are absolute indexes of that buffer. The buffer must
+ * not be modified, and must not be referred after {@link #visit} returns, since it may be backed by
+ * a native message that is released later.
+ *
+ * <p>Framing parameters (<code>MAPPN_CODE_SHIFT</code>, <code>MAPPN_LONG_PARAM_CODE_EXTENSION
+ * </code>) are resolved by the caller and are not visited.
+ *
+ * @author NISALBA
+ * @see Message#visitParameters(ParameterVisitor)
+ */
+@FunctionalInterface
+public interface ParameterVisitor {
+
+  /**
+   * Visits a parameter.
+   *
+   * @param name   name of the parameter
+   * @param buffer buffer holding the <i>Data</i> field
+   * @param offset absolute index of the <i>Data</i> field in {@code buffer}
+   * @param length length of the <i>Data</i> field
+   * @return true to continue with the next parameter, false to stop visiting
+   */
+  boolean visit(ParameterName name, ByteBuffer buffer, int offset, int length);
+}
@@ -1,8 +1,9 @@
 package lk.mobitel.telco.asmsc.map.constant;
 
+import org.jetbrains.annotations.Nullable;
+
 import java.nio.ByteBuffer;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 import java.util.NoSuchElementException;
 
 public enum ApplicationContext {
@@ -11,21 +12,33 @@ public enum ApplicationContext {
   SHORTMSG_GATEWAY_CONTEXT((byte) 20, (byte) 3),
   IMSI_RETRIEVAL_CONTEXT((byte) 26, (byte) 2);
 
-  private static final Map<Integer, ApplicationContext> m = new HashMap<>();
-
-  private static int keyCode(int a, int v) {
-    return (a & 0xFF) << 8 | (v & 0xFF);
-  }
+  /** Application contexts indexed by context id, then by version. */
+  private static final ApplicationContext[][] byContext = new ApplicationContext[256][];
 
   public static ApplicationContext of(int mapAc, int version) {
-    ApplicationContext ac = m.get(keyCode(mapAc, version));
+    ApplicationContext ac = lookup(mapAc, version);
     if (ac == null) throw new NoSuchElementException("Unsupported application context");
     return ac;
   }
 
+  public static @Nullable ApplicationContext lookup(int mapAc, int version) {
+    ApplicationContext[] versions = byContext[mapAc & 0xFF];
+    if (versions == null || (version & 0xFF) >= versions.length) return null;
+    return versions[version & 0xFF];
+  }
+
   static {
     for (ApplicationContext ac : ApplicationContext.values()) {
-      m.put(keyCode(ac.acv, ac.ver), ac);
+      int a = ac.acv & 0xFF;
+      int v = ac.ver & 0xFF;
+      ApplicationContext[] versions = byContext[a];
+      if (versions == null) {
+        versions = new ApplicationContext[v + 1];
+      } else if (versions.length <= v) {
+        versions = Arrays.copyOf(versions, v + 1);
+      }
+      versions[v] = ac;
+      byContext[a] = versions;
     }
   }
 
@@ -2,9 +2,8 @@ package lk.mobitel.telco.asmsc.map.constant;
 
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.HashMap;
-import java.util.Map;
 import java.util.NoSuchElementException;
 
 public enum MessageType {
@@ -14,8 +13,12 @@ public enum MessageType {
   MAP_MSG_DLG_REQ(0xc7e2, true, 0),
   MAP_MSG_DLG_IND(0x87e3, true, 0xc7e2);
 
-  private static final Map<Integer, MessageType> mDialogue = new HashMap<>();
-  private static final Map<Integer, MessageType> mService = new HashMap<>();
+  /**
+   * Message types indexed by the low octet of their value. The low octets of all MAP message types
+   * are distinct, so a single table covers both categories; a hit is confirmed against the full
+   * value.
+   */
+  private static final MessageType[] byLowOctet = new MessageType[256];
 
   /**
    * Gets the MessageType enum for a value.
@@ -25,16 +28,24 @@ public enum MessageType {
    * @throws NoSuchElementException if there is no matching message type for the given value
    */
   public static @NotNull MessageType of(int val) throws NoSuchElementException {
-    var type = mDialogue.get(val);
-    if (type == null) {
-      type = mService.get(val);
-    }
+    var type = lookup(val);
     if (type == null) {
       throw new NoSuchElementException(String.format("No such message type: 0x%x", val));
     }
     return type;
   }
 
+  /**
+   * Gets the MessageType enum for a value, without throwing.
+   *
+   * @param val the value to match with existing Message types
+   * @return the matching MessageType, or null if there is no such message type
+   */
+  public static @Nullable MessageType lookup(int val) {
+    var type = byLowOctet[val & 0xFF];
+    return (type != null && type.value == val) ? type : null;
+  }
+
   /**
    * Returns true if the given value corresponds to a dialogue type.
    *
@@ -42,7 +53,8 @@ public enum MessageType {
    * @return true if the given value corresponds to a dialogue type.
    */
   public static boolean isDialogue(int val) {
-    return mDialogue.containsKey(val);
+    var type = lookup(val);
+    return type != null && type.isDialogue;
   }
 
   /**
@@ -52,18 +64,28 @@ public enum MessageType {
    * @return true if the given value corresponds to a service type.
    */
   public static boolean isService(int val) {
-    return mService.containsKey(val);
+    var type = lookup(val);
+    return type != null && !type.isDialogue;
   }
 
   static {
     for (MessageType type : MessageType.values()) {
-      (type.isDialogue ? mDialogue : mService).put(type.value(), type);
+      if (byLowOctet[type.value & 0xFF] != null) {
+        throw new ExceptionInInitializerError("Message type octet clash: " + type);
+      }
+      byLowOctet[type.value & 0xFF] = type;
+    }
+    for (MessageType type : MessageType.values()) {
+      if (type.ackValue != 0) {
+        type.ack = lookup(type.ackValue);
+      }
     }
   }
 
   private final int value;
   private final boolean isDialogue;
   private final int ackValue;
+  private MessageType ack;
 
   MessageType(int value) {
     this(value, false, 0);
@@ -112,9 +134,9 @@ public enum MessageType {
    * @throws NoSuchElementException If this is an acknowledgement
    */
   public MessageType acknowledgement() throws NoSuchElementException {
-    if (ackValue == 0) {
+    if (ack == null) {
       throw new NoSuchElementException(name() + " does not have an acknowledgement");
     }
-    return (isDialogue ? mDialogue : mService).get(ackValue);
+    return ack;
   }
 }
@@ -1,7 +1,7 @@
 package lk.mobitel.telco.asmsc.map.constant;
 
-import java.util.HashMap;
-import java.util.Map;
+import org.jetbrains.annotations.Nullable;
+
 import java.util.NoSuchElementException;
 
 /**
@@ -747,7 +747,11 @@ public enum ParameterName {
   MAPPN_umts_sec_cont_ellipsis(717),
   MAPPN_end(717);
 
-  private static final Map<Integer, ParameterName> m = new HashMap<>();
+  /**
+   * Parameter names indexed by value. Where several names share a value, the one declared first
+   * is kept.
+   */
+  private static final ParameterName[] byValue;
 
   /**
    * Gets the ParameterName for a value.
@@ -757,16 +761,33 @@ public enum ParameterName {
    * @throws NoSuchElementException if there is no matching parameter name for the given value.
    */
   public static ParameterName of(int val) throws NoSuchElementException {
-    var name = m.get(val);
+    var name = lookup(val);
     if (name == null) {
       throw new NoSuchElementException("No such parameter name: " + val);
     }
     return name;
   }
 
+  /**
+   * Gets the ParameterName for a value, without throwing.
+   *
+   * @param val value to be looked up.
+   * @return The matching ParameterName enum for <code>val</code>, or null if there is none.
+   */
+  public static @Nullable ParameterName lookup(int val) {
+    return (val >= 0 && val < byValue.length) ? byValue[val] : null;
+  }
+
   static {
+    int max = 0;
+    for (ParameterName name : ParameterName.values()) {
+      max = Math.max(max, name.value());
+    }
+    byValue = new ParameterName[max + 1];
     for (ParameterName name : ParameterName.values()) {
-      m.put(name.value(), name);
+      if (byValue[name.value()] == null) {
+        byValue[name.value()] = name;
+      }
     }
   }
 
@@ -2,9 +2,8 @@ package lk.mobitel.telco.asmsc.map.constant;
 
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.HashMap;
-import java.util.Map;
 import java.util.NoSuchElementException;
 
 /**
@@ -385,8 +384,13 @@ public enum Primitive {
 
   MAPST_MAX_SRV_REQ_U16_PRIM(-539, 0);
 
-  private static final Map<Integer, Primitive> mService = new HashMap<>();
-  private static final Map<Integer, Primitive> mDialogue = new HashMap<>();
+  /**
+   * Service and dialogue primitives indexed by value. Real primitives take precedence over the
+   * sentinel values (declared with a negative value) that share their value.
+   */
+  private static final Primitive[] services;
+
+  private static final Primitive[] dialogues;
 
   /**
    * Gets the Dialogue Primitive for a value.
@@ -396,7 +400,7 @@ public enum Primitive {
    * @throws NoSuchElementException if there is no matching dialogue primitive for the given value
    */
   public static @NotNull Primitive ofDialogue(int val) throws NoSuchElementException {
-    var prim = mDialogue.get(val);
+    var prim = lookup(val, true);
     if (prim == null) {
       throw new NoSuchElementException(String.format("No such dialogue primitive: 0x%x", val));
     }
@@ -411,7 +415,7 @@ public enum Primitive {
    * @throws NoSuchElementException if there is no matching service primitive for the given value
    */
   public static @NotNull Primitive ofService(int val) throws NoSuchElementException {
-    var prim = mService.get(val);
+    var prim = lookup(val, false);
     if (prim == null) {
       throw new NoSuchElementException(String.format("No such service primitive: 0x%x", val));
     }
@@ -433,6 +437,19 @@ public enum Primitive {
     else return ofService(val);
   }
 
+  /**
+   * Gets the primitive for a value depending on which type is required, without throwing.
+   *
+   * @param val the value to look up
+   * @param isDialogue If true the val is treated as a dialogue primitive, otherwise as a service
+   *     primitive
+   * @return A service primitive or dialogue primitive, or null if there is no such primitive.
+   */
+  public static @Nullable Primitive lookup(int val, boolean isDialogue) {
+    Primitive[] table = isDialogue ? dialogues : services;
+    return (val >= 0 && val < table.length) ? table[val] : null;
+  }
+
   /**
    * Returns true if there is a valid service primitive for the given value
    *
@@ -440,7 +457,7 @@ public enum Primitive {
    * @return true if there is a service primitive for the value
    */
   public static boolean isValidServicePrimitive(int val) {
-    return mService.containsKey(val);
+    return lookup(val, false) != null;
   }
 
   /**
@@ -450,18 +467,51 @@ public enum Primitive {
    * @return true if there is a dialogue primitive for the value
    */
   public static boolean isValidDialoguePrimitive(int val) {
-    return mDialogue.containsKey(val);
+    return lookup(val, true) != null;
   }
 
   static {
+    int maxService = 0;
+    int maxDialogue = 0;
+    for (Primitive primitive : Primitive.values()) {
+      if (primitive.isDialogue) {
+        maxDialogue = Math.max(maxDialogue, primitive.value());
+      } else {
+        maxService = Math.max(maxService, primitive.value());
+      }
+    }
+    services = new Primitive[maxService + 1];
+    dialogues = new Primitive[maxDialogue + 1];
+
+    // real primitives first, then sentinels into the remaining slots
+    for (Primitive primitive : Primitive.values()) {
+      if (primitive.value >= 0) {
+        (primitive.isDialogue ? dialogues : services)[primitive.value()] = primitive;
+      }
+    }
     for (Primitive primitive : Primitive.values()) {
-      (primitive.isDialogue ? mDialogue : mService).put((int) primitive.value(), primitive);
+      Primitive[] table = primitive.isDialogue ? dialogues : services;
+      if (primitive.value < 0 && table[primitive.value()] == null) {
+        table[primitive.value()] = primitive;
+      }
+    }
+
+    // acknowledgements are linked once, here
+    for (Primitive primitive : Primitive.values()) {
+      if (primitive.ackValue == 0 || (primitive.value > 128 && primitive.value < 256)) {
+        // ackValue == 0: explicitly ack-less
+        // (128 < value < 256): range for service primitive acks
+        continue;
+      }
+      int lookupValue = (primitive.ackValue == -1) ? primitive.value + 128 : primitive.ackValue;
+      primitive.ack = lookup(lookupValue, primitive.isDialogue);
     }
   }
 
   private final int value;
   private final boolean isDialogue;
   private final int ackValue;
+  private Primitive ack;
 
   Primitive(int value) {
     this(value, false, -1);
@@ -514,13 +564,9 @@ public enum Primitive {
    * @throws NoSuchElementException If this is an acknowledgement
    */
   public Primitive acknowledgement() throws NoSuchElementException {
-    if (ackValue == 0 || (value > 128 && value < 256)) {
-      // ackValue == 0: explicitly ack-less
-      // (128 < value < 256): range for service primitive acks
+    if (ack == null) {
       throw new NoSuchElementException(name() + " does not have an acknowledgement");
     }
-
-    int lookupValue = (ackValue == -1) ? value + 128 : ackValue;
-    return (isDialogue ? mDialogue : mService).get(lookupValue);
+    return ack;
   }
 }
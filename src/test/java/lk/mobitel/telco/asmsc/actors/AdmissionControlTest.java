@@ -0,0 +1,77 @@
+package lk.mobitel.telco.asmsc.actors;
+
+import lk.mobitel.telco.asmsc.config.AdmissionLimit;
+import lk.mobitel.telco.asmsc.map.constant.ApplicationContext;
+import lk.mobitel.telco.asmsc.map.constant.RefuseReason;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link AdmissionControl}.
+ *
+ * @author NISALBA
+ */
+public class AdmissionControlTest {
+
+  private static final ApplicationContext LIMITED = ApplicationContext.SHORTMSG_MTRELAY_CONTEXT;
+  private static final ApplicationContext UNLIMITED = ApplicationContext.IMSI_RETRIEVAL_CONTEXT;
+
+  @Test
+  public void bucketStartsFullAndRefusesWhenEmpty() {
+    // Without a refill, only the burst is admitted.
+    AdmissionControl control =
+        new AdmissionControl(
+            List.of(new AdmissionLimit(LIMITED, 0, 3)), RefuseReason.MAPRR_no_reason);
+    assertTrue(control.tryAdmit(LIMITED));
+    assertTrue(control.tryAdmit(LIMITED));
+    assertTrue(control.tryAdmit(LIMITED));
+    assertFalse(control.tryAdmit(LIMITED));
+    assertFalse(control.tryAdmit(LIMITED));
+    assertEquals(3, control.admitted(LIMITED));
+    assertEquals(2, control.refused(LIMITED));
+    assertSame(RefuseReason.MAPRR_no_reason, control.refuseReason());
+  }
+
+  @Test
+  public void bucketIsRefilledAtItsRate() throws InterruptedException {
+    AdmissionControl control =
+        new AdmissionControl(
+            List.of(new AdmissionLimit(LIMITED, 100, 1)), RefuseReason.MAPRR_no_reason);
+    assertTrue(control.tryAdmit(LIMITED));
+    // A token every 10 ms; the bucket holds one at most.
+    Thread.sleep(50);
+    assertTrue(control.tryAdmit(LIMITED));
+    assertEquals(2, control.admitted(LIMITED));
+  }
+
+  @Test
+  public void contextsWithoutALimitAreAlwaysAdmitted() {
+    AdmissionControl control =
+        new AdmissionControl(
+            List.of(new AdmissionLimit(LIMITED, 0, 1)), RefuseReason.MAPRR_no_reason);
+    assertTrue(control.tryAdmit(LIMITED));
+    assertFalse(control.tryAdmit(LIMITED));
+    for (int i = 0; i < 100; i++) {
+      assertTrue(control.tryAdmit(UNLIMITED));
+    }
+    assertEquals(100, control.admitted(UNLIMITED));
+    assertEquals(0, control.refused(UNLIMITED));
+  }
+
+  @Test
+  public void lastLimitOfAContextWins() {
+    AdmissionControl control =
+        new AdmissionControl(
+            List.of(new AdmissionLimit(LIMITED, 0, 1), new AdmissionLimit(LIMITED, 0, 2)),
+            RefuseReason.MAPRR_no_reason);
+    assertTrue(control.tryAdmit(LIMITED));
+    assertTrue(control.tryAdmit(LIMITED));
+    assertFalse(control.tryAdmit(LIMITED));
+  }
+}
@@ -0,0 +1,80 @@
+package lk.mobitel.telco.asmsc.actors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link DialogueRegistry}.
+ *
+ * @author NISALBA
+ */
+public class DialogueRegistryTest {
+
+  private DialogueRegistry<String> registry;
+
+  @Before
+  public void setUp() {
+    // Shard 1 of 2 owns the odd offsets; its share of 4 is 2.
+    registry = new DialogueRegistry<>(new ShardSlots(0x8000, 10, 2, 1), 4);
+  }
+
+  @Test
+  public void handlesAreRegisteredByDialogueId() {
+    registry.put(0x8001, "a");
+    registry.put(0x8003, "b");
+    assertSame("a", registry.get(0x8001));
+    assertTrue(registry.contains(0x8003));
+    assertFalse(registry.contains(0x8005));
+    assertNull(registry.get(0x8000));
+    assertEquals(2, registry.size());
+
+    assertSame("a", registry.remove(0x8001));
+    assertNull(registry.remove(0x8001));
+    assertEquals(1, registry.size());
+  }
+
+  @Test
+  public void removeWithAHandleLeavesANewerDialogueRegistered() {
+    String old = "old";
+    registry.put(0x8001, old);
+    registry.remove(0x8001);
+    // The id is reused before the old dialogue has reported its end.
+    String newer = "newer";
+    registry.put(0x8001, newer);
+    assertFalse(registry.remove(0x8001, old));
+    assertSame(newer, registry.get(0x8001));
+    assertTrue(registry.remove(0x8001, newer));
+    assertEquals(0, registry.size());
+  }
+
+  @Test
+  public void registryIsCappedAtItsShare() {
+    registry.put(0x8001, "a");
+    registry.put(0x8003, "b");
+    assertTrue(registry.isFull());
+    assertThrows(IllegalStateException.class, () -> registry.put(0x8005, "c"));
+    registry.reject();
+    assertEquals(1, registry.rejected());
+    assertEquals(2, registry.peak());
+
+    registry.remove(0x8003);
+    assertFalse(registry.isFull());
+    registry.put(0x8005, "c");
+    assertEquals(2, registry.peak());
+  }
+
+  @Test
+  public void idsOfOtherShardsAndDuplicatesAreRefused() {
+    assertThrows(IllegalStateException.class, () -> registry.put(0x8000, "a"));
+    registry.put(0x8001, "a");
+    assertThrows(IllegalStateException.class, () -> registry.put(0x8001, "b"));
+    assertSame("a", registry.get(0x8001));
+  }
+}
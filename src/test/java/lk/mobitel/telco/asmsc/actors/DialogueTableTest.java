@@ -0,0 +1,116 @@
+package lk.mobitel.telco.asmsc.actors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link DialogueTable}. The transitions follow <code>docs/dialogue_state_diag.mermaid
+ * </code>.
+ *
+ * @author NISALBA
+ */
+public class DialogueTableTest {
+
+  private static final int ID = 0x8002;
+
+  private DialogueTable table;
+
+  @Before
+  public void setUp() {
+    table = new DialogueTable(new ShardSlots(0x8000, 10, 2, 0), 6);
+  }
+
+  @Test
+  public void dialogueGoesThroughATurnAndIsClosed() {
+    table.allocate(ID, 42L);
+    assertEquals(DialogueState.CREATED, table.state(ID));
+    assertEquals(42L, table.instance(ID));
+
+    assertTrue(table.fire(ID, DialogueTable.Event.OPEN));
+    assertEquals(DialogueState.OPENED, table.state(ID));
+    assertTrue(table.fire(ID, DialogueTable.Event.SERVICE));
+    assertTrue(table.fire(ID, DialogueTable.Event.SERVICE));
+    assertEquals(DialogueState.RECEIVED, table.state(ID));
+    assertTrue(table.fire(ID, DialogueTable.Event.EXECUTE));
+    assertEquals(DialogueState.DEPLOYED, table.state(ID));
+
+    assertTrue(table.fire(ID, DialogueTable.Event.RESPONSE));
+    assertEquals(DialogueState.DEPLOYED, table.state(ID));
+
+    assertTrue(table.fire(ID, DialogueTable.Event.END));
+    assertNull(table.state(ID));
+    assertEquals(0, table.size());
+  }
+
+  @Test
+  public void emptyTurnLeavesTheDialogueOpen() {
+    table.allocate(ID, 0L);
+    table.fire(ID, DialogueTable.Event.OPEN);
+    assertTrue(table.fire(ID, DialogueTable.Event.EXECUTE));
+    assertEquals(DialogueState.OPENED, table.state(ID));
+  }
+
+  @Test
+  public void resultKeepingTheDialogueOpenStartsANewTurn() {
+    table.allocate(ID, 0L);
+    table.fire(ID, DialogueTable.Event.OPEN);
+    table.fire(ID, DialogueTable.Event.SERVICE);
+    table.fire(ID, DialogueTable.Event.EXECUTE);
+    assertTrue(table.fire(ID, DialogueTable.Event.CONTINUE));
+    assertEquals(DialogueState.OPENED, table.state(ID));
+    assertTrue(table.fire(ID, DialogueTable.Event.SERVICE));
+    assertEquals(DialogueState.RECEIVED, table.state(ID));
+  }
+
+  @Test
+  public void eventsNotInTheDiagramAreRefused() {
+    table.allocate(ID, 0L);
+    assertFalse(table.fire(ID, DialogueTable.Event.SERVICE));
+    assertFalse(table.fire(ID, DialogueTable.Event.EXECUTE));
+    assertEquals(DialogueState.CREATED, table.state(ID));
+
+    table.fire(ID, DialogueTable.Event.OPEN);
+    assertFalse(table.fire(ID, DialogueTable.Event.OPEN));
+    assertFalse(table.fire(ID, DialogueTable.Event.RESPONSE));
+    assertFalse(table.fire(ID, DialogueTable.Event.CONTINUE));
+
+    table.fire(ID, DialogueTable.Event.SERVICE);
+    table.fire(ID, DialogueTable.Event.EXECUTE);
+    assertFalse(table.fire(ID, DialogueTable.Event.SERVICE));
+    assertFalse(table.fire(ID, DialogueTable.Event.EXECUTE));
+    assertEquals(DialogueState.DEPLOYED, table.state(ID));
+
+    // Every state can end.
+    assertTrue(table.fire(ID, DialogueTable.Event.END));
+    assertFalse(table.fire(ID, DialogueTable.Event.END));
+  }
+
+  @Test
+  public void slotsAreOwnedAndLimited() {
+    // Shard 0 of 2 owns the even offsets; its share of 6 is 3.
+    assertThrows(IllegalStateException.class, () -> table.allocate(0x8001, 0L));
+    assertNull(table.state(0x8001));
+    assertFalse(table.fire(0x8001, DialogueTable.Event.OPEN));
+
+    table.allocate(0x8000, 0L);
+    assertThrows(IllegalStateException.class, () -> table.allocate(0x8000, 0L));
+    table.allocate(0x8002, 0L);
+    table.allocate(0x8004, 0L);
+    assertTrue(table.isFull());
+    assertThrows(IllegalStateException.class, () -> table.allocate(0x8006, 0L));
+    assertEquals(3, table.peak());
+
+    table.fire(0x8002, DialogueTable.Event.END);
+    assertFalse(table.isFull());
+    assertThrows(IllegalStateException.class, () -> table.instance(0x8002));
+    table.allocate(0x8006, 7L);
+    assertEquals(7L, table.instance(0x8006));
+    assertEquals(3, table.size());
+  }
+}
@@ -0,0 +1,357 @@
+package lk.mobitel.telco.asmsc.actors;
+
+import lk.mobitel.telco.asmsc.actors.service.ServiceHandlers;
+import lk.mobitel.telco.asmsc.actors.service.ServiceResult;
+import lk.mobitel.telco.asmsc.config.RuntimeConfiguration;
+import lk.mobitel.telco.asmsc.config.Transport;
+import lk.mobitel.telco.asmsc.gct.GctFrame;
+import lk.mobitel.telco.asmsc.gct.GctMessage;
+import lk.mobitel.telco.asmsc.gct.GctParameter;
+import lk.mobitel.telco.asmsc.gct.GctTransport;
+import lk.mobitel.telco.asmsc.gct.GctUtil;
+import lk.mobitel.telco.asmsc.map.Message;
+import lk.mobitel.telco.asmsc.map.constant.ApplicationContext;
+import lk.mobitel.telco.asmsc.map.constant.MAPResult;
+import lk.mobitel.telco.asmsc.map.constant.MessageType;
+import lk.mobitel.telco.asmsc.map.constant.ParameterName;
+import lk.mobitel.telco.asmsc.map.constant.Primitive;
+import lk.mobitel.telco.asmsc.map.constant.UserReason;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Round trips of dialogue primitives through the {@link Transport#LOOPBACK} transport: an
+ * indication is sent to this application as the MAP module would, received, handled by the
+ * dialogue engine, and its reply is received by the MAP module through the {@link Emitter}.
+ *
+ * @author NISALBA
+ */
+public class LoopbackRoundTripTest {
+
+  private static final short LOCAL_MODULE = 0x2d;
+  private static final short MAP_MODULE = 0x15;
+  private static final int INCOMING_BASE = 0x8000;
+
+  private static GctTransport transport;
+
+  private FlyweightDialogues dialogues;
+
+  @BeforeClass
+  public static void initGct() {
+    GctUtil.init(
+        new RuntimeConfiguration() {
+          @Override
+          public short localModuleId() {
+            return LOCAL_MODULE;
+          }
+
+          @Override
+          public short remoteModuleId() {
+            return MAP_MODULE;
+          }
+
+          @Override
+          public int outgoingDialogueIdBase() {
+            return 0;
+          }
+
+          @Override
+          public int outgoingDialogueCount() {
+            return 16;
+          }
+
+          @Override
+          public int incomingDialogueIdBase() {
+            return INCOMING_BASE;
+          }
+
+          @Override
+          public int incomingDialogueCount() {
+            return 16;
+          }
+
+          @Override
+          public String gtAddress() {
+            return "94";
+          }
+
+          @Override
+          public boolean replyInPlace() {
+            return true;
+          }
+
+          @Override
+          public Transport transport() {
+            return Transport.LOOPBACK;
+          }
+        });
+    transport = GctUtil.transport();
+  }
+
+  @Before
+  public void setUp() {
+    dialogues =
+        new FlyweightDialogues(
+            new ShardSlots(INCOMING_BASE, 16, 1, 0),
+            16,
+            0,
+            (stage, invoke) -> fail("No service is invoked"));
+  }
+
+  @Test(timeout = 10_000)
+  public void openIndicationIsAcceptedInPlace() throws Exception {
+    int dialogueId = INCOMING_BASE + 1;
+    GctFrame open = openIndication(dialogueId, 7L);
+    int receivedLength = open.getParam().limit();
+    transport.send(LOCAL_MODULE, open);
+
+    dialogues.process(receive());
+
+    GctFrame reply = awaitReply();
+    // The reply is written into the frame of the indication, cut to its own length.
+    assertSame(open, reply);
+    assertTrue(reply.getParam().limit() < receivedLength);
+    assertEquals(LOCAL_MODULE, reply.getSrc());
+    assertEquals(MAP_MODULE, reply.getDst());
+
+    Message response = GctUtil.parseMsg(reply);
+    transport.relm(reply);
+    assertEquals(MessageType.MAP_MSG_DLG_REQ, response.getType());
+    assertEquals(Primitive.MAPDT_OPEN_RSP, response.getPrimitive());
+    assertEquals(dialogueId, response.getId());
+    assertEquals(7L, response.getInstance());
+    assertEquals(MAPResult.MAPRS_DLG_ACC, GctUtil.getResult(response));
+    assertEquals(
+        ApplicationContext.SHORTMSG_MTRELAY_CONTEXT, GctUtil.getApplicationContext(response));
+    assertTrue(dialogues.isOpen(dialogueId));
+  }
+
+  @Test(timeout = 10_000)
+  public void duplicateOpenIndicationIsAborted() throws Exception {
+    int dialogueId = INCOMING_BASE + 2;
+    transport.send(LOCAL_MODULE, openIndication(dialogueId, 0L));
+    dialogues.process(receive());
+    transport.relm(awaitReply());
+
+    transport.send(LOCAL_MODULE, openIndication(dialogueId, 0L));
+    dialogues.process(receive());
+
+    GctFrame reply = awaitReply();
+    Message response = GctUtil.parseMsg(reply);
+    transport.relm(reply);
+    assertEquals(Primitive.MAPDT_U_ABORT_REQ, response.getPrimitive());
+    assertEquals(dialogueId, response.getId());
+    assertEquals(UserReason.MAPUR_procedure_error, GctUtil.getUserReason(response));
+  }
+
+  @Test(timeout = 10_000)
+  public void openIndicationWithABadApplicationContextIsAborted() throws Exception {
+    int dialogueId = INCOMING_BASE + 3;
+    // Too short to be a mobile domain application context.
+    transport.send(LOCAL_MODULE, openIndication(dialogueId, 0L, ByteBuffer.wrap(new byte[3])));
+    dialogues.process(receive());
+
+    GctFrame reply = awaitReply();
+    Message response = GctUtil.parseMsg(reply);
+    transport.relm(reply);
+    assertEquals(Primitive.MAPDT_U_ABORT_REQ, response.getPrimitive());
+    assertEquals(dialogueId, response.getId());
+    assertEquals(UserReason.MAPUR_procedure_error, GctUtil.getUserReason(response));
+    assertFalse(dialogues.isOpen(dialogueId));
+  }
+
+  @Test(timeout = 10_000)
+  public void emptyTurnIsDelimitedInPlace() throws Exception {
+    int dialogueId = INCOMING_BASE + 5;
+    transport.send(LOCAL_MODULE, openIndication(dialogueId, 0L));
+    dialogues.process(receive());
+    transport.relm(awaitReply());
+
+    GctFrame delimiter = dialogueIndication(Primitive.MAPDT_DELIMITER_IND, dialogueId);
+    transport.send(LOCAL_MODULE, delimiter);
+    dialogues.process(receive());
+
+    GctFrame reply = awaitReply();
+    assertSame(delimiter, reply);
+    Message response = GctUtil.parseMsg(reply);
+    transport.relm(reply);
+    assertEquals(Primitive.MAPDT_DELIMITER_REQ, response.getPrimitive());
+    assertEquals(dialogueId, response.getId());
+    assertTrue(dialogues.isOpen(dialogueId));
+  }
+
+  @Test(timeout = 10_000)
+  public void answersHeldBackAreFlushedInIndicationOrder() throws Exception {
+    List<CompletableFuture<ServiceResult>> stages = new ArrayList<>();
+    List<DialogueTurn.Invoke> invokes = new ArrayList<>();
+    FlyweightDialogues flushing =
+        new FlyweightDialogues(
+            new ShardSlots(INCOMING_BASE, 16, 1, 0),
+            16,
+            2,
+            (stage, invoke) -> invokes.add(invoke));
+    ServiceHandlers.register(
+        Primitive.MAPST_MT_FWD_SM_IND,
+        indication -> {
+          CompletableFuture<ServiceResult> stage = new CompletableFuture<>();
+          stages.add(stage);
+          return stage;
+        });
+    try {
+      int dialogueId = INCOMING_BASE + 4;
+      transport.send(LOCAL_MODULE, openIndication(dialogueId, 0L));
+      flushing.process(receive());
+      transport.relm(awaitReply());
+      for (int invokeId = 1; invokeId <= 3; invokeId++) {
+        transport.send(LOCAL_MODULE, forwardIndication(dialogueId, invokeId));
+        flushing.process(receive());
+      }
+      // A delimiter carrying a parameter has room for the close.
+      GctFrame delimiter =
+          dialogueIndication(
+              Primitive.MAPDT_DELIMITER_IND,
+              dialogueId,
+              GctParameter.ofBytes(ParameterName.MAPPN_qos, new byte[4]));
+      transport.send(LOCAL_MODULE, delimiter);
+      flushing.process(receive());
+      assertEquals(3, invokes.size());
+
+      // The second answer waits for the first; the third for both.
+      assertTrue(respond(flushing, stages.get(1), invokes.get(1)));
+      assertTrue(respond(flushing, stages.get(0), invokes.get(0)));
+      flushing.advance(1);
+      assertNoReply();
+      flushing.advance(2);
+      assertAnswer(awaitReply(), dialogueId, 1);
+      assertAnswer(awaitReply(), dialogueId, 2);
+      assertNoReply();
+
+      assertTrue(respond(flushing, stages.get(2), invokes.get(2)));
+      assertAnswer(awaitReply(), dialogueId, 3);
+      // The close is written into the delimiter of the turn.
+      GctFrame close = awaitReply();
+      assertSame(delimiter, close);
+      assertEquals(Primitive.MAPDT_CLOSE_REQ, GctUtil.parseMsg(close).getPrimitive());
+      transport.relm(close);
+      assertFalse(flushing.isOpen(dialogueId));
+      // A result of the ended turn is dropped.
+      assertFalse(flushing.serviceResponded(invokes.get(2), ServiceResult.success()));
+    } finally {
+      ServiceHandlers.unregister(Primitive.MAPST_MT_FWD_SM_IND);
+    }
+  }
+
+  private static boolean respond(
+      FlyweightDialogues dialogues,
+      CompletableFuture<ServiceResult> stage,
+      DialogueTurn.Invoke invoke) {
+    stage.complete(ServiceResult.success());
+    return dialogues.serviceResponded(invoke, stage.join());
+  }
+
+  private static void assertAnswer(GctFrame frame, int dialogueId, int invokeId) throws Exception {
+    Message answer = GctUtil.parseMsg(frame);
+    transport.relm(frame);
+    assertEquals(Primitive.MAPST_MT_FWD_SM_IND.acknowledgement(), answer.getPrimitive());
+    assertEquals(dialogueId, answer.getId());
+    assertEquals(invokeId, GctUtil.getInvokeId(answer));
+  }
+
+  private static void assertNoReply() throws Exception {
+    Thread.sleep(50);
+    assertNull(transport.grab(MAP_MODULE));
+  }
+
+  /** Encodes a MT-FORWARD-SHORT-MESSAGE indication as the MAP module sends it. */
+  private static GctFrame forwardIndication(int dialogueId, int invokeId) throws Exception {
+    GctFrame frame =
+        GctUtil.encodeMsg(
+            GctMessage.builder()
+                .type(MessageType.MAP_MSG_SRV_IND)
+                .primitive(Primitive.MAPST_MT_FWD_SM_IND)
+                .id(dialogueId)
+                .parameter(GctParameter.of8BitValue(ParameterName.MAPPN_invoke_id, (byte) invokeId))
+                .parameter(GctParameter.ofBytes(ParameterName.MAPPN_sm_rp_da, new byte[9]))
+                .parameter(GctParameter.ofBytes(ParameterName.MAPPN_sm_rp_oa, new byte[7]))
+                .parameter(GctParameter.ofBytes(ParameterName.MAPPN_sm_rp_ui, new byte[20]))
+                .build());
+    frame.setSrc(MAP_MODULE);
+    frame.setDst(LOCAL_MODULE);
+    return frame;
+  }
+
+  /** Encodes a dialogue indication as the MAP module sends it. */
+  private static GctFrame dialogueIndication(
+      Primitive primitive, int dialogueId, GctParameter... parameters) throws Exception {
+    GctMessage.GctMessageBuilder builder =
+        GctMessage.builder().type(MessageType.MAP_MSG_DLG_IND).primitive(primitive).id(dialogueId);
+    for (GctParameter parameter : parameters) {
+      builder.parameter(parameter);
+    }
+    GctFrame frame = GctUtil.encodeMsg(builder.build());
+    frame.setSrc(MAP_MODULE);
+    frame.setDst(LOCAL_MODULE);
+    return frame;
+  }
+
+  /** Encodes an open indication as the MAP module sends it. */
+  private static GctFrame openIndication(int dialogueId, long instance) throws Exception {
+    return openIndication(
+        dialogueId, instance, ApplicationContext.SHORTMSG_MTRELAY_CONTEXT.asByteBuffer());
+  }
+
+  /** Encodes an open indication with the given application context parameter. */
+  private static GctFrame openIndication(
+      int dialogueId, long instance, ByteBuffer applicationContext) throws Exception {
+    GctFrame frame =
+        GctUtil.encodeMsg(
+            GctMessage.builder()
+                .type(MessageType.MAP_MSG_DLG_IND)
+                .primitive(Primitive.MAPDT_OPEN_IND)
+                .id(dialogueId)
+                .instance(instance)
+                .parameter(
+                    GctParameter.ofBytes(ParameterName.MAPPN_applic_context, applicationContext))
+                .parameter(GctParameter.ofBytes(ParameterName.MAPPN_dest_address, new byte[12]))
+                .parameter(GctParameter.ofBytes(ParameterName.MAPPN_orig_address, new byte[12]))
+                .build());
+    frame.setSrc(MAP_MODULE);
+    frame.setDst(LOCAL_MODULE);
+    return frame;
+  }
+
+  /** Receives the next frame sent to this application, as a view. */
+  private static Message receive() throws Exception {
+    GctFrame frame = transport.grab(LOCAL_MODULE);
+    assertNotNull("No frame was sent to the application", frame);
+    return GctUtil.viewMsg(frame);
+  }
+
+  /** Waits for the next frame sent to the MAP module by the emitter. */
+  private static GctFrame awaitReply() throws Exception {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (System.nanoTime() - deadline < 0) {
+      GctFrame frame = transport.grab(MAP_MODULE);
+      if (frame != null) {
+        return frame;
+      }
+      Thread.sleep(1);
+    }
+    throw new AssertionError("No reply was sent to the MAP module");
+  }
+}
@@ -0,0 +1,117 @@
+package lk.mobitel.telco.asmsc.actors;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link MpscRingBuffer}.
+ *
+ * @author NISALBA
+ */
+public class MpscRingBufferTest {
+
+  @Test
+  public void capacityIsRoundedUpToAPowerOfTwo() {
+    assertEquals(1, new MpscRingBuffer<>(1).capacity());
+    assertEquals(8, new MpscRingBuffer<>(5).capacity());
+    assertEquals(1024, new MpscRingBuffer<>(1024).capacity());
+    assertThrows(IllegalStateException.class, () -> new MpscRingBuffer<>(0));
+  }
+
+  @Test
+  public void offerFailsWhenFullAndSucceedsAfterPoll() {
+    MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(4);
+    assertTrue(buffer.isEmpty());
+    assertNull(buffer.poll());
+    for (int i = 0; i < 4; i++) {
+      assertTrue(buffer.offer(i));
+    }
+    assertFalse(buffer.offer(4));
+
+    assertEquals(Integer.valueOf(0), buffer.poll());
+    assertTrue(buffer.offer(4));
+    List<Integer> drained = new ArrayList<>();
+    assertEquals(4, buffer.drain(drained::add, 10));
+    assertEquals(List.of(1, 2, 3, 4), drained);
+    assertTrue(buffer.isEmpty());
+  }
+
+  @Test
+  public void drainStopsAtTheLimit() {
+    MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(8);
+    for (int i = 0; i < 5; i++) {
+      buffer.offer(i);
+    }
+    List<Integer> drained = new ArrayList<>();
+    assertEquals(3, buffer.drain(drained::add, 3));
+    assertEquals(List.of(0, 1, 2), drained);
+    assertEquals(Integer.valueOf(3), buffer.poll());
+  }
+
+  @Test(timeout = 30_000)
+  public void concurrentProducersLoseNothingAndKeepTheirOrder() throws Exception {
+    int producers = 4;
+    int perProducer = 200_000;
+    // Small enough for producers to wrap around and find the buffer full.
+    MpscRingBuffer<long[]> buffer = new MpscRingBuffer<>(256);
+    CountDownLatch start = new CountDownLatch(1);
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    List<Thread> threads = new ArrayList<>();
+    for (int p = 0; p < producers; p++) {
+      long producer = p;
+      Thread thread =
+          new Thread(
+              () -> {
+                try {
+                  start.await();
+                  for (long i = 0; i < perProducer; i++) {
+                    long[] element = {producer, i};
+                    while (!buffer.offer(element)) {
+                      Thread.onSpinWait();
+                    }
+                  }
+                } catch (Throwable e) {
+                  failure.set(e);
+                }
+              },
+              "producer-" + p);
+      thread.start();
+      threads.add(thread);
+    }
+
+    long[] expected = new long[producers];
+    long received = 0;
+    start.countDown();
+    while (received < (long) producers * perProducer) {
+      long[] element = buffer.poll();
+      if (element == null) {
+        Thread.onSpinWait();
+        continue;
+      }
+      int producer = (int) element[0];
+      assertEquals("order of producer " + producer, expected[producer], element[1]);
+      expected[producer]++;
+      received++;
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertNull(failure.get());
+    for (int p = 0; p < producers; p++) {
+      assertEquals(perProducer, expected[p]);
+    }
+    assertTrue(buffer.isEmpty());
+  }
+}
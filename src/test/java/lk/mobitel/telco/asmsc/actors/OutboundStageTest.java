@@ -0,0 +1,101 @@
+package lk.mobitel.telco.asmsc.actors;
+
+import lk.mobitel.telco.asmsc.gct.GctEncodable;
+import lk.mobitel.telco.asmsc.gct.GctFrame;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link OutboundStage}.
+ *
+ * @author NISALBA
+ */
+public class OutboundStageTest {
+
+  /** A message that only records whether it was discarded. */
+  private static final class Staged implements GctEncodable {
+    private boolean discarded;
+
+    @Override
+    public @NotNull GctFrame encode() {
+      throw new IllegalStateException("Not encoded in this test");
+    }
+
+    @Override
+    public long getInstance() {
+      return 0L;
+    }
+
+    @Override
+    public void discard() {
+      discarded = true;
+    }
+  }
+
+  private List<List<GctEncodable>> batches;
+  private OutboundStage stage;
+
+  @Before
+  public void setUp() {
+    batches = new ArrayList<>();
+    stage = new OutboundStage(batches::add);
+  }
+
+  @Test
+  public void turnIsFlushedAsOneBatchInStagingOrder() {
+    Staged first = new Staged();
+    Staged second = new Staged();
+    Staged close = new Staged();
+    stage.stage(first);
+    stage.stage(second);
+    assertFalse(stage.isEmpty());
+    assertTrue(batches.isEmpty());
+
+    stage.end(close);
+    assertEquals(1, batches.size());
+    assertEquals(List.of(first, second, close), batches.get(0));
+    assertTrue(stage.isEmpty());
+  }
+
+  @Test
+  public void earlyFlushKeepsTheOrderAcrossBatches() {
+    Staged first = new Staged();
+    Staged second = new Staged();
+    Staged delimiter = new Staged();
+    stage.stage(first);
+    stage.flush();
+    stage.stage(second);
+    stage.end(delimiter);
+    assertEquals(List.of(List.of(first), List.of(second, delimiter)), batches);
+  }
+
+  @Test
+  public void emptyStageIsNotFlushed() {
+    stage.flush();
+    assertTrue(batches.isEmpty());
+  }
+
+  @Test
+  public void discardGivesUpTheHeldMessagesOnly() {
+    Staged sent = new Staged();
+    Staged held = new Staged();
+    stage.stage(sent);
+    stage.flush();
+    stage.stage(held);
+
+    stage.discard();
+    assertTrue(held.discarded);
+    assertFalse(sent.discarded);
+    assertTrue(stage.isEmpty());
+    stage.flush();
+    assertEquals(1, batches.size());
+  }
+}
@@ -0,0 +1,70 @@
+package lk.mobitel.telco.asmsc.actors;
+
+import org.junit.Test;
+
+import java.util.BitSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+
+/**
+ * Tests of {@link ShardSlots}.
+ *
+ * @author NISALBA
+ */
+public class ShardSlotsTest {
+
+  @Test
+  public void everyIdBelongsToExactlyOneShardWithDenseSlots() {
+    int base = 0x8000;
+    int count = 1001;
+    int shards = 4;
+    BitSet owned = new BitSet();
+    int capacities = 0;
+    for (int shard = 0; shard < shards; shard++) {
+      ShardSlots slots = new ShardSlots(base, count, shards, shard);
+      capacities += slots.capacity();
+      for (int slot = 0; slot < slots.capacity(); slot++) {
+        int id = slots.idOf(slot);
+        assertEquals(slot, slots.slotOf(id));
+        assertFalse("id " + id + " is owned twice", owned.get(id - base));
+        owned.set(id - base);
+      }
+    }
+    assertEquals(count, capacities);
+    assertEquals(count, owned.cardinality());
+  }
+
+  @Test
+  public void idsOfOtherShardsAndOutOfRangeHaveNoSlot() {
+    ShardSlots slots = new ShardSlots(0x8000, 100, 3, 1);
+    assertEquals(-1, slots.slotOf(0x8000));
+    assertEquals(0, slots.slotOf(0x8001));
+    assertEquals(-1, slots.slotOf(0x8002));
+    assertEquals(-1, slots.slotOf(0x7fff));
+    assertEquals(-1, slots.slotOf(0x8000 + 100));
+    assertEquals(33, slots.capacity());
+  }
+
+  @Test
+  public void limitIsSharedEvenlyWithinCapacity() {
+    int total = 0;
+    for (int shard = 0; shard < 3; shard++) {
+      total += new ShardSlots(0, 90, 3, shard).share(10);
+    }
+    assertEquals(10, total);
+    assertEquals(4, new ShardSlots(0, 90, 3, 0).share(10));
+    assertEquals(3, new ShardSlots(0, 90, 3, 2).share(10));
+    // A share never exceeds the ids of the shard.
+    assertEquals(30, new ShardSlots(0, 90, 3, 0).share(1000));
+    assertEquals(0, new ShardSlots(0, 90, 3, 0).share(-1));
+  }
+
+  @Test
+  public void invalidShardsAreRejected() {
+    assertThrows(IllegalStateException.class, () -> new ShardSlots(0, 10, 0, 0));
+    assertThrows(IllegalStateException.class, () -> new ShardSlots(0, 10, 2, 2));
+    assertThrows(IllegalStateException.class, () -> new ShardSlots(0, 10, 2, -1));
+  }
+}
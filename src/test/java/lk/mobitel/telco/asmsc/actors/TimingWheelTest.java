@@ -0,0 +1,139 @@
+package lk.mobitel.telco.asmsc.actors;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link TimingWheel}.
+ *
+ * @author NISALBA
+ */
+public class TimingWheelTest {
+
+  /** Delays around the bucket boundaries of the first and second wheels. */
+  private static final long[] DELAYS = {
+    1, 2, 255, 256, 257, 511, 512, 65_535, 65_536, 65_537, 65_536 + 256, 131_072 + 1
+  };
+
+  @Test
+  public void timersExpireOnTheirTickAcrossWheelBoundaries() {
+    for (long start : new long[] {0, 1, 200, 255, 256, 65_000, 65_535, 65_536}) {
+      TimingWheel wheel = new TimingWheel(DELAYS.length);
+      wheel.advance(
+          start,
+          slot -> {
+            throw new AssertionError("No timer is scheduled yet");
+          });
+      for (int slot = 0; slot < DELAYS.length; slot++) {
+        wheel.schedule(slot, DELAYS[slot]);
+      }
+      assertEquals(DELAYS.length, wheel.size());
+
+      long[] expiredAt = expireAll(wheel, DELAYS.length, start + 131_072 + 2);
+      for (int slot = 0; slot < DELAYS.length; slot++) {
+        assertEquals(
+            "delay " + DELAYS[slot] + " from tick " + start, start + DELAYS[slot], expiredAt[slot]);
+      }
+      assertEquals(0, wheel.size());
+    }
+  }
+
+  @Test
+  public void advancingManyTicksAtOnceExpiresInTickOrder() {
+    TimingWheel wheel = new TimingWheel(DELAYS.length);
+    for (int slot = DELAYS.length - 1; slot >= 0; slot--) {
+      wheel.schedule(slot, DELAYS[slot]);
+    }
+    List<Integer> order = new ArrayList<>();
+    wheel.advance(200_000, order::add);
+    List<Integer> expected = new ArrayList<>();
+    for (int slot = 0; slot < DELAYS.length; slot++) {
+      expected.add(slot);
+    }
+    assertEquals(expected, order);
+    assertEquals(200_000, wheel.currentTick());
+  }
+
+  @Test
+  public void timersCanBeRescheduledFromTheExpiryCallback() {
+    TimingWheel wheel = new TimingWheel(2);
+    wheel.schedule(0, 1);
+    wheel.schedule(1, 300);
+    List<Long> expiries = new ArrayList<>();
+    for (long tick = 1; tick <= 70_000; tick++) {
+      wheel.advance(
+          tick,
+          slot -> {
+            if (slot == 0) {
+              expiries.add(wheel.currentTick());
+              // Walk up through the wheel sizes: 1, 256, 65536 ticks.
+              if (expiries.size() == 1) {
+                wheel.schedule(0, 256);
+              } else if (expiries.size() == 2) {
+                wheel.schedule(0, 65_536);
+              }
+            } else {
+              // Rescheduled once with the shortest delay, it must expire on the next tick only.
+              assertFalse(wheel.isScheduled(1));
+              expiries.add(-wheel.currentTick());
+              if (wheel.currentTick() == 300) {
+                wheel.schedule(1, 0);
+                assertTrue(wheel.isScheduled(1));
+              }
+            }
+          });
+    }
+    assertEquals(List.of(1L, 257L, -300L, -301L, 65_793L), expiries);
+    assertEquals(0, wheel.size());
+  }
+
+  @Test
+  public void cancelledAndReplacedTimersDoNotExpire() {
+    TimingWheel wheel = new TimingWheel(3);
+    wheel.schedule(0, 10);
+    wheel.schedule(1, 300);
+    wheel.schedule(2, 70_000);
+    assertTrue(wheel.cancel(1));
+    assertFalse(wheel.cancel(1));
+    assertFalse(wheel.isScheduled(1));
+    // Replacing keeps a single timer for the slot.
+    wheel.schedule(0, 20);
+    assertEquals(2, wheel.size());
+
+    long[] expiredAt = expireAll(wheel, 3, 80_000);
+    assertEquals(20, expiredAt[0]);
+    assertEquals(-1, expiredAt[1]);
+    assertEquals(70_000, expiredAt[2]);
+  }
+
+  @Test
+  public void delaysAreCutDownToTheLastWheel() {
+    long maxDelay = (1L << (8 * TimingWheel.LEVELS)) - 1;
+    TimingWheel wheel = new TimingWheel(1);
+    wheel.schedule(0, Long.MAX_VALUE);
+    long[] expiredAt = expireAll(wheel, 1, maxDelay + 1);
+    assertEquals(maxDelay, expiredAt[0]);
+  }
+
+  /** Advances a wheel tick by tick, recording the tick each slot expires on, or -1. */
+  private static long[] expireAll(TimingWheel wheel, int capacity, long until) {
+    long[] expiredAt = new long[capacity];
+    Arrays.fill(expiredAt, -1);
+    for (long tick = wheel.currentTick() + 1; tick <= until; tick++) {
+      wheel.advance(
+          tick,
+          slot -> {
+            assertEquals("slot " + slot + " expired twice", -1, expiredAt[slot]);
+            expiredAt[slot] = wheel.currentTick();
+          });
+    }
+    return expiredAt;
+  }
+}
@@ -0,0 +1,71 @@
+package lk.mobitel.telco.asmsc.config;
+
+import lk.mobitel.telco.asmsc.map.constant.ApplicationContext;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link AdmissionLimit#parseList(String)}.
+ *
+ * @author NISALBA
+ */
+public class AdmissionLimitTest {
+
+  @Test
+  public void limitsAreParsedInOrder() {
+    List<AdmissionLimit> limits =
+        AdmissionLimit.parseList(
+            " SHORTMSG_MTRELAY_CONTEXT:100:200 ,, IMSI_RETRIEVAL_CONTEXT:2.5:4 ");
+    assertEquals(2, limits.size());
+    assertLimit(ApplicationContext.SHORTMSG_MTRELAY_CONTEXT, 100, 200, limits.get(0));
+    assertLimit(ApplicationContext.IMSI_RETRIEVAL_CONTEXT, 2.5, 4, limits.get(1));
+  }
+
+  @Test
+  public void burstDefaultsToTheRate() {
+    AdmissionLimit limit = AdmissionLimit.parseList("SHORTMSG_GATEWAY_CONTEXT:50").get(0);
+    assertEquals(50, limit.rate(), 0);
+    assertEquals(50, limit.burst(), 0);
+  }
+
+  @Test
+  public void blankListHasNoLimits() {
+    assertTrue(AdmissionLimit.parseList("").isEmpty());
+    assertTrue(AdmissionLimit.parseList(" , ").isEmpty());
+  }
+
+  @Test
+  public void malformedLimitsAreRejected() {
+    assertThrows(
+        IllegalStateException.class, () -> AdmissionLimit.parseList("SHORTMSG_MTRELAY_CONTEXT"));
+    assertThrows(
+        IllegalStateException.class,
+        () -> AdmissionLimit.parseList("SHORTMSG_MTRELAY_CONTEXT:1:2:3"));
+    assertThrows(
+        IllegalStateException.class, () -> AdmissionLimit.parseList("SHORTMSG_MTRELAY_CONTEXT:x"));
+    assertThrows(IllegalStateException.class, () -> AdmissionLimit.parseList("NO_SUCH_CONTEXT:1"));
+  }
+
+  @Test
+  public void ratesAndBurstsOutOfRangeAreRejected() {
+    assertThrows(
+        IllegalStateException.class, () -> AdmissionLimit.parseList("SHORTMSG_MTRELAY_CONTEXT:-1"));
+    assertThrows(
+        IllegalStateException.class,
+        () -> AdmissionLimit.parseList("SHORTMSG_MTRELAY_CONTEXT:10:0.5"));
+    // A rate of 0 only admits the burst.
+    assertEquals(0, AdmissionLimit.parseList("SHORTMSG_MTRELAY_CONTEXT:0:1").get(0).rate(), 0);
+  }
+
+  private static void assertLimit(
+      ApplicationContext applicationContext, double rate, double burst, AdmissionLimit limit) {
+    assertEquals(applicationContext, limit.applicationContext());
+    assertEquals(rate, limit.rate(), 0);
+    assertEquals(burst, limit.burst(), 0);
+  }
+}
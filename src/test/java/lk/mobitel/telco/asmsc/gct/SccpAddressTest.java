@@ -0,0 +1,58 @@
+package lk.mobitel.telco.asmsc.gct;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThrows;
+
+/**
+ * Tests of {@link SccpAddress}.
+ *
+ * @author NISALBA
+ */
+public class SccpAddressTest {
+
+  @Test
+  public void oddDigitsLeaveTheLastHighNibbleEmpty() {
+    assertArrayEquals(
+        bytes(0x12, 0x06, 0x00, 0x11, 0x04, 0x49, 0x17, 0x02),
+        SccpAddress.ofDigits("94712", SccpAddress.SSN_HLR));
+  }
+
+  @Test
+  public void evenDigitsAreMarkedAsEven() {
+    assertArrayEquals(
+        bytes(0x12, 0x08, 0x00, 0x12, 0x04, 0x49, 0x17),
+        SccpAddress.ofDigits("9471", SccpAddress.SSN_MSC));
+  }
+
+  @Test
+  public void fillerOfAnAddressStringIsDropped() {
+    // International E.164 MSISDN 94712, padded with a filler.
+    assertArrayEquals(
+        SccpAddress.ofDigits("94712", SccpAddress.SSN_MSC),
+        SccpAddress.ofAddressString(bytes(0x91, 0x49, 0x17, 0xF2), SccpAddress.SSN_MSC));
+  }
+
+  @Test
+  public void addressStringWithoutFillerHasEvenDigits() {
+    assertArrayEquals(
+        SccpAddress.ofDigits("9471", SccpAddress.SSN_HLR),
+        SccpAddress.ofAddressString(bytes(0x91, 0x49, 0x17), SccpAddress.SSN_HLR));
+  }
+
+  @Test
+  public void addressesWithoutDigitsAreRejected() {
+    assertThrows(IllegalStateException.class, () -> SccpAddress.ofDigits("", 6));
+    assertThrows(IllegalStateException.class, () -> SccpAddress.ofDigits("94a1", 6));
+    assertThrows(IllegalStateException.class, () -> SccpAddress.ofAddressString(bytes(0x91), 6));
+  }
+
+  private static byte[] bytes(int... values) {
+    byte[] bytes = new byte[values.length];
+    for (int i = 0; i < values.length; i++) {
+      bytes[i] = (byte) values[i];
+    }
+    return bytes;
+  }
+}